@@ -0,0 +1,31 @@
+package cli;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the JMH command line options, adding the GC profiler (allocation rates) unless
+ * other profilers are asked for.
+ */
+public final class Benchmarks {
+
+    private Benchmarks() { }
+
+    public static void main(String[] args) throws Exception {
+        var options = new CommandLineOptions(args);
+        if (options.shouldHelp()
+            || options.shouldList()
+            || options.shouldListWithParams()
+            || options.shouldListProfilers()
+            || options.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+        var builder = new OptionsBuilder().parent(options);
+        if (options.getProfilers().isEmpty()) builder.addProfiler(GCProfiler.class);
+        new Runner(builder.build()).run();
+    }
+}
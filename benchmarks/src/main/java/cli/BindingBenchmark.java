@@ -0,0 +1,100 @@
+package cli;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phases of a launch, for the binders generated at build time and for the introspection fallback.  The
+ * commands mix text, numeric, enumerated and boolean parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SingleShotTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BindingBenchmark {
+
+    @Param({"1", "10", "100"})
+    int parameters;
+
+    @Param({"generated", "reflective"})
+    String binderType;
+
+    private Class<?> commandClass;
+    private CommandBinder<Object> binder;
+    private Options options;
+    private String[] arguments;
+    private CommandLine commandLine;
+    private OptionTable optionTable;
+    private ParsedArguments parsedArguments;
+
+    @Setup
+    public void setup() throws Exception {
+        commandClass = Commands.forCount(parameters);
+        binder = resolveBinder();
+        if (binder == null) throw new IllegalStateException(
+            String.format("No binder was generated for %s", commandClass.getName())
+        );
+        options = binder.buildOptions();
+        arguments = Commands.arguments(parameters);
+        commandLine = new DefaultParser().parse(options, arguments, false);
+        optionTable = new OptionTable(options);
+        parsedArguments = new ParsedArguments();
+        ArgumentParser.parse(optionTable, arguments, parsedArguments);
+    }
+
+    // Work done once per class on a metadata cache miss (besides building the options)
+    @Benchmark
+    public CommandBinder<Object> resolveBinder() throws CmdException {
+        return "generated".equals(binderType)
+            ? Introspection.lookForBinder(commandClass)
+            : new ReflectiveBinder(commandClass);
+    }
+
+    @Benchmark
+    public Options buildOptions() {
+        return binder.buildOptions();
+    }
+
+    @Benchmark
+    public CommandLine parse() throws ParseException {
+        return new DefaultParser().parse(options, arguments, false);
+    }
+
+    // Built-in parser, reusing its result
+    @Benchmark
+    public ParsedArguments parseBuiltin() throws ParseException {
+        ArgumentParser.parse(optionTable, arguments, parsedArguments);
+        return parsedArguments;
+    }
+
+    @Benchmark
+    public Object applyArguments() throws ParseException {
+        var command = binder.newInstance();
+        binder.applyArguments(command, commandLine);
+        return command;
+    }
+
+    @Benchmark
+    public Object applyParsedArguments() throws ParseException {
+        var command = binder.newInstance();
+        binder.applyArguments(command, parsedArguments);
+        return command;
+    }
+}
@@ -0,0 +1,55 @@
+package cli;
+
+import cli.annotations.Command;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.reflections.Reflections;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * First call in a fresh JVM, as paid by every launch of a generated script: class loading, metadata and
+ * an interpreted run of the framework.  Every fork measures a single call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class ColdStartBenchmark {
+
+    @Param({"1", "10", "100"})
+    int parameters;
+
+    @Benchmark
+    public Integer executeEntryPoint() throws CmdException {
+        return new EntryPoint().executeEntryPoint(
+            Commands.className(parameters),
+            Path.of("").toAbsolutePath(),
+            Commands.arguments(parameters)
+        );
+    }
+
+    // Lookup of the command class by name, as done by the generated scripts
+    @Benchmark
+    public Class<?> lookForCommand() throws CmdException {
+        return Introspection.lookForCommand(Commands.className(parameters));
+    }
+
+    // Classpath scan that Introspection.lookForCommand replaced
+    @Benchmark
+    public Set<Class<?>> scanForCommands() {
+        return new Reflections("cli").getTypesAnnotatedWith(Command.class);
+    }
+}
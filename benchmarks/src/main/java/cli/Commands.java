@@ -0,0 +1,51 @@
+package cli;
+
+import java.util.ArrayList;
+
+// Command classes of the benchmarks and command lines that set all their parameters
+final class Commands {
+
+    // Type of the parameter pN in the benchmark commands is TYPES[N % 10]
+    static final Class<?>[] TYPES = {
+        String.class, Integer.class, Long.class, Double.class, Priority.class,
+        Boolean.class, String.class, Integer.class, Long.class, Boolean.class
+    };
+
+    private Commands() { }
+
+    // By name, so that cold start benchmarks do not load the class before the framework does
+    static String className(int parameters) {
+        return switch (parameters) {
+            case 1 -> "cli.OneParameterCommand";
+            case 10 -> "cli.TenParametersCommand";
+            case 100 -> "cli.HundredParametersCommand";
+            default -> throw new IllegalArgumentException(
+                String.format("There is no benchmark command with %d parameters", parameters)
+            );
+        };
+    }
+
+    static Class<?> forCount(int parameters) {
+        try {
+            return Class.forName(className(parameters));
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Arguments for every parameter of the command with that count of parameters
+    static String[] arguments(int parameters) {
+        var ret = new ArrayList<String>();
+        for (var i = 0; i < parameters; i++) {
+            ret.add("-p" + i);
+            var type = TYPES[i % TYPES.length];
+            if (type == String.class) ret.add("value" + i);
+            else if (type == Integer.class) ret.add(Integer.toString(i * 7));
+            else if (type == Long.class) ret.add(Long.toString(i * 1_000_003L));
+            else if (type == Double.class) ret.add(Double.toString(i / 3.0));
+            else if (type == Priority.class) ret.add(Priority.values()[i % Priority.values().length].name().toLowerCase());
+            // Booleans are flags with no value
+        }
+        return ret.toArray(new String[0]);
+    }
+}
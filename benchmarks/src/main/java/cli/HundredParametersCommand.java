@@ -0,0 +1,417 @@
+package cli;
+
+import cli.annotations.Command;
+import cli.annotations.Parameter;
+import cli.annotations.Run;
+
+import java.nio.file.Path;
+
+// Generated for the benchmarks: parameter pN has the type Commands.TYPES[N % 10]
+@Command(command = "bench100", description = "benchmark command with a hundred parameters")
+public class HundredParametersCommand {
+
+    @Parameter(name = "p0", description = "text parameter")
+    private String p0;
+    public void setP0(String v) { p0 = v; }
+
+    @Parameter(name = "p1", description = "integer parameter")
+    private Integer p1;
+    public void setP1(Integer v) { p1 = v; }
+
+    @Parameter(name = "p2", description = "long parameter")
+    private Long p2;
+    public void setP2(Long v) { p2 = v; }
+
+    @Parameter(name = "p3", description = "decimal parameter")
+    private Double p3;
+    public void setP3(Double v) { p3 = v; }
+
+    @Parameter(name = "p4", description = "enumerated parameter")
+    private Priority p4;
+    public void setP4(Priority v) { p4 = v; }
+
+    @Parameter(name = "p5", description = "flag parameter")
+    private Boolean p5;
+    public void setP5(Boolean v) { p5 = v; }
+
+    @Parameter(name = "p6", description = "text parameter")
+    private String p6;
+    public void setP6(String v) { p6 = v; }
+
+    @Parameter(name = "p7", description = "integer parameter")
+    private Integer p7;
+    public void setP7(Integer v) { p7 = v; }
+
+    @Parameter(name = "p8", description = "long parameter")
+    private Long p8;
+    public void setP8(Long v) { p8 = v; }
+
+    @Parameter(name = "p9", description = "flag parameter")
+    private Boolean p9;
+    public void setP9(Boolean v) { p9 = v; }
+
+    @Parameter(name = "p10", description = "text parameter")
+    private String p10;
+    public void setP10(String v) { p10 = v; }
+
+    @Parameter(name = "p11", description = "integer parameter")
+    private Integer p11;
+    public void setP11(Integer v) { p11 = v; }
+
+    @Parameter(name = "p12", description = "long parameter")
+    private Long p12;
+    public void setP12(Long v) { p12 = v; }
+
+    @Parameter(name = "p13", description = "decimal parameter")
+    private Double p13;
+    public void setP13(Double v) { p13 = v; }
+
+    @Parameter(name = "p14", description = "enumerated parameter")
+    private Priority p14;
+    public void setP14(Priority v) { p14 = v; }
+
+    @Parameter(name = "p15", description = "flag parameter")
+    private Boolean p15;
+    public void setP15(Boolean v) { p15 = v; }
+
+    @Parameter(name = "p16", description = "text parameter")
+    private String p16;
+    public void setP16(String v) { p16 = v; }
+
+    @Parameter(name = "p17", description = "integer parameter")
+    private Integer p17;
+    public void setP17(Integer v) { p17 = v; }
+
+    @Parameter(name = "p18", description = "long parameter")
+    private Long p18;
+    public void setP18(Long v) { p18 = v; }
+
+    @Parameter(name = "p19", description = "flag parameter")
+    private Boolean p19;
+    public void setP19(Boolean v) { p19 = v; }
+
+    @Parameter(name = "p20", description = "text parameter")
+    private String p20;
+    public void setP20(String v) { p20 = v; }
+
+    @Parameter(name = "p21", description = "integer parameter")
+    private Integer p21;
+    public void setP21(Integer v) { p21 = v; }
+
+    @Parameter(name = "p22", description = "long parameter")
+    private Long p22;
+    public void setP22(Long v) { p22 = v; }
+
+    @Parameter(name = "p23", description = "decimal parameter")
+    private Double p23;
+    public void setP23(Double v) { p23 = v; }
+
+    @Parameter(name = "p24", description = "enumerated parameter")
+    private Priority p24;
+    public void setP24(Priority v) { p24 = v; }
+
+    @Parameter(name = "p25", description = "flag parameter")
+    private Boolean p25;
+    public void setP25(Boolean v) { p25 = v; }
+
+    @Parameter(name = "p26", description = "text parameter")
+    private String p26;
+    public void setP26(String v) { p26 = v; }
+
+    @Parameter(name = "p27", description = "integer parameter")
+    private Integer p27;
+    public void setP27(Integer v) { p27 = v; }
+
+    @Parameter(name = "p28", description = "long parameter")
+    private Long p28;
+    public void setP28(Long v) { p28 = v; }
+
+    @Parameter(name = "p29", description = "flag parameter")
+    private Boolean p29;
+    public void setP29(Boolean v) { p29 = v; }
+
+    @Parameter(name = "p30", description = "text parameter")
+    private String p30;
+    public void setP30(String v) { p30 = v; }
+
+    @Parameter(name = "p31", description = "integer parameter")
+    private Integer p31;
+    public void setP31(Integer v) { p31 = v; }
+
+    @Parameter(name = "p32", description = "long parameter")
+    private Long p32;
+    public void setP32(Long v) { p32 = v; }
+
+    @Parameter(name = "p33", description = "decimal parameter")
+    private Double p33;
+    public void setP33(Double v) { p33 = v; }
+
+    @Parameter(name = "p34", description = "enumerated parameter")
+    private Priority p34;
+    public void setP34(Priority v) { p34 = v; }
+
+    @Parameter(name = "p35", description = "flag parameter")
+    private Boolean p35;
+    public void setP35(Boolean v) { p35 = v; }
+
+    @Parameter(name = "p36", description = "text parameter")
+    private String p36;
+    public void setP36(String v) { p36 = v; }
+
+    @Parameter(name = "p37", description = "integer parameter")
+    private Integer p37;
+    public void setP37(Integer v) { p37 = v; }
+
+    @Parameter(name = "p38", description = "long parameter")
+    private Long p38;
+    public void setP38(Long v) { p38 = v; }
+
+    @Parameter(name = "p39", description = "flag parameter")
+    private Boolean p39;
+    public void setP39(Boolean v) { p39 = v; }
+
+    @Parameter(name = "p40", description = "text parameter")
+    private String p40;
+    public void setP40(String v) { p40 = v; }
+
+    @Parameter(name = "p41", description = "integer parameter")
+    private Integer p41;
+    public void setP41(Integer v) { p41 = v; }
+
+    @Parameter(name = "p42", description = "long parameter")
+    private Long p42;
+    public void setP42(Long v) { p42 = v; }
+
+    @Parameter(name = "p43", description = "decimal parameter")
+    private Double p43;
+    public void setP43(Double v) { p43 = v; }
+
+    @Parameter(name = "p44", description = "enumerated parameter")
+    private Priority p44;
+    public void setP44(Priority v) { p44 = v; }
+
+    @Parameter(name = "p45", description = "flag parameter")
+    private Boolean p45;
+    public void setP45(Boolean v) { p45 = v; }
+
+    @Parameter(name = "p46", description = "text parameter")
+    private String p46;
+    public void setP46(String v) { p46 = v; }
+
+    @Parameter(name = "p47", description = "integer parameter")
+    private Integer p47;
+    public void setP47(Integer v) { p47 = v; }
+
+    @Parameter(name = "p48", description = "long parameter")
+    private Long p48;
+    public void setP48(Long v) { p48 = v; }
+
+    @Parameter(name = "p49", description = "flag parameter")
+    private Boolean p49;
+    public void setP49(Boolean v) { p49 = v; }
+
+    @Parameter(name = "p50", description = "text parameter")
+    private String p50;
+    public void setP50(String v) { p50 = v; }
+
+    @Parameter(name = "p51", description = "integer parameter")
+    private Integer p51;
+    public void setP51(Integer v) { p51 = v; }
+
+    @Parameter(name = "p52", description = "long parameter")
+    private Long p52;
+    public void setP52(Long v) { p52 = v; }
+
+    @Parameter(name = "p53", description = "decimal parameter")
+    private Double p53;
+    public void setP53(Double v) { p53 = v; }
+
+    @Parameter(name = "p54", description = "enumerated parameter")
+    private Priority p54;
+    public void setP54(Priority v) { p54 = v; }
+
+    @Parameter(name = "p55", description = "flag parameter")
+    private Boolean p55;
+    public void setP55(Boolean v) { p55 = v; }
+
+    @Parameter(name = "p56", description = "text parameter")
+    private String p56;
+    public void setP56(String v) { p56 = v; }
+
+    @Parameter(name = "p57", description = "integer parameter")
+    private Integer p57;
+    public void setP57(Integer v) { p57 = v; }
+
+    @Parameter(name = "p58", description = "long parameter")
+    private Long p58;
+    public void setP58(Long v) { p58 = v; }
+
+    @Parameter(name = "p59", description = "flag parameter")
+    private Boolean p59;
+    public void setP59(Boolean v) { p59 = v; }
+
+    @Parameter(name = "p60", description = "text parameter")
+    private String p60;
+    public void setP60(String v) { p60 = v; }
+
+    @Parameter(name = "p61", description = "integer parameter")
+    private Integer p61;
+    public void setP61(Integer v) { p61 = v; }
+
+    @Parameter(name = "p62", description = "long parameter")
+    private Long p62;
+    public void setP62(Long v) { p62 = v; }
+
+    @Parameter(name = "p63", description = "decimal parameter")
+    private Double p63;
+    public void setP63(Double v) { p63 = v; }
+
+    @Parameter(name = "p64", description = "enumerated parameter")
+    private Priority p64;
+    public void setP64(Priority v) { p64 = v; }
+
+    @Parameter(name = "p65", description = "flag parameter")
+    private Boolean p65;
+    public void setP65(Boolean v) { p65 = v; }
+
+    @Parameter(name = "p66", description = "text parameter")
+    private String p66;
+    public void setP66(String v) { p66 = v; }
+
+    @Parameter(name = "p67", description = "integer parameter")
+    private Integer p67;
+    public void setP67(Integer v) { p67 = v; }
+
+    @Parameter(name = "p68", description = "long parameter")
+    private Long p68;
+    public void setP68(Long v) { p68 = v; }
+
+    @Parameter(name = "p69", description = "flag parameter")
+    private Boolean p69;
+    public void setP69(Boolean v) { p69 = v; }
+
+    @Parameter(name = "p70", description = "text parameter")
+    private String p70;
+    public void setP70(String v) { p70 = v; }
+
+    @Parameter(name = "p71", description = "integer parameter")
+    private Integer p71;
+    public void setP71(Integer v) { p71 = v; }
+
+    @Parameter(name = "p72", description = "long parameter")
+    private Long p72;
+    public void setP72(Long v) { p72 = v; }
+
+    @Parameter(name = "p73", description = "decimal parameter")
+    private Double p73;
+    public void setP73(Double v) { p73 = v; }
+
+    @Parameter(name = "p74", description = "enumerated parameter")
+    private Priority p74;
+    public void setP74(Priority v) { p74 = v; }
+
+    @Parameter(name = "p75", description = "flag parameter")
+    private Boolean p75;
+    public void setP75(Boolean v) { p75 = v; }
+
+    @Parameter(name = "p76", description = "text parameter")
+    private String p76;
+    public void setP76(String v) { p76 = v; }
+
+    @Parameter(name = "p77", description = "integer parameter")
+    private Integer p77;
+    public void setP77(Integer v) { p77 = v; }
+
+    @Parameter(name = "p78", description = "long parameter")
+    private Long p78;
+    public void setP78(Long v) { p78 = v; }
+
+    @Parameter(name = "p79", description = "flag parameter")
+    private Boolean p79;
+    public void setP79(Boolean v) { p79 = v; }
+
+    @Parameter(name = "p80", description = "text parameter")
+    private String p80;
+    public void setP80(String v) { p80 = v; }
+
+    @Parameter(name = "p81", description = "integer parameter")
+    private Integer p81;
+    public void setP81(Integer v) { p81 = v; }
+
+    @Parameter(name = "p82", description = "long parameter")
+    private Long p82;
+    public void setP82(Long v) { p82 = v; }
+
+    @Parameter(name = "p83", description = "decimal parameter")
+    private Double p83;
+    public void setP83(Double v) { p83 = v; }
+
+    @Parameter(name = "p84", description = "enumerated parameter")
+    private Priority p84;
+    public void setP84(Priority v) { p84 = v; }
+
+    @Parameter(name = "p85", description = "flag parameter")
+    private Boolean p85;
+    public void setP85(Boolean v) { p85 = v; }
+
+    @Parameter(name = "p86", description = "text parameter")
+    private String p86;
+    public void setP86(String v) { p86 = v; }
+
+    @Parameter(name = "p87", description = "integer parameter")
+    private Integer p87;
+    public void setP87(Integer v) { p87 = v; }
+
+    @Parameter(name = "p88", description = "long parameter")
+    private Long p88;
+    public void setP88(Long v) { p88 = v; }
+
+    @Parameter(name = "p89", description = "flag parameter")
+    private Boolean p89;
+    public void setP89(Boolean v) { p89 = v; }
+
+    @Parameter(name = "p90", description = "text parameter")
+    private String p90;
+    public void setP90(String v) { p90 = v; }
+
+    @Parameter(name = "p91", description = "integer parameter")
+    private Integer p91;
+    public void setP91(Integer v) { p91 = v; }
+
+    @Parameter(name = "p92", description = "long parameter")
+    private Long p92;
+    public void setP92(Long v) { p92 = v; }
+
+    @Parameter(name = "p93", description = "decimal parameter")
+    private Double p93;
+    public void setP93(Double v) { p93 = v; }
+
+    @Parameter(name = "p94", description = "enumerated parameter")
+    private Priority p94;
+    public void setP94(Priority v) { p94 = v; }
+
+    @Parameter(name = "p95", description = "flag parameter")
+    private Boolean p95;
+    public void setP95(Boolean v) { p95 = v; }
+
+    @Parameter(name = "p96", description = "text parameter")
+    private String p96;
+    public void setP96(String v) { p96 = v; }
+
+    @Parameter(name = "p97", description = "integer parameter")
+    private Integer p97;
+    public void setP97(Integer v) { p97 = v; }
+
+    @Parameter(name = "p98", description = "long parameter")
+    private Long p98;
+    public void setP98(Long v) { p98 = v; }
+
+    @Parameter(name = "p99", description = "flag parameter")
+    private Boolean p99;
+    public void setP99(Boolean v) { p99 = v; }
+
+    @Run
+    public int run(Path cwd) {
+        return 0;
+    }
+}
@@ -0,0 +1,49 @@
+package cli;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole in-process launch of a command (metadata lookup, parsing, binding and run) with every parameter set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SingleShotTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LaunchBenchmark {
+
+    @Param({"1", "10", "100"})
+    int parameters;
+
+    private EntryPoint entryPoint;
+    private String commandClass;
+    private String[] arguments;
+    private Path cwd;
+
+    @Setup
+    public void setup() {
+        entryPoint = new EntryPoint();
+        commandClass = Commands.className(parameters);
+        arguments = Commands.arguments(parameters);
+        cwd = Path.of("").toAbsolutePath();
+    }
+
+    @Benchmark
+    public Integer executeEntryPoint() throws CmdException {
+        return entryPoint.executeEntryPoint(commandClass, cwd, arguments);
+    }
+}
@@ -0,0 +1,21 @@
+package cli;
+
+import cli.annotations.Command;
+import cli.annotations.Parameter;
+import cli.annotations.Run;
+
+import java.nio.file.Path;
+
+// Generated for the benchmarks: parameter pN has the type Commands.TYPES[N % 10]
+@Command(command = "bench1", description = "benchmark command with one parameter")
+public class OneParameterCommand {
+
+    @Parameter(name = "p0", description = "text parameter")
+    private String p0;
+    public void setP0(String v) { p0 = v; }
+
+    @Run
+    public int run(Path cwd) {
+        return 0;
+    }
+}
@@ -0,0 +1,6 @@
+package cli;
+
+public enum Priority {
+
+    LOW, MEDIUM, HIGH
+}
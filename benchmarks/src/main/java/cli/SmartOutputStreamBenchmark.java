@@ -0,0 +1,63 @@
+package cli;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes through a SmartOutputStream that captures the output while passing it on, in chunks of several
+ * sizes.  The unbounded capture is emptied after every write; the bounded ones keep their last state (the
+ * cap reached, in the steady state).
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SingleShotTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SmartOutputStreamBenchmark {
+
+    @Param({"1", "128", "65536"})
+    int chunkSize;
+
+    // UNBOUNDED (a ByteArrayOutputStream), or one of the policies with a 1 MB cap
+    @Param({"UNBOUNDED", "HEAD", "TAIL"})
+    String capture;
+
+    private byte[] chunk;
+    private ByteArrayOutputStream baos;
+    private SmartOutputStream stream;
+
+    @Setup
+    public void setup() {
+        chunk = new byte[chunkSize];
+        Arrays.fill(chunk, (byte) 'x');
+        if ("UNBOUNDED".equals(capture)) {
+            baos = new ByteArrayOutputStream();
+            stream = new SmartOutputStream(OutputStream.nullOutputStream(), baos);
+        } else {
+            stream = new SmartOutputStream(OutputStream.nullOutputStream(), 1 << 20, SmartOutputStream.Policy.valueOf(capture));
+        }
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        if (baos != null) baos.reset();
+        stream.write(chunk);
+        return stream.getCapturedBytes();
+    }
+}
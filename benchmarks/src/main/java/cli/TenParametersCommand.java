@@ -0,0 +1,57 @@
+package cli;
+
+import cli.annotations.Command;
+import cli.annotations.Parameter;
+import cli.annotations.Run;
+
+import java.nio.file.Path;
+
+// Generated for the benchmarks: parameter pN has the type Commands.TYPES[N % 10]
+@Command(command = "bench10", description = "benchmark command with ten parameters")
+public class TenParametersCommand {
+
+    @Parameter(name = "p0", description = "text parameter")
+    private String p0;
+    public void setP0(String v) { p0 = v; }
+
+    @Parameter(name = "p1", description = "integer parameter")
+    private Integer p1;
+    public void setP1(Integer v) { p1 = v; }
+
+    @Parameter(name = "p2", description = "long parameter")
+    private Long p2;
+    public void setP2(Long v) { p2 = v; }
+
+    @Parameter(name = "p3", description = "decimal parameter")
+    private Double p3;
+    public void setP3(Double v) { p3 = v; }
+
+    @Parameter(name = "p4", description = "enumerated parameter")
+    private Priority p4;
+    public void setP4(Priority v) { p4 = v; }
+
+    @Parameter(name = "p5", description = "flag parameter")
+    private Boolean p5;
+    public void setP5(Boolean v) { p5 = v; }
+
+    @Parameter(name = "p6", description = "text parameter")
+    private String p6;
+    public void setP6(String v) { p6 = v; }
+
+    @Parameter(name = "p7", description = "integer parameter")
+    private Integer p7;
+    public void setP7(Integer v) { p7 = v; }
+
+    @Parameter(name = "p8", description = "long parameter")
+    private Long p8;
+    public void setP8(Long v) { p8 = v; }
+
+    @Parameter(name = "p9", description = "flag parameter")
+    private Boolean p9;
+    public void setP9(Boolean v) { p9 = v; }
+
+    @Run
+    public int run(Path cwd) {
+        return 0;
+    }
+}
@@ -1,8 +1,10 @@
 package cli;
 
+import java.nio.charset.StandardCharsets;
+
 public enum ANSIEscapeCode {
 
-	
+
 	CLEAR(0),
 	BLACK(30),
 	RED(31),
@@ -14,39 +16,82 @@ public enum ANSIEscapeCode {
 	WHITE(37),
 	BRIGHT_BLUE(34, true),
 	BRIGHT_GREEN(32, true);
-	
+
 	private final int code;
-	private boolean bright = false;
+	private final boolean bright;
+	// Escape sequence, computed once
+	private final String sequence;
+	private final byte[] bytes;
 
 	/**
 	 * Builds an escape code object
 	 * @param code Internal code representation
 	 */
 	ANSIEscapeCode(int code) {
-		this.code = code;
+		this(code, false);
 	}
 
-	ANSIEscapeCode(int code, Boolean bright) {
-		this(code);
+	ANSIEscapeCode(int code, boolean bright) {
+		this.code = code;
 		this.bright = bright;
+		this.sequence = (char)27 + "[" + code + (bright ? ";1" : "") + "m";
+		this.bytes = sequence.getBytes(StandardCharsets.US_ASCII);
 	}
-	
+
 	/**
 	 * ANSI escape code for this color
 	 * @return Internal code representation
 	 */
-	private String getCode() {
-		return Integer.toString(this.code);
+	public int getCode() { return this.code; }
+	public boolean isBright() { return this.bright; }
+
+	/**
+	 * @return Escape sequence that switches to this color.
+	 */
+	public String sequence() { return sequence; }
+
+	// Escape sequence as bytes, shared: it must not be modified
+	byte[] bytes() { return bytes; }
+
+	/**
+	 * @return False if the standard output is not a terminal or the env variable NO_COLOR is set (see
+	 * <a href="https://no-color.org">no-color.org</a>); CLI_COLOR=always or never overrides both.
+	 */
+	public static boolean isEnabled() {
+		return Detection.ENABLED;
 	}
-	private Boolean isBright() { return this.bright; }
-	
+
 	/**
-	 * Returns a string 'painted' in the specified color.
+	 * Returns a string 'painted' in the specified color, even if colors are not {@link #isEnabled() enabled}.
 	 * @param s String to paint.
 	 * @param code Color code to paint the string with.
 	 * @return Painted string
+	 * @deprecated Escape sequences end up in pipes and files: use {@link #paintIfEnabled(String, ANSIEscapeCode)}
+	 * or a {@link ColorWriter}.
 	 */
+	@Deprecated
 	public static String paint(String s, ANSIEscapeCode code) {
-		return (char)27 + "[" + code.getCode() + (code.isBright() ? ";1" : "") + "m" + s + (char)27 + "[0m";
+		return code.sequence + s + CLEAR.sequence;
+	}
+
+	/**
+	 * Returns a string 'painted' in the specified color, unless colors are not {@link #isEnabled() enabled}.
+	 * @param s String to paint.
+	 * @param code Color code to paint the string with.
+	 * @return Painted string, or the string itself
+	 */
+	public static String paintIfEnabled(String s, ANSIEscapeCode code) {
+		return isEnabled() ? code.sequence + s + CLEAR.sequence : s;
+	}
+
+	// Looks at the terminal once, the first time colors are needed
+	private static final class Detection {
+		static final boolean ENABLED = detect(System.getenv("CLI_COLOR"), System.getenv("NO_COLOR"), StandardStreams.isTerminal());
+	}
+
+	static boolean detect(String override, String noColor, boolean terminal) {
+		if ("always".equalsIgnoreCase(override)) return true;
+		if ("never".equalsIgnoreCase(override)) return false;
+		return (noColor == null || noColor.isEmpty()) && terminal;
 	}
 }
@@ -0,0 +1,316 @@
+package cli;
+
+import org.apache.commons.cli.ParseException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Conversions from command line values to the types accepted by parameter setters.  They are shared by
+ * the introspection path in {@link EntryPoint} and the binders generated at build time.
+ * <p>
+ * Besides the primitive and boxed numbers, strings, flags and enums, the converters for other types are kept in
+ * a registry.  It knows {@link Path} and {@link Duration} ({@code PT1M30S}, or a number with one of the units
+ * ns, us, ms, s, m, h, d, as in {@code 500ms}), and any type with a public static {@code valueOf(String)},
+ * {@code of(String)}, {@code parse(CharSequence)} or {@code parse(String)} method, or a public constructor from
+ * a string ({@code BigDecimal}, {@code BigInteger}, {@code URI}, {@code File}, {@code LocalDate}...).  Other types
+ * need a converter registered before the first command is launched.  Parameters of type {@code List} take a
+ * comma separated list of values of their element type.
+ */
+public final class ArgumentConversions {
+
+    // Factory methods of the types without a registered converter, in order of preference
+    private static final List<MethodType> FACTORIES = List.of(
+        MethodType.methodType(Object.class, String.class),
+        MethodType.methodType(Object.class, CharSequence.class)
+    );
+    private static final List<String> FACTORY_NAMES = List.of("valueOf", "of", "parse");
+
+    private static final Map<Class<?>, ArgumentConverter<?>> CONVERTERS = new ConcurrentHashMap<>();
+    // Bound at build time by the generated binders, so they cannot be replaced
+    private static final Set<Class<?>> FIXED = Set.of(
+        String.class, Integer.class, Long.class, Double.class, Float.class, Boolean.class
+    );
+
+    // Converters resolved from the type itself, once per class
+    private static final ClassValue<ArgumentConverter<?>> DERIVED = new ClassValue<>() {
+        @Override
+        protected ArgumentConverter<?> computeValue(Class<?> type) {
+            return derive(type);
+        }
+    };
+
+    private static final ClassValue<EnumTable> ENUM_TABLES = new ClassValue<>() {
+        @Override
+        protected EnumTable computeValue(Class<?> type) {
+            return new EnumTable(type);
+        }
+    };
+
+    static {
+        CONVERTERS.put(String.class, value -> value);
+        CONVERTERS.put(Integer.class, ArgumentConversions::toInteger);
+        CONVERTERS.put(Long.class, ArgumentConversions::toLong);
+        CONVERTERS.put(Double.class, ArgumentConversions::toDouble);
+        CONVERTERS.put(Float.class, ArgumentConversions::toFloat);
+        CONVERTERS.put(Boolean.class, ArgumentConversions::toFlag);
+        CONVERTERS.put(Path.class, ArgumentConversions::toPath);
+        CONVERTERS.put(Duration.class, ArgumentConversions::toDuration);
+    }
+
+    private ArgumentConversions() { }
+
+    /**
+     * Registers the converter of a type, replacing the one it had.  Binders built by introspection resolve
+     * their converters once, so it must be done before the first command is launched.  The conversions of
+     * strings, numbers, flags and enums cannot be replaced.
+     * @param type Type of the parameters.
+     * @param converter Converter.
+     * @param <T> Type of the parameters.
+     */
+    public static <T> void register(Class<T> type, ArgumentConverter<? extends T> converter) {
+        if (type == null || converter == null) throw new IllegalArgumentException("Both the type and the converter are required");
+        if (type.isPrimitive() || type.isEnum() || FIXED.contains(type)) throw new IllegalArgumentException(String.format("Cannot replace the conversion of %s", type));
+        CONVERTERS.put(type, converter);
+    }
+
+    /**
+     * @param type Type of a parameter, primitive types are boxed.
+     * @param <T> Type of the parameter.
+     * @return The registered converter of the type, or else one resolved from the type itself; if there is none,
+     * a converter that always fails.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ArgumentConverter<T> converter(Class<T> type) {
+        var boxed = (Class<T>) MethodType.methodType(type).wrap().returnType();
+        var ret = CONVERTERS.get(boxed);
+        return (ArgumentConverter<T>) (ret != null ? ret : DERIVED.get(boxed));
+    }
+
+    /**
+     * @param type Type of a parameter.
+     * @param value Value of the option.
+     * @param <T> Type of the parameter.
+     * @return Converted value.
+     * @throws ParseException if the value cannot be converted, or there is no converter for the type.
+     */
+    public static <T> T convert(Class<T> type, String value) throws ParseException {
+        return converter(type).convert(value);
+    }
+
+    /**
+     * @param type Type of the elements.
+     * @param value Comma separated values, an empty string for an empty list.
+     * @param <T> Type of the elements.
+     * @return Converted values.
+     * @throws ParseException if any of the values cannot be converted.
+     */
+    public static <T> List<T> toList(Class<T> type, String value) throws ParseException {
+        if (value == null) throw new ParseException(String.format("Could not parse an empty value to a list of %s", type.getName()));
+        if (value.isEmpty()) return List.of();
+        var converter = converter(type);
+        var values = value.split(",", -1);
+        var ret = new Object[values.length];
+        for (var i = 0; i < values.length; i++) ret[i] = converter.convert(values[i].trim());
+        @SuppressWarnings("unchecked")
+        var list = (List<T>) Arrays.asList(ret);
+        return list;
+    }
+
+    // Case insensitive, looked up in a table precomputed for every enum type
+    public static <E extends Enum<E>> E toEnum(Class<E> type, String value) throws ParseException {
+        return type.cast(findEnum(type, value));
+    }
+
+    private static Enum<?> findEnum(Class<?> type, String value) throws ParseException {
+        if (value == null) throw new ParseException(String.format("Could not parse an empty value to type %s", type.getName()));
+        var ret = ENUM_TABLES.get(type).find(value);
+        if (ret == null) throw new ParseException(String.format("Could not parse %s to type %s", value, type.getName()));
+        return ret;
+    }
+
+    public static Integer toInteger(String value) throws ParseException {
+        return parseInt(value);
+    }
+
+    public static Long toLong(String value) throws ParseException {
+        return parseLong(value);
+    }
+
+    // This can be improved by looking closely at precision, etc.
+    public static Double toDouble(String value) throws ParseException {
+        return parseDouble(value);
+    }
+
+    public static Float toFloat(String value) throws ParseException {
+        return parseFloat(value);
+    }
+
+    // An argument-less parameter is supposed to be a Boolean, and if it is present, it is assumed to be true
+    public static Boolean toFlag(String value) throws ParseException {
+        return parseFlag(value);
+    }
+
+    // Same conversions, for the setters of primitive types
+
+    public static int parseInt(String value) throws ParseException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException nfe) {
+            throw unparseable(value);
+        }
+    }
+
+    public static long parseLong(String value) throws ParseException {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException nfe) {
+            throw unparseable(value);
+        }
+    }
+
+    public static double parseDouble(String value) throws ParseException {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException | NullPointerException e) {
+            throw unparseable(value);
+        }
+    }
+
+    public static float parseFloat(String value) throws ParseException {
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException | NullPointerException e) {
+            throw unparseable(value);
+        }
+    }
+
+    public static boolean parseFlag(String value) throws ParseException {
+        if (value != null) throw new ParseException("Boolean types do not allow a value");
+        return true;
+    }
+
+    public static Path toPath(String value) throws ParseException {
+        try {
+            return Path.of(value);
+        } catch (InvalidPathException | NullPointerException e) {
+            throw unparseable(value);
+        }
+    }
+
+    // ISO-8601 (PT10S) or a number and a unit (10s)
+    public static Duration toDuration(String value) throws ParseException {
+        if (value == null) throw unparseable(null);
+        try {
+            var start = value.startsWith("-") || value.startsWith("+") ? 1 : 0;
+            if (start < value.length() && Character.toUpperCase(value.charAt(start)) == 'P') return Duration.parse(value);
+            var unit = value.length();
+            while (unit > start && Character.isLetter(value.charAt(unit - 1))) unit--;
+            var amount = Long.parseLong(value, 0, unit, 10);
+            return switch (value.substring(unit)) {
+                case "ns" -> Duration.ofNanos(amount);
+                case "us" -> Duration.ofNanos(Math.multiplyExact(amount, 1_000L));
+                case "ms" -> Duration.ofMillis(amount);
+                case "s" -> Duration.ofSeconds(amount);
+                case "m" -> Duration.ofMinutes(amount);
+                case "h" -> Duration.ofHours(amount);
+                case "d" -> Duration.ofDays(amount);
+                default -> throw unparseable(value);
+            };
+        } catch (DateTimeParseException | NumberFormatException | ArithmeticException e) {
+            throw unparseable(value);
+        }
+    }
+
+    private static ParseException unparseable(String value) {
+        return new ParseException(String.format("Could not parse '%s' to the expected type", value));
+    }
+
+    // Enums, factory methods and constructors from a string, bound once
+    private static ArgumentConverter<?> derive(Class<?> type) {
+        if (type.isEnum()) return value -> findEnum(type, value);
+        var factory = factory(type);
+        if (factory == null) {
+            return value -> {
+                throw new ParseException(String.format("There is no conversion to type %s", type.getName()));
+            };
+        }
+        return value -> {
+            if (value == null) throw new ParseException(String.format("Could not parse an empty value to type %s", type.getName()));
+            try {
+                return factory.invokeExact(value);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new ParseException(String.format("Could not parse %s to type %s", value, type.getName()));
+            }
+        };
+    }
+
+    // (String)Object handle of a public factory method or constructor of the type, or null
+    private static MethodHandle factory(Class<?> type) {
+        if (!Modifier.isPublic(type.getModifiers())) return null;
+        var lookup = MethodHandles.publicLookup();
+        for (var name : FACTORY_NAMES) {
+            for (var factory : FACTORIES) {
+                try {
+                    var handle = lookup.findStatic(type, name, factory.changeReturnType(type));
+                    return handle.asType(MethodType.methodType(Object.class, String.class));
+                } catch (NoSuchMethodException | IllegalAccessException e) {
+                    // Try the next one
+                }
+            }
+        }
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) return null;
+        try {
+            return lookup.findConstructor(type, MethodType.methodType(void.class, String.class))
+                .asType(MethodType.methodType(Object.class, String.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    // Open addressing table of the constants of an enum, looked up ignoring case without copying the value
+    private static final class EnumTable {
+
+        private final Enum<?>[] slots;
+        private final int mask;
+
+        EnumTable(Class<?> type) {
+            var constants = (Enum<?>[]) type.getEnumConstants();
+            var capacity = Integer.highestOneBit(Math.max(1, constants.length * 2 - 1)) << 1;
+            slots = new Enum<?>[capacity];
+            mask = capacity - 1;
+            for (var constant : constants) {
+                var slot = hash(constant.name()) & mask;
+                while (slots[slot] != null) slot = (slot + 1) & mask;
+                slots[slot] = constant;
+            }
+        }
+
+        // Same folding of characters as String.equalsIgnoreCase
+        private static int hash(String s) {
+            var h = 0;
+            for (var i = 0; i < s.length(); i++) h = h * 31 + Character.toLowerCase(Character.toUpperCase(s.charAt(i)));
+            return h ^ (h >>> 16);
+        }
+
+        Enum<?> find(String value) {
+            for (var slot = hash(value) & mask; slots[slot] != null; slot = (slot + 1) & mask) {
+                if (slots[slot].name().equalsIgnoreCase(value)) return slots[slot];
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package cli;
+
+import org.apache.commons.cli.ParseException;
+
+/**
+ * Converts the value of an option to the type of its parameter.  Converters for new types are registered with
+ * {@link ArgumentConversions#register(Class, ArgumentConverter)}.
+ * @param <T> Type of the parameter
+ */
+@FunctionalInterface
+public interface ArgumentConverter<T> {
+
+    /**
+     * @param value Value of the option in the command line, null for options without a value.
+     * @return Converted value.
+     * @throws ParseException if the value cannot be converted.
+     */
+    T convert(String value) throws ParseException;
+}
@@ -0,0 +1,207 @@
+package cli;
+
+import org.apache.commons.cli.AmbiguousOptionException;
+import org.apache.commons.cli.MissingArgumentException;
+import org.apache.commons.cli.MissingOptionException;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.UnrecognizedOptionException;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Built-in command line parser, an alternative to the DefaultParser of Apache Commons Cli that works on the
+ * option table precomputed for every command, and fills a reusable {@link ParsedArguments}.
+ * It accepts the same forms DefaultParser does for the options of the commands:
+ * <ul>
+ *     <li>{@code -name value}, {@code -long value}, {@code -x=value}, {@code --long value}, {@code --long=value},
+ *     {@code -long=value}, and unambiguous prefixes of long names</li>
+ *     <li>{@code -xVALUE} for single character options with a value, and {@code -abc} for several single
+ *     character flags</li>
+ *     <li>flags do not allow a value, mandatory options must be present, and everything that is not an option
+ *     (or comes after {@code --}) is a positional argument</li>
+ * </ul>
+ * Failures are reported with the same exceptions as Apache Commons Cli.
+ */
+public final class ArgumentParser {
+
+    private static final String PROPERTY = "cli.parser";
+    private static final String ENV_VAR = "CLI_PARSER";
+
+    private final static Logger logger = Logger.getLogger(ArgumentParser.class.getName());
+
+    /**
+     * Parser used by a launcher.
+     */
+    public enum Kind {
+        /** DefaultParser of Apache Commons Cli, the default */
+        COMMONS_CLI,
+        /** {@link ArgumentParser} */
+        BUILTIN;
+
+        /**
+         * @return The parser chosen with the system property cli.parser or else the env variable CLI_PARSER
+         * (builtin or commons-cli); commons-cli if there is none.
+         */
+        public static Kind fromEnvironment() {
+            var value = System.getProperty(PROPERTY);
+            if (value == null || value.isBlank()) value = System.getenv(ENV_VAR);
+            if (value == null || value.isBlank()) return COMMONS_CLI;
+            try {
+                return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException iae) {
+                logger.log(Level.WARNING, String.format("Ignoring unknown parser %s", value));
+                return COMMONS_CLI;
+            }
+        }
+    }
+
+    private ArgumentParser() { }
+
+    /**
+     * Parses a command line against the options of a command.
+     * @param metadata Command.
+     * @param args Command line, not including the command.
+     * @param into Where the result is written, whatever it held before is discarded.
+     * @throws ParseException if an option is unknown, lacks its value or has a value it does not allow, or a
+     * mandatory option is missing (MissingOptionException).
+     */
+    public static void parse(CommandMetadata metadata, String[] args, ParsedArguments into) throws ParseException {
+        parse(metadata.getOptionTable(), args, into);
+    }
+
+    static void parse(OptionTable table, String[] args, ParsedArguments into) throws ParseException {
+        into.reset(table, args);
+        var i = 0;
+        while (i < args.length) {
+            var token = args[i];
+            if (token.equals("--")) {
+                // Everything after it is an argument
+                for (i++; i < args.length; i++) into.addArg(i);
+            } else if (token.length() > 2 && token.startsWith("--")) {
+                i = longOption(table, args, i, into);
+            } else if (token.length() > 1 && token.charAt(0) == '-') {
+                i = shortOption(table, args, i, into);
+            } else {
+                into.addArg(i++);
+            }
+        }
+        checkMandatory(table, into);
+    }
+
+    // --name, --name=value; returns the position of the next token
+    private static int longOption(OptionTable table, String[] args, int i, ParsedArguments into) throws ParseException {
+        var token = args[i];
+        var equals = token.indexOf('=', 2);
+        var end = equals < 0 ? token.length() : equals;
+        var option = findLong(table, token, 2, end);
+        if (option < 0) throw new UnrecognizedOptionException(String.format("Unrecognized option: %s", token), token);
+        if (equals >= 0) {
+            if (!table.hasArg[option]) throw new UnrecognizedOptionException(String.format("Unrecognized option: %s", token), token);
+            into.addOption(option, token.substring(equals + 1));
+            return i + 1;
+        }
+        return optionWithNextValue(table, args, i, option, into);
+    }
+
+    // -name, -long, -x=value, -long=value, -xVALUE, -abc; returns the position of the next token
+    private static int shortOption(OptionTable table, String[] args, int i, ParsedArguments into) throws ParseException {
+        var token = args[i];
+        var equals = token.indexOf('=', 1);
+        if (equals >= 0) {
+            // Only single character short names take a value this way, as in Apache Commons Cli
+            var option = equals == 2 ? table.findShort(token, 1, 2) : -1;
+            if (option < 0 || !table.hasArg[option]) option = findLong(table, token, 1, equals);
+            if (option < 0 || !table.hasArg[option])
+                throw new UnrecognizedOptionException(String.format("Unrecognized option: %s", token), token);
+            into.addOption(option, token.substring(equals + 1));
+            return i + 1;
+        }
+        var option = table.findShort(token, 1, token.length());
+        if (option < 0) option = findLong(table, token, 1, token.length());
+        if (option >= 0) return optionWithNextValue(table, args, i, option, into);
+        // Single character options: -xVALUE, or several flags together
+        var first = table.findShort(token, 1, 2);
+        if (first >= 0 && table.hasArg[first]) {
+            into.addOption(first, token.substring(2));
+            return i + 1;
+        }
+        if (first < 0) throw new UnrecognizedOptionException(String.format("Unrecognized option: %s", token), token);
+        for (var j = 1; j < token.length(); j++) {
+            var flag = table.findShort(token, j, j + 1);
+            if (flag < 0) throw new UnrecognizedOptionException(String.format("Unrecognized option: %s", token), token);
+            if (table.hasArg[flag]) {
+                // The rest of the token, or else the next one, is its value
+                if (j + 1 < token.length()) {
+                    into.addOption(flag, token.substring(j + 1));
+                    return i + 1;
+                }
+                return optionWithNextValue(table, args, i, flag, into);
+            }
+            into.addOption(flag, null);
+        }
+        return i + 1;
+    }
+
+    // An option without a value in its token: its value (if it takes one) is the next token
+    private static int optionWithNextValue(OptionTable table, String[] args, int i, int option, ParsedArguments into)
+            throws ParseException {
+        if (!table.hasArg[option]) {
+            into.addOption(option, null);
+            return i + 1;
+        }
+        if (i + 1 >= args.length || !isValue(table, args[i + 1])) {
+            throw new MissingArgumentException(table.options.getOption(table.keys[option]));
+        }
+        into.addOption(option, args[i + 1]);
+        return i + 2;
+    }
+
+    // Long option by exact name or unambiguous prefix, -1 if there is none
+    private static int findLong(OptionTable table, String token, int from, int to) throws ParseException {
+        var ret = table.findLong(token, from, to);
+        if (ret >= 0) return ret;
+        ret = table.findLongPrefix(token, from, to);
+        if (ret == -2) {
+            var matching = new ArrayList<String>();
+            for (var name : table.longNames) {
+                if (name != null && name.length() > to - from && name.regionMatches(0, token, from, to - from)) matching.add(name);
+            }
+            throw new AmbiguousOptionException(token.substring(from, to), matching);
+        }
+        return ret;
+    }
+
+    // True if the token can be the value of an option: it is not an option itself, or it is a negative number
+    private static boolean isValue(OptionTable table, String token) {
+        if (token.length() < 2 || token.charAt(0) != '-') return true;
+        if (token.equals("--")) return false;
+        var from = token.startsWith("--") ? 2 : 1;
+        var equals = token.indexOf('=', from);
+        var end = equals < 0 ? token.length() : equals;
+        var isOption = table.findLong(token, from, end) >= 0 || table.findLongPrefix(token, from, end) != -1
+            || (from == 1 && (table.findShort(token, 1, end) >= 0 || table.findShort(token, 1, 2) >= 0));
+        return !isOption || isNegativeNumber(token);
+    }
+
+    private static boolean isNegativeNumber(String token) {
+        try {
+            Double.parseDouble(token);
+            return true;
+        } catch (NumberFormatException nfe) {
+            return false;
+        }
+    }
+
+    private static void checkMandatory(OptionTable table, ParsedArguments into) throws MissingOptionException {
+        ArrayList<String> missing = null;
+        for (var option : table.requiredOptions) {
+            if (into.isPresent(option)) continue;
+            if (missing == null) missing = new ArrayList<>();
+            missing.add(table.keys[option]);
+        }
+        if (missing != null) throw new MissingOptionException(missing);
+    }
+}
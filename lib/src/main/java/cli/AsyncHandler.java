@@ -0,0 +1,166 @@
+package cli;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+
+/**
+ * Handler that hands the records to another one on a background thread, so that logging does not wait for the
+ * console.  The records wait in a ring buffer; when it is full, the oldest record (or with the drop policy
+ * {@code newest}, the incoming one) is dropped, and the number of dropped records is logged later on.  Closing the
+ * handler (the log manager does it when the JVM exits) writes whatever is still in the buffer.
+ * <p>
+ * It is enabled with the env variable CLI_LOG_ASYNC, or configured in the logging properties:
+ * <pre>
+ * handlers = cli.AsyncHandler
+ * cli.AsyncHandler.target = java.util.logging.ConsoleHandler
+ * cli.AsyncHandler.capacity = 1024
+ * cli.AsyncHandler.drop = oldest
+ * </pre>
+ */
+public class AsyncHandler extends Handler {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final Handler target;
+    private final boolean dropOldest;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+    private final LogRecord[] ring;
+    private int head;
+    private int size;
+    private long dropped;
+    // The worker is publishing a record taken from the ring
+    private boolean busy;
+    private boolean closed;
+
+    /** Configured by the log manager properties */
+    public AsyncHandler() {
+        this(newTarget(property("target")), capacity(property("capacity")), !"newest".equalsIgnoreCase(property("drop")));
+    }
+
+    /**
+     * @param target Handler that writes the records.
+     * @param capacity How many records may be waiting.
+     * @param dropOldest When full, drop the oldest record (true) or the incoming one (false).
+     */
+    public AsyncHandler(Handler target, int capacity, boolean dropOldest) {
+        if (capacity < 1) throw new IllegalArgumentException("The capacity must be a positive number");
+        this.target = target;
+        this.dropOldest = dropOldest;
+        this.ring = new LogRecord[capacity];
+        Thread.ofPlatform().name("cli-log").daemon().start(this::drain);
+    }
+
+    private static String property(String name) {
+        return LogManager.getLogManager().getProperty(AsyncHandler.class.getName() + "." + name);
+    }
+
+    private static int capacity(String value) {
+        try {
+            return value == null || value.isBlank() ? DEFAULT_CAPACITY : Integer.parseInt(value.trim());
+        } catch (NumberFormatException nfe) {
+            return DEFAULT_CAPACITY;
+        }
+    }
+
+    private static Handler newTarget(String className) {
+        if (className == null || className.isBlank()) return new ConsoleHandler();
+        try {
+            return (Handler) ClassLoader.getSystemClassLoader().loadClass(className.trim()).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            new ErrorManager().error(String.format("Could not create %s", className), e, ErrorManager.OPEN_FAILURE);
+            return new ConsoleHandler();
+        }
+    }
+
+    /** @return Handler that writes the records */
+    public Handler getTarget() {
+        return target;
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) return;
+        // The caller is inferred from the stack of the thread that logs
+        record.getSourceClassName();
+        lock.lock();
+        try {
+            if (closed) return;
+            if (size == ring.length) {
+                dropped++;
+                if (!dropOldest) return;
+                head = (head + 1) % ring.length;
+                size--;
+            }
+            ring[(head + size) % ring.length] = record;
+            size++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            LogRecord record;
+            long lost;
+            lock.lock();
+            try {
+                busy = false;
+                drained.signalAll();
+                while (size == 0 && !closed) notEmpty.awaitUninterruptibly();
+                if (size == 0) return;
+                record = ring[head];
+                ring[head] = null;
+                head = (head + 1) % ring.length;
+                size--;
+                lost = dropped;
+                dropped = 0;
+                busy = true;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                if (lost > 0) target.publish(new LogRecord(Level.WARNING, String.format("%d log records were dropped", lost)));
+                target.publish(record);
+            } catch (RuntimeException e) {
+                reportError("Could not publish a record", e, ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+
+    /** Waits for the records in the buffer to be written */
+    @Override
+    public void flush() {
+        lock.lock();
+        try {
+            while (size > 0 || busy) drained.awaitUninterruptibly();
+        } finally {
+            lock.unlock();
+        }
+        target.flush();
+    }
+
+    @Override
+    public void close() {
+        flush();
+        long lost;
+        lock.lock();
+        try {
+            closed = true;
+            lost = dropped;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (lost > 0) target.publish(new LogRecord(Level.WARNING, String.format("%d log records were dropped", lost)));
+        target.close();
+    }
+}
@@ -0,0 +1,298 @@
+package cli;
+
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Runs many invocations of a command in a single JVM, one per record read from a file or the standard input.
+ * <pre>
+ * cli.Batch &lt;command class&gt; [--parallel N] [--null] [--status FILE] [FILE]
+ * </pre>
+ * Every record (a line, or a NUL-terminated string with {@code --null}) holds the arguments of one invocation,
+ * separated by blanks; single quotes, double quotes and backslashes work as in a shell.  Blank records are
+ * skipped.  Every invocation gets a fresh command instance and an empty standard input.
+ * The exit code of every record is written to the status file ({@code <record number> TAB <exit code>}), and
+ * the failed ones are also reported in the standard error.  The batch exits with 0 if every invocation did,
+ * or with the exit code of the first record that failed.
+ * With {@code --parallel N}, up to N invocations run at the same time on virtual threads; the output of each
+ * one is held until it finishes and written in the order of the records.
+ */
+public class Batch {
+
+    private final static Logger logger = Logger.getLogger(Batch.class.getName());
+
+    // How many finished invocations may wait for a slower one before the records stop being read
+    private static final int PENDING_PER_THREAD = 4;
+
+    private static final Options options = new Options()
+        .addOption(Option.builder("p").longOpt("parallel").hasArg().argName("N")
+            .desc("run up to N invocations at the same time").build())
+        .addOption(Option.builder("0").longOpt("null")
+            .desc("records are NUL-terminated instead of lines").build())
+        .addOption(Option.builder("s").longOpt("status").hasArg().argName("FILE")
+            .desc("write the exit code of every record to FILE").build())
+        .addOption(Option.builder("h").longOpt("help").desc("print this help").build());
+
+    private final String commandClass;
+    private final int parallel;
+    private final boolean nulTerminated;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final PrintStream status;
+
+    /**
+     * Entry point for batches.
+     * @param args The command class, followed by the options of the batch.
+     */
+    public static void main(String[] args) {
+        // Route the standard streams before anything (logging included) captures them
+        StandardStreams.install();
+        Tracer.startup();
+        var ret = 0;
+        try (var s = Tracer.span("batch")) {
+            ret = launch(args);
+        } catch (CmdException cmde) {
+            logger.log(Level.SEVERE, cmde.getMessage(), cmde);
+            ret = cmde.getReturnCode();
+        }
+        System.exit(ret);
+    }
+
+    private static int launch(String... args) throws CmdException {
+        if (args.length == 0) throw new CmdException("Please specify which command you wish to launch", -1);
+        try {
+            var commandLine = new DefaultParser().parse(options, tail(args), false);
+            if (commandLine.hasOption("help")) {
+                new HelpFormatter().printHelp("batch [options] [FILE]", "Runs a command once per record of FILE "
+                    + "(by default, the standard input)", options, null);
+                return 0;
+            }
+            var files = commandLine.getArgList();
+            if (files.size() > 1) throw new CmdException("Please specify a single input file", -1);
+            var parallel = Integer.parseInt(commandLine.getOptionValue("parallel", "1"));
+            if (parallel < 1) throw new CmdException("The parallelism must be a positive number", -1);
+            var statusFile = commandLine.getOptionValue("status");
+            try (
+                var status = statusFile == null ? null : new PrintStream(new FileOutputStream(statusFile), false, UTF_8);
+                var input = files.isEmpty() || "-".equals(files.getFirst())
+                    ? System.in
+                    : Files.newInputStream(Path.of(files.getFirst()))
+            ) {
+                var batch = new Batch(
+                    args[0],
+                    parallel,
+                    commandLine.hasOption("null"),
+                    StandardStreams.stdout(),
+                    StandardStreams.stderr(),
+                    status
+                );
+                return batch.run(new BufferedReader(new InputStreamReader(input, UTF_8)), Paths.get("").toAbsolutePath());
+            }
+        } catch (ParseException | NumberFormatException e) {
+            throw new CmdException(e, "Wrong batch options", -1);
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            throw new CmdException(e, String.format("Could not open %s", e.getMessage()), -1);
+        } catch (IOException ioe) {
+            throw new CmdException(ioe, "Could not read the batch", -1);
+        }
+    }
+
+    /**
+     * Creates a batch.
+     * @param commandClass Command class to run.
+     * @param parallel Number of invocations that may run at the same time.
+     * @param nulTerminated True if the records are NUL-terminated, false if they are lines.
+     * @param out Standard output of the batch.
+     * @param err Standard error of the batch.
+     * @param status Where the exit code of every record is written, may be null.
+     */
+    Batch(String commandClass, int parallel, boolean nulTerminated, PrintStream out, PrintStream err, PrintStream status) {
+        this.commandClass = commandClass;
+        this.parallel = parallel;
+        this.nulTerminated = nulTerminated;
+        this.out = out;
+        this.err = err;
+        this.status = status;
+    }
+
+    /**
+     * Runs an invocation per record.
+     * @param input Records.
+     * @param cwd Working directory of the invocations.
+     * @return 0 if every invocation succeeded, the exit code of the first failed record otherwise.
+     * @throws IOException if the records cannot be read.
+     */
+    int run(BufferedReader input, Path cwd) throws IOException {
+        var aggregate = 0;
+        var record = 0;
+        if (parallel == 1) {
+            for (var arguments = next(input); arguments != null; arguments = next(input)) {
+                record++;
+                if (arguments.isBlank()) continue;
+                var code = execute(arguments, cwd, new StandardStreams.Target(InputStream.nullInputStream(), out, err));
+                aggregate = report(record, code, aggregate);
+            }
+            return aggregate;
+        }
+        var running = new Semaphore(parallel);
+        var pending = new ArrayDeque<CompletableFuture<Result>>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (var arguments = next(input); arguments != null; arguments = next(input)) {
+                record++;
+                if (arguments.isBlank()) continue;
+                final var number = record;
+                final var line = arguments;
+                pending.add(CompletableFuture.supplyAsync(() -> {
+                    var result = new Result(number);
+                    running.acquireUninterruptibly();
+                    try {
+                        result.code = execute(line, cwd, new StandardStreams.Target(
+                            InputStream.nullInputStream(), result.out, result.err
+                        ));
+                    } finally {
+                        running.release();
+                    }
+                    return result;
+                }, executor));
+                // Write what is already finished, in order, keeping a bounded number of results in memory
+                while (!pending.isEmpty()
+                    && (pending.peek().isDone() || pending.size() >= parallel * PENDING_PER_THREAD)) {
+                    aggregate = write(pending.poll().join(), aggregate);
+                }
+            }
+            while (!pending.isEmpty()) aggregate = write(pending.poll().join(), aggregate);
+        }
+        return aggregate;
+    }
+
+    // Output of an invocation run in parallel
+    private static class Result {
+        final int record;
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int code;
+
+        Result(int record) {
+            this.record = record;
+        }
+    }
+
+    private int write(Result result, int aggregate) {
+        writeTo(result.out, out);
+        writeTo(result.err, err);
+        return report(result.record, result.code, aggregate);
+    }
+
+    private static void writeTo(ByteArrayOutputStream buffer, PrintStream stream) {
+        if (buffer.size() == 0) return;
+        stream.write(buffer.toByteArray(), 0, buffer.size());
+        stream.flush();
+    }
+
+    private int report(int record, int code, int aggregate) {
+        if (status != null) status.printf("%d\t%d%n", record, code);
+        if (code == 0) return aggregate;
+        err.printf("record %d: exit code %d%n", record, code);
+        return aggregate == 0 ? code : aggregate;
+    }
+
+    // Runs the invocation of a record with its own standard streams, returning the exit code
+    private int execute(String arguments, Path cwd, StandardStreams.Target target) {
+        StandardStreams.route(target);
+        try {
+            var args = new ArrayList<String>();
+            args.add(commandClass);
+            args.addAll(split(arguments));
+            var ret = EntryPoint.launch(cwd, args.toArray(new String[0]));
+            return ret == null ? 0 : ret;
+        } catch (CmdException cmde) {
+            logger.log(Level.FINE, cmde.getMessage(), cmde);
+            System.err.println(cmde.getMessage());
+            return cmde.getReturnCode();
+        } catch (RuntimeException e) {
+            logger.log(Level.FINE, e.getMessage(), e);
+            System.err.println(e);
+            return -1337;
+        } finally {
+            StandardStreams.release();
+        }
+    }
+
+    // Next record, or null at the end of the input
+    private String next(BufferedReader input) throws IOException {
+        if (!nulTerminated) return input.readLine();
+        var ret = new StringBuilder();
+        int c;
+        while ((c = input.read()) >= 0 && c != '\0') ret.append((char) c);
+        return c < 0 && ret.isEmpty() ? null : ret.toString();
+    }
+
+    /**
+     * Splits a record into arguments, the way a shell would (without expansions).
+     * @param record Arguments of an invocation.
+     * @return List of arguments.
+     * @throws CmdException if a quote is not closed.
+     */
+    static List<String> split(String record) throws CmdException {
+        var ret = new ArrayList<String>();
+        var current = new StringBuilder();
+        var inArgument = false;
+        char quote = 0;
+        for (var i = 0; i < record.length(); i++) {
+            var c = record.charAt(i);
+            if (quote == '\'') {
+                if (c == '\'') quote = 0;
+                else current.append(c);
+            } else if (quote == '"') {
+                if (c == '"') quote = 0;
+                else if (c == '\\' && i + 1 < record.length() && "\"\\$`".indexOf(record.charAt(i + 1)) >= 0)
+                    current.append(record.charAt(++i));
+                else current.append(c);
+            } else if (Character.isWhitespace(c)) {
+                if (inArgument) ret.add(current.toString());
+                current.setLength(0);
+                inArgument = false;
+            } else {
+                inArgument = true;
+                if (c == '\'' || c == '"') quote = c;
+                else if (c == '\\' && i + 1 < record.length()) current.append(record.charAt(++i));
+                else current.append(c);
+            }
+        }
+        if (quote != 0) throw new CmdException(String.format("Unterminated quote in %s", record), -1);
+        if (inArgument) ret.add(current.toString());
+        return ret;
+    }
+
+    private static String[] tail(String[] args) {
+        var ret = new String[args.length - 1];
+        System.arraycopy(args, 1, ret, 0, ret.length);
+        return ret;
+    }
+}
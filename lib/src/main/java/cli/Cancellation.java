@@ -0,0 +1,136 @@
+package cli;
+
+import org.apache.commons.cli.ParseException;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Cancellation of the Run method of a command with a time limit: the {@code timeout} of its Command annotation,
+ * or the framework option {@code --timeout} (as in {@code 30s}, {@code 30} or {@code PT1M}; 0 for no limit).
+ * Such a Run method runs on a virtual thread; when the time is up, the thread is interrupted, its token is
+ * cancelled, and the invocation fails with the return code {@link #TIMEOUT}.  Long computations that do not
+ * block can poll the token:
+ * <pre>
+ * for (var row : rows) {
+ *     Cancellation.current().throwIfCancelled();
+ *     ...
+ * }
+ * </pre>
+ */
+public final class Cancellation {
+
+    /** Return code of the commands that ran out of time, as in the timeout utility */
+    public static final int TIMEOUT = 124;
+
+    static final String OPTION = "timeout";
+
+    // How long a cancelled Run method is given to finish its output
+    private static final Duration GRACE = Duration.ofMillis(100);
+
+    // Token of the Run method run by the current thread
+    private static final ThreadLocal<Cancellation> current = new ThreadLocal<>();
+    // Token of the Run methods without a time limit
+    private static final Cancellation NONE = new Cancellation();
+
+    private volatile boolean cancelled;
+
+    private Cancellation() { }
+
+    /** @return Token of the Run method run by the current thread; never cancelled if it has no time limit */
+    public static Cancellation current() {
+        var ret = current.get();
+        return ret == null ? NONE : ret;
+    }
+
+    /** @return True once the Run method has run out of time */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException if the Run method has run out of time.
+     */
+    public void throwIfCancelled() {
+        if (cancelled) throw new CancellationException("The command ran out of time");
+    }
+
+    /**
+     * @param metadata Command.
+     * @param option Value of the --timeout framework option, null if there is none.
+     * @return Time limit of the Run method, null for none.
+     * @throws CmdException if the value of the option is not a duration.
+     */
+    static Duration limit(CommandMetadata metadata, String option) throws CmdException {
+        if (option == null) return metadata.getTimeout();
+        try {
+            return parseLimit(option);
+        } catch (ParseException e) {
+            throw new CmdException(String.format("The timeout must be a duration: %s", option), -1);
+        }
+    }
+
+    /**
+     * Parses a timeout as the command line and the {@link cli.annotations.Command} annotation take it.
+     * @param value A duration (30s, PT1M), or a number of seconds.
+     * @return Time limit, null for none (zero or negative).
+     * @throws ParseException if it is not a duration.
+     */
+    public static Duration parseLimit(String value) throws ParseException {
+        var trimmed = value.trim();
+        var ret = !trimmed.isEmpty() && trimmed.chars().allMatch(Character::isDigit)
+            ? ArgumentConversions.toDuration(trimmed + "s")
+            : ArgumentConversions.toDuration(trimmed);
+        return ret.isNegative() || ret.isZero() ? null : ret;
+    }
+
+    /**
+     * Runs the Run method on a virtual thread, cancelling it if it does not return in time.
+     * @param run Run method.
+     * @param limit Time limit.
+     * @param command Name of the command.
+     * @return Exit code.
+     * @throws CmdException with the return code {@link #TIMEOUT} if the time is up.
+     * @throws Exception whatever the Run method throws.
+     */
+    static Integer run(Callable<Integer> run, Duration limit, String command) throws Exception {
+        var token = new Cancellation();
+        var result = new CompletableFuture<Integer>();
+        // The thread inherits the standard streams of the invocation
+        var thread = Thread.ofVirtual().name("cli-run-" + command).start(() -> {
+            current.set(token);
+            try {
+                result.complete(run.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        try {
+            return result.get(limit.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            if (e.getCause() instanceof Error error) throw error;
+            throw e;
+        } catch (TimeoutException | InterruptedException e) {
+            // Either the time is up or the caller was cancelled itself
+            token.cancelled = true;
+            thread.interrupt();
+            try {
+                thread.join(GRACE);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            System.out.flush();
+            System.err.flush();
+            throw new CmdException(e instanceof TimeoutException
+                ? String.format("%s ran out of time (%s)", command, limit)
+                : String.format("%s was interrupted", command), TIMEOUT);
+        }
+    }
+}
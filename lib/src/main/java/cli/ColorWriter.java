@@ -0,0 +1,184 @@
+package cli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writer of colored text for commands that print a lot, such as listings: text and the precomputed escape
+ * sequences of {@link ANSIEscapeCode} are copied into a byte buffer, without building intermediate strings.  When
+ * colors are off (by default, when {@link ANSIEscapeCode#isEnabled()} says so) the escape sequences are not
+ * written at all.
+ * <pre>
+ * try (var out = new ColorWriter(System.out)) {
+ *     for (var file : files) out.paint(file.name(), ANSIEscapeCode.BLUE).print(' ').print(file.size()).println();
+ * }
+ * </pre>
+ * It is not thread safe.  Closing it flushes it, but does not close the stream.
+ */
+public final class ColorWriter implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final boolean colors;
+    private final Charset charset;
+    // Characters below 0x80 are written as they are
+    private final boolean asciiCompatible;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;
+
+    /**
+     * Writes to a stream, in the encoding of the standard output, with colors if they are enabled.
+     * @param out Stream.
+     */
+    public ColorWriter(OutputStream out) {
+        this(out, ANSIEscapeCode.isEnabled(), stdoutCharset());
+    }
+
+    /**
+     * @param out Stream.
+     * @param colors Write the escape sequences.
+     * @param charset Encoding of the text.
+     */
+    public ColorWriter(OutputStream out, boolean colors, Charset charset) {
+        this.out = out;
+        this.colors = colors;
+        this.charset = charset;
+        this.asciiCompatible = charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)
+            || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    private static Charset stdoutCharset() {
+        var name = System.getProperty("stdout.encoding");
+        try {
+            return name == null ? Charset.defaultCharset() : Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            return Charset.defaultCharset();
+        }
+    }
+
+    /** @return True if the escape sequences are written */
+    public boolean hasColors() {
+        return colors;
+    }
+
+    /**
+     * Switches to a color.
+     * @param code Color, {@link ANSIEscapeCode#CLEAR} for the default one.
+     * @return This writer.
+     */
+    public ColorWriter color(ANSIEscapeCode code) {
+        if (colors) write(code.bytes());
+        return this;
+    }
+
+    /** @return This writer, back to the default color */
+    public ColorWriter reset() {
+        return color(ANSIEscapeCode.CLEAR);
+    }
+
+    /**
+     * Writes text in a color, and goes back to the default one.
+     * @param text Text.
+     * @param code Color.
+     * @return This writer.
+     */
+    public ColorWriter paint(CharSequence text, ANSIEscapeCode code) {
+        return color(code).print(text).reset();
+    }
+
+    public ColorWriter print(CharSequence text) {
+        var length = text.length();
+        var i = 0;
+        while (i < length) {
+            // Runs of ASCII characters go straight into the buffer
+            while (i < length && asciiCompatible && text.charAt(i) < 0x80) {
+                if (count == buffer.length) flushBuffer();
+                buffer[count++] = (byte) text.charAt(i++);
+            }
+            if (i == length) break;
+            var end = i + 1;
+            while (end < length && (!asciiCompatible || text.charAt(end) >= 0x80)) end++;
+            write(text.subSequence(i, end).toString().getBytes(charset));
+            i = end;
+        }
+        return this;
+    }
+
+    public ColorWriter print(char c) {
+        if (c < 0x80 && asciiCompatible) {
+            if (count == buffer.length) flushBuffer();
+            buffer[count++] = (byte) c;
+            return this;
+        }
+        return print(String.valueOf(c));
+    }
+
+    public ColorWriter print(long value) {
+        // Long.MIN_VALUE has 20 characters
+        if (buffer.length - count < 20) flushBuffer();
+        if (value == Long.MIN_VALUE) return print(Long.toString(value));
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        var digits = 1;
+        for (var v = value; v >= 10; v /= 10) digits++;
+        for (var i = count + digits - 1; i >= count; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        count += digits;
+        return this;
+    }
+
+    public ColorWriter println() {
+        write(LINE_SEPARATOR);
+        return this;
+    }
+
+    private void write(byte[] bytes) {
+        if (bytes.length > buffer.length - count) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                try {
+                    out.write(bytes);
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    private void flushBuffer() {
+        if (count == 0) return;
+        try {
+            out.write(buffer, 0, count);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        count = 0;
+    }
+
+    /** Writes the buffer to the stream, and flushes it */
+    public void flush() {
+        flushBuffer();
+        try {
+            out.flush();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
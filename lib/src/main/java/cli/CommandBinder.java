@@ -0,0 +1,104 @@
+package cli;
+
+import cli.annotations.ExitCodePolicy;
+import cli.annotations.Run;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Binds a command class to its command line without reflection.  An implementation is generated at
+ * build time by {@link cli.processor.CommandProcessor} for every class annotated with
+ * {@link cli.annotations.Command}; the entry point falls back to introspection when none is found.
+ * @param <T> Command class
+ */
+public interface CommandBinder<T> {
+
+    /** Suffix appended to the (flattened) binary name of the command class to name its binder */
+    String SUFFIX = "_CliBinder";
+
+    /**
+     * @return The command class this binder was generated for
+     */
+    Class<T> getCommandClass();
+
+    /**
+     * @return A new, unbound instance of the command
+     */
+    T newInstance();
+
+    /**
+     * @return Apache Commons Cli options equivalent to the annotated parameters of the command
+     */
+    Options buildOptions();
+
+    /**
+     * @return The name of the OptionalArgs annotation of the command, or null if it has none
+     */
+    String getOptionalArgs();
+
+    /**
+     * Binders generated by earlier versions of the processor do not implement it, and get the annotation looked
+     * up by reflection.
+     * @return The Run annotation of the command if it runs once per positional argument, null otherwise
+     */
+    default Run getPerItem() {
+        return Arrays.stream(getCommandClass().getDeclaredMethods())
+            .map(m -> m.getAnnotation(Run.class))
+            .filter(r -> r != null && r.perItem())
+            .findFirst().orElse(null);
+    }
+
+    /**
+     * Applies every argument in the command line to the command object.
+     * @param command Command instance.
+     * @param commandLine Parsed command line.
+     * @throws ParseException if any argument cannot be converted to the type expected by its setter.
+     */
+    void applyArguments(T command, CommandLine commandLine) throws ParseException;
+
+    /**
+     * Applies the arguments found by the built-in {@link ArgumentParser} to the command object.  Binders that do
+     * not implement it get the command line parsed again by Apache Commons Cli.
+     * @param command Command instance.
+     * @param arguments Parsed arguments.
+     * @throws ParseException if any argument cannot be converted to the type expected by its setter.
+     */
+    default void applyArguments(T command, ParsedArguments arguments) throws ParseException {
+        applyArguments(command, arguments.toCommandLine());
+    }
+
+    /**
+     * Calls the method annotated with Run.
+     * @param command Command instance, already bound.
+     * @param cwd Working directory.
+     * @return Exit code, or null for background commands.
+     * @throws Exception whatever the command throws.
+     */
+    Integer run(T command, Path cwd) throws Exception;
+
+    /**
+     * Run annotation of a command that runs once per positional argument, for the generated binders.
+     * @param virtualThreads Value of {@link Run#virtualThreads()}.
+     * @param exitCode Value of {@link Run#exitCode()}.
+     * @return Equivalent annotation.
+     */
+    static Run perItem(boolean virtualThreads, ExitCodePolicy exitCode) {
+        return new PerItemRun(virtualThreads, exitCode);
+    }
+
+    /**
+     * Name of the binder class generated for a command class.
+     * @param commandClassName Binary name of the command class.
+     * @return Binary name of its binder.
+     */
+    static String binderName(String commandClassName) {
+        var lastDot = commandClassName.lastIndexOf('.');
+        return commandClassName.substring(0, lastDot + 1)
+            + commandClassName.substring(lastDot + 1).replace('$', '_')
+            + SUFFIX;
+    }
+}
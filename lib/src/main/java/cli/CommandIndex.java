@@ -0,0 +1,191 @@
+package cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Index of the commands of the class path, written at build time by the maven plugin into
+ * {@value #RESOURCE}.  It maps the names (and aliases) of the commands to their classes, so that the entry point
+ * can launch a command by its name without scanning the class path or loading any command class.
+ * Every line describes a command, with tab separated fields:
+ * <pre>
+ * name  class  aliases (comma separated)  background (true/false)  description
+ * </pre>
+ * Lines starting with # are comments.  When there are several indexes in the class path (several jars with
+ * commands), they are merged and the first one wins for a repeated name.
+ */
+public final class CommandIndex {
+
+    /** Location of the index in the class path */
+    public static final String RESOURCE = "META-INF/cli/commands.idx";
+
+    private static final String HEADER = "# cli command index: name, class, aliases, background, description";
+
+    private final static Logger logger = Logger.getLogger(CommandIndex.class.getName());
+
+    // Index of the class path, read once
+    private static volatile CommandIndex current;
+
+    /**
+     * Command in the index.
+     * @param command Name of the command.
+     * @param className Name of the command class.
+     * @param aliases Other names of the command.
+     * @param background True if the command runs in the background.
+     * @param description Description of the command.
+     */
+    public record Entry(String command, String className, List<String> aliases, boolean background, String description) {
+        public Entry {
+            aliases = List.copyOf(aliases);
+            description = description == null ? "" : description;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Entry> byName = new HashMap<>();
+
+    private CommandIndex() { }
+
+    /**
+     * @return The index of the class path of the current thread (empty if there is none), read on first use.
+     */
+    public static CommandIndex get() {
+        var ret = current;
+        if (ret == null) {
+            synchronized (CommandIndex.class) {
+                ret = current;
+                if (ret == null) {
+                    ret = load();
+                    current = ret;
+                }
+            }
+        }
+        return ret;
+    }
+
+    /** Discards the index of the class path, it is read again on next use */
+    static void clear() {
+        current = null;
+    }
+
+    /**
+     * Name of the class to launch for what the user typed.
+     * @param name Name (or alias) of a command, or name of a command class.
+     * @return The class of the command with that name, if it is in the index; otherwise the name itself.
+     */
+    public static String resolve(String name) {
+        if (name == null) return null;
+        var entry = get().lookup(name);
+        return entry == null ? name : entry.className();
+    }
+
+    private static CommandIndex load() {
+        var ret = new CommandIndex();
+        try (var s = Tracer.span("read command index")) {
+            var loader = Thread.currentThread().getContextClassLoader();
+            if (loader == null) loader = CommandIndex.class.getClassLoader();
+            var resources = loader.getResources(RESOURCE);
+            while (resources.hasMoreElements()) {
+                var url = resources.nextElement();
+                try (var reader = new InputStreamReader(url.openStream(), UTF_8)) {
+                    ret.add(reader);
+                } catch (IOException ioe) {
+                    logger.log(Level.WARNING, ioe, () -> String.format("Could not read the command index %s", url));
+                }
+            }
+        } catch (IOException ioe) {
+            logger.log(Level.WARNING, "Could not look for command indexes", ioe);
+        }
+        return ret;
+    }
+
+    /**
+     * Reads an index.
+     * @param reader Contents of the index.
+     * @return Index.
+     * @throws IOException if it cannot be read.
+     */
+    public static CommandIndex read(Reader reader) throws IOException {
+        var ret = new CommandIndex();
+        ret.add(reader);
+        return ret;
+    }
+
+    private void add(Reader reader) throws IOException {
+        var lines = new BufferedReader(reader);
+        for (var line = lines.readLine(); line != null; line = lines.readLine()) {
+            if (line.isBlank() || line.startsWith("#")) continue;
+            var fields = line.split("\t", 5);
+            if (fields.length < 2) {
+                logger.log(Level.WARNING, String.format("Ignoring wrong command index line: %s", line));
+                continue;
+            }
+            var entry = new Entry(
+                fields[0],
+                fields[1],
+                fields.length > 2 && !fields[2].isEmpty() ? List.of(fields[2].split(",")) : List.of(),
+                fields.length > 3 && Boolean.parseBoolean(fields[3]),
+                fields.length > 4 ? fields[4] : ""
+            );
+            entries.add(entry);
+            byName.putIfAbsent(entry.command(), entry);
+            for (var alias: entry.aliases()) byName.putIfAbsent(alias, entry);
+        }
+    }
+
+    /**
+     * Writes an index.
+     * @param entries Commands, in the order they are written.
+     * @param writer Destination, it is not closed.
+     * @throws IOException if it cannot be written.
+     */
+    public static void write(Collection<Entry> entries, Writer writer) throws IOException {
+        writer.write(HEADER);
+        writer.write('\n');
+        for (var entry: entries) {
+            writer.write(entry.command());
+            writer.write('\t');
+            writer.write(entry.className());
+            writer.write('\t');
+            writer.write(String.join(",", entry.aliases()));
+            writer.write('\t');
+            writer.write(Boolean.toString(entry.background()));
+            writer.write('\t');
+            // Single line descriptions
+            writer.write(entry.description().replaceAll("\\s+", " ").trim());
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * @param name Name or alias of a command.
+     * @return The command, or null if it is not in the index.
+     */
+    public Entry lookup(String name) {
+        return byName.get(name);
+    }
+
+    /** @return Commands in the index, in the order they were read */
+    public List<Entry> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /** @return True if there are no commands in the index */
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+}
@@ -0,0 +1,201 @@
+package cli;
+
+import cli.annotations.Command;
+import cli.annotations.OutputMode;
+import cli.annotations.Run;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable description of a command class: its options, its binder (generated at build time, or built
+ * by introspection) and the information in its Command annotation.
+ * It is computed once per class and cached, so that repeated in-process invocations only parse and bind.
+ * Instances are safe to share between threads: the options are never modified after construction (the
+ * default parser of Apache Commons Cli works on copies of them).
+ */
+public final class CommandMetadata {
+
+    // Metadata by class, it does not prevent command classes from being unloaded
+    private static volatile ClassValue<CommandMetadata> byClass = newCache();
+    // Metadata by command class name, as received by the entry point
+    private static final ConcurrentHashMap<String, CommandMetadata> byName = new ConcurrentHashMap<>();
+
+    private final Class<?> commandClass;
+    private final CommandBinder<Object> binder;
+    private final Options options;
+    private final String optionalArgs;
+    private final String command;
+    private final String description;
+    private final boolean background;
+    private final OutputMode outputMode;
+    // Time limit of the Run method, null for none
+    private final Duration timeout;
+    // Run annotation of the commands that run once per positional argument, null for the others
+    private final Run perItem;
+    // Built on first use of the built-in parser
+    private volatile OptionTable optionTable;
+
+    private CommandMetadata(Class<?> commandClass) throws CmdException {
+        var annotation = commandClass.getAnnotation(Command.class);
+        if (annotation == null)
+            throw new CmdException(String.format("%s is not annotated as 'Command'", commandClass.getName()), -1);
+        this.commandClass = commandClass;
+        try (var s = Tracer.span("find binder")) {
+            var generated = Introspection.lookForBinder(commandClass);
+            this.binder = generated != null ? generated : new ReflectiveBinder(commandClass);
+        }
+        try (var s = Tracer.span("build options")) {
+            this.options = binder.buildOptions();
+        }
+        this.optionalArgs = binder.getOptionalArgs();
+        this.command = annotation.command();
+        this.description = annotation.description();
+        this.background = annotation.isBackground();
+        this.outputMode = annotation.output();
+        // Only commands with positional arguments can run per item (the others do not look for their Run method)
+        this.perItem = optionalArgs == null ? null : binder.getPerItem();
+        if (perItem != null && background)
+            throw new CmdException("A command intended to run in the background cannot run per item", -1337);
+        this.timeout = timeout(annotation);
+        if (timeout != null && background)
+            throw new CmdException("A command intended to run in the background cannot have a timeout", -1337);
+    }
+
+    private static Duration timeout(Command annotation) throws CmdException {
+        if (annotation.timeout().isBlank()) return null;
+        try {
+            return Cancellation.parseLimit(annotation.timeout());
+        } catch (ParseException e) {
+            throw new CmdException(String.format("The timeout of %s must be a duration: %s", annotation.command(), annotation.timeout()), -1337);
+        }
+    }
+
+    /**
+     * Metadata for a command class, computed on first use.
+     * @param commandClassName Name of the command class, or name of a command in the {@link CommandIndex}.
+     * @return Cached metadata.
+     * @throws CmdException if the class cannot be found or is not a valid command.
+     */
+    public static CommandMetadata forName(String commandClassName) throws CmdException {
+        var ret = byName.get(commandClassName);
+        if (ret == null) {
+            try (var s = Tracer.span("looking for command")) {
+                ret = forClass(Introspection.lookForCommand(CommandIndex.resolve(commandClassName)));
+            }
+            byName.putIfAbsent(commandClassName, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Metadata for a command class, computed on first use.
+     * @param commandClass Command class.
+     * @return Cached metadata.
+     * @throws CmdException if the class is not a valid command.
+     */
+    public static CommandMetadata forClass(Class<?> commandClass) throws CmdException {
+        try {
+            return byClass.get(commandClass);
+        } catch (InvalidCommand e) {
+            throw e.exception;
+        }
+    }
+
+    /** Discards every cached metadata object, and the command index */
+    public static void clear() {
+        byName.clear();
+        CommandIndex.clear();
+        byClass = newCache();
+    }
+
+    /**
+     * Discards the cached metadata of the classes defined by a class loader, for instance when it is
+     * about to be discarded after a redeployment.
+     * @param classLoader Class loader.
+     */
+    public static void clear(ClassLoader classLoader) {
+        var cache = byClass;
+        CommandIndex.clear();
+        byName.values().removeIf(m -> {
+            var remove = m.commandClass.getClassLoader() == classLoader;
+            if (remove) cache.remove(m.commandClass);
+            return remove;
+        });
+    }
+
+    private static ClassValue<CommandMetadata> newCache() {
+        return new ClassValue<>() {
+            @Override
+            protected CommandMetadata computeValue(Class<?> type) {
+                try (var s = Tracer.span("command metadata")) {
+                    return new CommandMetadata(type);
+                } catch (CmdException e) {
+                    throw new InvalidCommand(e);
+                }
+            }
+        };
+    }
+
+    // Carries a CmdException out of ClassValue.computeValue
+    private static class InvalidCommand extends RuntimeException {
+        private final CmdException exception;
+
+        InvalidCommand(CmdException cause) {
+            super(cause);
+            this.exception = cause;
+        }
+    }
+
+    public Class<?> getCommandClass() { return commandClass; }
+    public String getCommand() { return command; }
+    public String getDescription() { return description; }
+    public boolean isBackground() { return background; }
+    public OutputMode getOutputMode() { return outputMode; }
+    public String getOptionalArgs() { return optionalArgs; }
+    public boolean isPerItem() { return perItem != null; }
+    // Null for no time limit
+    public Duration getTimeout() { return timeout; }
+    // Null unless the command runs per item
+    Run getPerItem() { return perItem; }
+    // Shared between invocations - it must not be modified
+    Options getOptions() { return options; }
+
+    /**
+     * @return True if the command is bound by a binder generated at build time.
+     */
+    public boolean isGenerated() {
+        return !(binder instanceof ReflectiveBinder);
+    }
+
+    Object newInstance() {
+        return binder.newInstance();
+    }
+
+    void applyArguments(Object command, CommandLine commandLine) throws ParseException {
+        binder.applyArguments(command, commandLine);
+    }
+
+    void applyArguments(Object command, ParsedArguments arguments) throws ParseException {
+        binder.applyArguments(command, arguments);
+    }
+
+    // Options precomputed for the built-in parser
+    OptionTable getOptionTable() {
+        var ret = optionTable;
+        if (ret == null) {
+            // Building it twice in a race is harmless
+            ret = new OptionTable(options);
+            optionTable = ret;
+        }
+        return ret;
+    }
+
+    Integer run(Object command, Path cwd) throws Exception {
+        return binder.run(command, cwd);
+    }
+}
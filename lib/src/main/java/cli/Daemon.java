@@ -0,0 +1,317 @@
+package cli;
+
+import jdk.net.ExtendedSocketOptions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Warm JVM that listens on a Unix domain socket and runs, through the {@link EntryPoint}, the commands
+ * sent by the thin client in the generated scripts.
+ * The client sends a request made of NUL-terminated strings, followed by the standard input of the command:
+ * <ul>
+ *     <li>{@value #PROTOCOL}</li>
+ *     <li>Path where the standard error must be written (a fifo created by the client)</li>
+ *     <li>Path where the exit code must be written</li>
+ *     <li>Working directory</li>
+ *     <li>Number of arguments, followed by the arguments (the command class first)</li>
+ *     <li>Environment entries (NAME=value), ended by an empty string</li>
+ * </ul>
+ * The standard output of the command is written back through the socket.  The exit code file is created
+ * as soon as the command is accepted, so that the client can tell a daemon that was not reachable (and
+ * fall back to a normal launch) from a command that did not finish.
+ * Every session runs on its own thread with a fresh command instance; the standard streams are routed to
+ * the session of the current thread (or of the thread that started it) by {@link StandardStreams}.
+ */
+public class Daemon {
+
+    static final String PROTOCOL = "cli-daemon/1";
+
+    private static final String IDLE_ENV_VAR = "CLI_DAEMON_IDLE_SECONDS";
+    private static final String SESSIONS_ENV_VAR = "CLI_DAEMON_MAX_SESSIONS";
+
+    private final static Logger logger = Logger.getLogger(Daemon.class.getName());
+
+    // Session of the current thread, inherited by the threads it creates (for its environment)
+    private static final InheritableThreadLocal<Session> current = new InheritableThreadLocal<>();
+
+    private final Path socket;
+    private final Duration idleTimeout;
+    private final int maxSessions;
+    private final Semaphore sessions;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger counter = new AtomicInteger();
+    private volatile long lastActivity = System.nanoTime();
+    private volatile ServerSocketChannel server;
+
+    /**
+     * Starts a daemon.
+     * @param args Path of the socket.  The idle timeout (in seconds) and the maximum number of concurrent
+     *             sessions may be set with the env variables CLI_DAEMON_IDLE_SECONDS and CLI_DAEMON_MAX_SESSIONS.
+     */
+    public static void main(String[] args) {
+        // Route the standard streams before anything (logging included) captures them
+        StandardStreams.install();
+        var ret = 0;
+        try {
+            if (args.length != 1) throw new CmdException("Please specify the path of the daemon socket", -1);
+            new Daemon(
+                Path.of(args[0]),
+                Duration.ofSeconds(getEnv(IDLE_ENV_VAR, 900)),
+                getEnv(SESSIONS_ENV_VAR, Runtime.getRuntime().availableProcessors())
+            ).serve();
+        } catch (CmdException cmde) {
+            logger.log(Level.SEVERE, cmde.getMessage(), cmde);
+            ret = cmde.getReturnCode();
+        }
+        System.exit(ret);
+    }
+
+    Daemon(Path socket, Duration idleTimeout, int maxSessions) {
+        this.socket = socket;
+        this.idleTimeout = idleTimeout;
+        this.maxSessions = Math.max(1, maxSessions);
+        this.sessions = new Semaphore(this.maxSessions);
+    }
+
+    /**
+     * Environment of the command being run.  Inside a daemon session it is the environment of the client,
+     * otherwise the environment of this process.
+     * @return Environment variables.
+     */
+    public static Map<String, String> getenv() {
+        var session = current.get();
+        return session == null ? System.getenv() : session.environment;
+    }
+
+    private static int getEnv(String name, int defaultValue) {
+        var value = System.getenv(name);
+        try {
+            return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+        } catch (NumberFormatException nfe) {
+            logger.log(Level.WARNING, () -> String.format("Ignoring %s=%s", name, value));
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Accepts sessions until the daemon is idle for longer than its timeout, or it is stopped.
+     * @throws CmdException if the socket cannot be bound.
+     */
+    void serve() throws CmdException {
+        if (isAlive()) {
+            logger.log(Level.FINE, () -> String.format("A daemon is already listening on %s", socket));
+            return;
+        }
+        ScheduledExecutorService watchdog = null;
+        try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            // A socket file nobody listens on is a leftover of a previous daemon
+            Files.deleteIfExists(socket);
+            server.bind(UnixDomainSocketAddress.of(socket));
+            restrictPermissions();
+            this.server = server;
+            watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+                var t = new Thread(r, "cli-daemon-watchdog");
+                t.setDaemon(true);
+                return t;
+            });
+            var period = Math.max(1, Math.min(idleTimeout.toMillis() / 4, 1000));
+            watchdog.scheduleAtFixedRate(this::checkIdle, period, period, TimeUnit.MILLISECONDS);
+            logger.log(Level.FINE, () -> String.format("Daemon listening on %s", socket));
+            while (server.isOpen()) {
+                sessions.acquireUninterruptibly();
+                final SocketChannel channel;
+                try {
+                    channel = server.accept();
+                } catch (ClosedChannelException e) {
+                    sessions.release();
+                    break;
+                }
+                active.incrementAndGet();
+                Thread.ofPlatform().name("cli-session-" + counter.incrementAndGet()).start(() -> {
+                    try {
+                        new Session(channel).run();
+                    } finally {
+                        lastActivity = System.nanoTime();
+                        active.decrementAndGet();
+                        sessions.release();
+                    }
+                });
+            }
+            // Let the sessions still running finish
+            sessions.acquireUninterruptibly(maxSessions);
+        } catch (IOException ioe) {
+            throw new CmdException(ioe, String.format("Could not listen on %s", socket), -1);
+        } finally {
+            if (watchdog != null) watchdog.shutdownNow();
+            try {
+                Files.deleteIfExists(socket);
+            } catch (IOException ioe) {
+                logger.log(Level.FINE, ioe, () -> String.format("Could not delete %s", socket));
+            }
+        }
+    }
+
+    /** Stops accepting sessions; the ones running are allowed to finish */
+    void stop() {
+        var server = this.server;
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException ioe) {
+                logger.log(Level.FINE, "Could not close the daemon socket", ioe);
+            }
+        }
+    }
+
+    private void checkIdle() {
+        var idle = System.nanoTime() - lastActivity;
+        if (active.get() == 0 && idle > idleTimeout.toNanos()) {
+            logger.log(Level.FINE, "Daemon idle, shutting down");
+            stop();
+        }
+    }
+
+    // True if another daemon is already listening on the socket
+    private boolean isAlive() {
+        if (!Files.exists(socket)) return false;
+        try (var channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            return channel.isConnected();
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    private void restrictPermissions() {
+        try {
+            Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException | IOException e) {
+            logger.log(Level.FINE, e, () -> String.format("Could not restrict permissions of %s", socket));
+        }
+    }
+
+    // One command invocation
+    private static class Session {
+
+        private final SocketChannel channel;
+        private Map<String, String> environment;
+        private InputStream in;
+        private OutputStream out;
+        private OutputStream err;
+
+        Session(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void run() {
+            try (channel) {
+                checkPeer();
+                var input = new BufferedInputStream(Channels.newInputStream(channel));
+                if (!PROTOCOL.equals(readString(input))) throw new IOException("Unknown protocol");
+                var errPath = readString(input);
+                var statusPath = Path.of(readString(input));
+                var cwd = Path.of(readString(input));
+                var args = new String[Integer.parseInt(readString(input))];
+                for (var i = 0; i < args.length; i++) args[i] = readString(input);
+                environment = new HashMap<>();
+                for (var entry = readString(input); !entry.isEmpty(); entry = readString(input)) {
+                    var idx = entry.indexOf('=');
+                    if (idx > 0) environment.put(entry.substring(0, idx), entry.substring(idx + 1));
+                }
+                // Background commands launched by name from the dispatcher script: the client runs them as usual
+                var entry = args.length == 0 ? null : CommandIndex.get().lookup(args[0]);
+                if (entry != null && entry.background()) return;
+                in = input;
+                out = new BufferedOutputStream(Channels.newOutputStream(channel));
+                try {
+                    // The client waits for the end of its standard error once the status file is there: the fifo
+                    //  is opened before, and closed whatever happens
+                    err = errPath.isEmpty() ? out : new BufferedOutputStream(new FileOutputStream(errPath));
+                    // From now on, the client will not fall back to a normal launch
+                    Files.writeString(statusPath, "");
+                    var code = execute(cwd, args);
+                    Files.writeString(statusPath, Integer.toString(code & 0xff));
+                } finally {
+                    closeErr();
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "Daemon session failed", e);
+            }
+        }
+
+        private void closeErr() {
+            if (err == null || err == out) return;
+            try {
+                err.close();
+            } catch (IOException ioe) {
+                logger.log(Level.FINE, "Could not close the standard error of the session", ioe);
+            }
+        }
+
+        private int execute(Path cwd, String[] args) throws IOException {
+            var ret = 0;
+            current.set(this);
+            StandardStreams.route(new StandardStreams.Target(in, out, err));
+            try {
+                var code = EntryPoint.launch(cwd, args);
+                if (code != null) ret = code;
+            } catch (CmdException cmde) {
+                logger.log(Level.FINE, cmde.getMessage(), cmde);
+                err.write(String.format("%s%n", cmde.getMessage()).getBytes(UTF_8));
+                ret = cmde.getReturnCode();
+            } finally {
+                StandardStreams.release();
+                current.remove();
+                out.flush();
+            }
+            return ret;
+        }
+
+        // Only the user running the daemon may send it commands
+        private void checkPeer() throws IOException {
+            try {
+                var peer = channel.getOption(ExtendedSocketOptions.SO_PEERCRED).user().getName();
+                if (!peer.equals(System.getProperty("user.name")))
+                    throw new IOException(String.format("Rejected session from user %s", peer));
+            } catch (UnsupportedOperationException uoe) {
+                // Rely on the permissions of the socket file
+            }
+        }
+
+        private static String readString(InputStream input) throws IOException {
+            var buffer = new ByteArrayOutputStream();
+            for (var b = input.read(); b != 0; b = input.read()) {
+                if (b < 0) throw new IOException("Truncated request");
+                buffer.write(b);
+            }
+            return buffer.toString(UTF_8);
+        }
+    }
+
+}
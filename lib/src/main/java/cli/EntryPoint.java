@@ -1,34 +1,17 @@
 package cli;
 
-import cli.annotations.Command;
-import cli.annotations.OptionalArgs;
-import cli.annotations.Parameter;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
-import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.MissingOptionException;
-import org.apache.commons.cli.Option;
-import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
-import java.io.ByteArrayOutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Properties;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
-
-import static java.lang.String.format;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * Common launcher for all the commands. 
@@ -43,102 +26,100 @@ class EntryPoint {
 	 * @param args Command arguments
 	 */
 	public static void main(String[] args) {
+		Tracer.startup();
+		// The classes of the command are loaded in the background while the main thread gets to them
+		Preloader.start(args);
 		Integer ret = 0;
-		try (var s = new Stopwatch("Total time")) {
+		try (var s = Tracer.span("main")) {
 			var currentPath = Paths.get("").toAbsolutePath();
-			var command = head(args);
-			var rest = tail(args);
-			// Special case: when asked for --help, print the help straight now
-			if (rest.length == 1 && Arrays.stream(rest).toList().contains("--help")) {
-				printHelp(command);
-			} else {
-				var entry = new EntryPoint();
-				ret = entry.executeEntryPoint(command, currentPath, rest);
-			}
+			ret = launch(currentPath, true, args);
 		} catch (CmdException cmde) {
+			// The output of the command has been flushed by now, it goes before the error
 			logger.log(Level.SEVERE, cmde.getMessage(), cmde);
+			Tracer.span("exit");
 			System.exit(cmde.getReturnCode());
 		}
 		// The command returned some exit code, this is our return code
+		//	(the exit span stays open: it is measured until the shutdown hooks report it)
+		Tracer.span("exit");
 		if (ret != null) System.exit(ret);
 	}
 
-	private static boolean isEmpty(String s) {
-		return s == null || s.isEmpty();
+	// Runs a command line (the command class first), returning the exit code of the command.
+	//	It is shared by the launcher and the daemon sessions
+	static Integer launch(Path currentPath, String... args) throws CmdException {
+		return launch(currentPath, false, args);
 	}
-	
-	// Prints the help generated by Apache Commons Cli for the specified
-	//	command
-	private static void printHelp(String commandClassName) throws CmdException {
-		var introspection = new Introspection(commandClassName);
-		var commandClass = introspection.getCommandClass();
-		var options = buildOptions(commandClass);
-		var optionalArg = lookForOptionalArgs(commandClass);
-		var commandName = commandClass.getAnnotation(Command.class).command();
-		var commandDescription = commandClass.getAnnotation(Command.class).description();
-		var footer = "%nv%s";
 
-		var formatter = new HelpFormatter();
-		if (optionalArg != null) {
-			// Format the usage in order to show a list of arguments if necessary
-			var baos = new ByteArrayOutputStream();
-			var writer = new OutputStreamWriter(baos, UTF_8);
-			var pwTemp = new PrintWriter(writer);
-			formatter.printUsage(pwTemp, 120, "ls", options);
-			pwTemp.flush();
-            var usage = (baos.toString(UTF_8) + format(" [%s]...", optionalArg)).replaceAll("[\r\n]", "");
-			usage = usage.replace("usage:", "");
-			formatter.printHelp(
-				usage, 
-				commandDescription, 
-				options,
-				isEmpty(getVersion()) ? null : format(footer, getVersion()),
-				false);
+	// Supervised (only in the launcher): background commands run under the supervisor, a single instance per
+	//	host, stopped on request.  It is checked once the command is loaded, so that the main thread does not
+	//	load it any earlier than the preloader
+	private static Integer launch(Path currentPath, boolean supervised, String... args) throws CmdException {
+		// The dispatcher script passes the name of the command instead of its class
+		var command = CommandIndex.resolve(head(args));
+		// Dispatcher with no command: list the available ones
+		if ((command == null || isHelp(args)) && !CommandIndex.get().isEmpty()) {
+			printCommands(CommandIndex.get());
+			return command == null ? -1 : 0;
 		}
-		else {
-			formatter.printHelp(
-				commandName, 
-				commandDescription, 
-				options,
-				isEmpty(getVersion()) ? null : format(footer, getVersion()),
-				true);
+		var rest = args.length == 0 ? args : tail(args);
+		// Special case: when asked for --help, print the help straight now
+		if (isHelp(rest)) {
+			try (var s = Tracer.span("print help")) {
+				printHelp(command);
+			}
+			return 0;
 		}
+		var entry = new EntryPoint();
+		return entry.executeEntryPoint(command, currentPath, supervised, rest);
 	}
 
-	// Looks for an OptionalArgs annotation; it means that the command accepts
-	//	additional arguments such as ls or df.
-	// It returns the name argument of the OptionalArgs annotation or null if
-	//	not found
-	private static String lookForOptionalArgs(@SuppressWarnings("rawtypes") Class commandClass) {
-		var fields = commandClass.getDeclaredFields();
-		String ret = null;
-		for (var field: fields) {
-			if (field.isAnnotationPresent(OptionalArgs.class)) {
-				var annotation = field.getAnnotation(OptionalArgs.class);
-				ret = annotation.name();
-			}
-		}
-		return ret;
+	private static boolean isHelp(String... args) {
+		return args.length == 1 && "--help".equals(args[0]);
 	}
 
-	// Gets the current application version from the cli.properties file
-	private static String getVersion() {
-		var ret = "";
-		try (var is = EntryPoint.class.getClassLoader().getResourceAsStream("cli.properties")) {
-			var prop = new Properties();
-			prop.load(is);
-			ret = prop.getProperty("cli.version");
-		}
-		catch(Exception e) {
-			// No version
-			logger.log(Level.FINE, "Could not find cli.version in cli.properties - Please define it in order to get a version footer in the command help");
+	// Prints the help of the specified command: the one rendered at build time if there is any (this
+	//	does not even load the command), otherwise the one generated by Apache Commons Cli
+	private static void printHelp(String commandClassName) throws CmdException {
+		if (!Help.printPrecomputed(commandClassName, System.out))
+			printHelp(CommandMetadata.forName(commandClassName));
+	}
+
+	static void printHelp(CommandMetadata metadata) {
+		Help.print(metadata, System.out);
+	}
+
+	// Prints the commands in the index, with their aliases and descriptions
+	private static void printCommands(CommandIndex index) {
+		var names = index.entries().stream().map(e ->
+			e.aliases().isEmpty() ? e.command() : String.format("%s (%s)", e.command(), String.join(", ", e.aliases()))
+		).toList();
+		var width = names.stream().mapToInt(String::length).max().orElse(0);
+		System.out.println("usage: <command> [options]");
+		System.out.println("Commands:");
+		for (var i = 0; i < names.size(); i++) {
+			System.out.printf("  %-" + width + "s   %s%n", names.get(i), index.entries().get(i).description());
 		}
-		return ret;
+		System.out.println("Run <command> --help for the options of a command");
+		System.out.flush();
+	}
+
+	// Parser of the command lines
+	private final ArgumentParser.Kind parser;
+
+	// Initializes an entry point with the parser chosen by the cli.parser system property
+	//	or the CLI_PARSER env variable (Apache Commons Cli by default)
+	public EntryPoint() {
+		this(ArgumentParser.Kind.fromEnvironment());
 	}
 
-	// Initializes an entry point with its proper standard and error output
-	//	buffers
-	public EntryPoint() { }
+	/**
+	 * Initializes an entry point with a specific parser.
+	 * @param parser Parser of the command lines.
+	 */
+	public EntryPoint(ArgumentParser.Kind parser) {
+		this.parser = parser;
+	}
 
 	/**
 	 * Executes a command with certain parameters and path.
@@ -149,16 +130,18 @@ class EntryPoint {
 	 */
 	public Integer executeEntryPoint(String command, Path currentPath, String... commandArguments)
 			throws CmdException {
+		return executeEntryPoint(command, currentPath, false, commandArguments);
+	}
+
+	private Integer executeEntryPoint(String command, Path currentPath, boolean supervised, String... commandArguments)
+			throws CmdException {
 		final Integer ret;
 		if (command != null) {
-			var introspection = new Introspection(command);
-			try (var s = new Stopwatch("execute command")) {
-				ret = executeCommand(
-					introspection.getCommand(),
-					introspection.getMethod(),
-					currentPath,
-					commandArguments
-				);
+			// Introspection (or the generated binder lookup) only happens on the first call for each class
+			var metadata = CommandMetadata.forName(command);
+			if (supervised && metadata.isBackground()) Supervisor.start(metadata);
+			try (var s = Tracer.span("execute command")) {
+				ret = Invocation.execute(metadata, parser, currentPath, commandArguments);
 			}
 		}
 		else {
@@ -167,212 +150,186 @@ class EntryPoint {
 		return ret;
 	}
 	
-	// Executes the line command, returning the exit code
-	private Integer executeCommand(
-			Object command, 
-			Method execute, 
-			Path currentPath,
-			String... args) throws CmdException {
-		Object ret;
-		try {
-			// Every command should have an execute method with:
-			// + Current path for the command
-			var commandLine = new DefaultParser().parse(
-				buildOptions(command.getClass()), 
-				args,
-				// Fail if there is something unrecognized
-				false
-			);
-			applyArguments(command, commandLine);
-			// Apply the command line to the command
-			ret = execute.invoke(command, currentPath);
-		} 
-		catch (IllegalAccessException 
-				| IllegalArgumentException 
-				| InvocationTargetException
-				| ParseException e) {
-			if (e instanceof MissingOptionException) {
-				ret = -1;
-				printHelp(command.getClass().getName());
-			} else
-				throw new CmdException(e).setReturnCode(-1337);
+	// Runs commands.  It is a class apart so that loading (and verifying) EntryPoint does not load Apache
+	//	Commons Cli, which the precomputed help does not need
+	private static final class Invocation {
+
+		// Built-in parser results, reused by the invocations on each thread (see ArgumentParser)
+		private static final ThreadLocal<ParsedArguments> PARSED = new ThreadLocal<>();
+
+		// Executes the line command, returning the exit code
+		static Integer execute(
+				CommandMetadata metadata,
+				ArgumentParser.Kind parser,
+				Path currentPath,
+				String... args) throws CmdException {
+			var metrics = Metrics.forCommand(metadata.getCommand());
+			try {
+				var ret = execute(metadata, metrics, parser, currentPath, args);
+				metrics.returned(ret);
+				return ret;
+			} catch (CmdException cmde) {
+				metrics.failed(cmde.getReturnCode());
+				throw cmde;
+			}
 		}
-		return (Integer) ret;
-	}
-	
-	// This method applies every argument in the command line to the command object
-	private void applyArguments(Object command, CommandLine commandLine) 
-			throws IllegalAccessException, InvocationTargetException, ParseException {
-		// Map the setter methods to commandLine option names
-		var methods = command.getClass().getMethods();
-		var fields = command.getClass().getDeclaredFields();
-		var methodsMap = new HashMap<String, Method>();
-		Method optionalArgsMethod = null;
-		for (var field: fields) {
-			var method = lookForSetter(field, methods);
-			if (field.isAnnotationPresent(Parameter.class)) {
-				var parameter = field.getAnnotation(Parameter.class);
-				if (!parameter.name().trim().isEmpty()) {
-					methodsMap.put(parameter.name(), method);
-				}
-				if (!parameter.longName().trim().isEmpty()) {
-					methodsMap.put(parameter.longName(), method);
+
+		private static Integer execute(
+				CommandMetadata metadata,
+				Metrics.CommandStats metrics,
+				ArgumentParser.Kind parser,
+				Path currentPath,
+				String... args) throws CmdException {
+			Integer ret;
+			// Files opened for the positional arguments, closed when the command returns
+			var files = InputFiles.open(currentPath);
+			var buffering = OutputBuffering.NONE;
+			// Taken from the thread for the whole invocation, so that a command calling back in gets another one
+			var parsed = parser == ArgumentParser.Kind.BUILTIN ? PARSED.get() : null;
+			if (parsed != null) PARSED.remove();
+			else if (parser == ArgumentParser.Kind.BUILTIN) parsed = new ParsedArguments();
+			try {
+				// Commands that run per item take the framework options out of their command line
+				var fanOut = metadata.isPerItem() ? FanOut.of(metadata, args) : null;
+				// Time limit of the Run method, from the command line or the Command annotation
+				var timeout = FrameworkOptions.take(metadata, Cancellation.OPTION, fanOut == null ? args : fanOut.args());
+				var limit = Cancellation.limit(metadata, timeout.value());
+				// Format of the records written by the command
+				var output = FrameworkOptions.take(metadata, RecordWriter.OPTION, timeout.args());
+				var records = new RecordWriter.Session(
+					RecordWriter.Format.of(output.value()),
+					fanOut != null && fanOut.isParallel()
+				);
+				// How the standard output is written, for this invocation only
+				var outputMode = FrameworkOptions.take(metadata, OutputBuffering.OPTION, output.args());
+				buffering = OutputBuffering.open(OutputBuffering.resolve(metadata, outputMode.value()));
+				final Arguments arguments;
+				var start = System.nanoTime();
+				try (var s = Tracer.span("parse arguments")) {
+					arguments = parse(metadata, parsed, outputMode.args());
+				} finally {
+					metrics.parse().record(System.nanoTime() - start);
 				}
-				// Force false for all flags before applying the arguments - we assume it is turned down!
-				if (isBooleanType(field)) {
-					method.invoke(command, Boolean.FALSE);
+				if (fanOut != null && arguments.positional().size() > 1) {
+					// A command object per positional argument, with its own files
+					ret = fanOut.run(arguments.positional(), i -> {
+						try (var itemFiles = InputFiles.open(currentPath); var itemRecords = records.open(i)) {
+							return bindAndRun(metadata, metrics, arguments.forArgument(i), currentPath, limit);
+						}
+					}, records::beforeOutput);
+				} else {
+					try (var out = records.open(0)) {
+						ret = bindAndRun(metadata, metrics, arguments, currentPath, limit);
+					}
 				}
 			}
-			else if (method != null && field.isAnnotationPresent(OptionalArgs.class)) {
-				optionalArgsMethod = method;
+			catch (MissingOptionException e) {
+				ret = -1;
+				printHelp(metadata);
 			}
-		}
-		// Apply the command line values to the indexed methods
-		// Every method is supposed to be a simple setter with one argument, of
-		//		one of the following types :
-		//	String
-		//	Integer
-		//	Long
-		//	Double
-		//	Float
-		// An argument-less parameter is supposed to be a Boolean, and if it is
-		//	present, it is assumed to be true
-
-		var errors = new LinkedList<Exception>();
-		for (var option: commandLine.getOptions()) {
-			var method = methodsMap.get(option.getOpt());
-			if (method == null) {
-				method = methodsMap.get(option.getLongOpt());
+			catch (CmdException e) {
+				throw e;
 			}
-			if (method != null) {
-				try {
-					method.invoke(command, processArgument(method, option.getValue()));
-				} catch (Exception e) {
-					errors.add(e);
-				}
+			catch (Exception e) {
+				throw new CmdException(e).setReturnCode(-1337);
 			}
-		}
-		if (!errors.isEmpty()) {
-			// Unable to parse certain options
-			throw new ParseException(errors.stream().map(Exception::getMessage).collect(Collectors.joining("\n")));
-		}
-		if (optionalArgsMethod != null) {
-			// The method must exist and may receive a list of strings as its only parameter
-			var args = Arrays.asList(commandLine.getArgs());
-			if (!args.isEmpty()) {
-				optionalArgsMethod.invoke(command, args);
+			finally {
+				// Whatever the command printed goes before its failure, if any
+				buffering.close();
+				// Background commands go on after returning
+				if (metadata.isBackground()) files.detach();
+				else files.close();
+				if (parsed != null) PARSED.set(parsed);
 			}
-		} else {
-			if (commandLine.getArgs() != null && commandLine.getArgs().length > 0) {
-				// The command line parsed args and it is not contemplated
-				throw new ParseException(
-					String.format(
-						"Could not parse %s %n",
-                        String.join(",", commandLine.getArgs())
-					)
-				);
+			return ret;
+		}
+
+		// Null parsed uses Apache Commons Cli; the built-in parser clears it before filling it
+		private static Arguments parse(CommandMetadata metadata, ParsedArguments parsed, String... args)
+				throws ParseException {
+			if (parsed != null) {
+				ArgumentParser.parse(metadata, args, parsed);
+				return new BuiltinArguments(parsed);
 			}
+			return new CommonsCliArguments(new DefaultParser().parse(
+				metadata.getOptions(),
+				args,
+				// Fail if there is something unrecognized
+				false
+			));
 		}
-	}
 
-	// Gets a string, sets all the string to lower case, then the first
-	//	character to upper case.
-	private String firstInUpperCase(String fieldName) {
-		return fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1);
-	}
-	
-	// Looks for the setter method of a class field
-	private Method lookForSetter(Field field, Method[] methods) {
-		Method ret = null;
-		if (field != null && methods != null && methods.length > 0) {
-			int i = 0;
-			String expectedMethodName = "set" + firstInUpperCase(field.getName());
-			while (ret == null && i < methods.length) {
-				Method method = methods[i++];
-				if (method.getName().equals(expectedMethodName)) {
-					ret = method;
-				}
+		// Every command should have an execute method with:
+		// + Current path for the command
+		private static Integer bindAndRun(
+				CommandMetadata metadata,
+				Metrics.CommandStats metrics,
+				Arguments arguments,
+				Path currentPath,
+				Duration limit) throws Exception {
+			final Object command;
+			var start = System.nanoTime();
+			try (var s = Tracer.span("instantiate command")) {
+				command = metadata.newInstance();
+			}
+			// Apply the command line to the command
+			try (var s = Tracer.span("apply arguments")) {
+				arguments.applyTo(metadata, command);
+			}
+			var bound = System.nanoTime();
+			metrics.bind().record(bound - start);
+			try (var s = Tracer.span("run command")) {
+				return limit == null
+					? metadata.run(command, currentPath)
+					: Cancellation.run(() -> metadata.run(command, currentPath), limit, metadata.getCommand());
+			} finally {
+				metrics.run().record(System.nanoTime() - bound);
 			}
 		}
-		return ret;
-	}
 
-	private Object getEnum(Class<?> clazz, String value) throws ParseException {
-		if (value == null) throw new ParseException(String.format("Could not parse an empty value to type %s", clazz.getName()));
-		try {
-			var valueOf = clazz.getMethod("valueOf", String.class);
-			return valueOf.invoke(null, value.toUpperCase());
-		} catch (Exception e) {
-			throw new ParseException(String.format("Could not parse %s to type %s", value, clazz.getName()));
+		// Command line parsed by either parser
+		private interface Arguments {
+			void applyTo(CommandMetadata metadata, Object command) throws ParseException;
+			List<String> positional();
+			// The same options, with a single positional argument
+			Arguments forArgument(int i);
 		}
-	}
 
-	// This method processes the option value in order to pass the right type
-	//	to the command object
-	private Object processArgument(Method method, String value) throws ParseException {
-		Object ret = null;
-		Class<?>[] types = method.getParameterTypes();
-		try {
-			if (types.length == 1) {
-				Class<?> type = types[0];
-				if (type.isEnum()) {
-					ret = getEnum(type, value);
-				} else if (type.equals(String.class)) {
-					ret = value;
-				} else if (type.equals(Integer.class)) {
-					ret = Integer.valueOf(value);
-				} else if (type.equals(Long.class)) {
-					ret = Long.valueOf(value);
-				}
-				// This can be improved by looking closely at precision, etc.
-				else if (type.equals(Double.class)) {
-					ret = Double.valueOf(value);
-				} else if (type.equals(Float.class)) {
-					ret = Float.valueOf(value);
-				}
-				// Boolean arguments
-				else if (type.equals(Boolean.class)) {
-					if (value != null) { throw new ParseException("Boolean types do not allow a value"); }
-					else {
-						// Now we activate the boolean flag we had previously turned down
-						ret = Boolean.TRUE;
-					}
-				}
+		private record BuiltinArguments(ParsedArguments arguments) implements Arguments {
+			@Override
+			public void applyTo(CommandMetadata metadata, Object command) throws ParseException {
+				metadata.applyArguments(command, arguments);
+			}
+
+			@Override
+			public List<String> positional() {
+				return arguments.hasArgs() ? arguments.args() : List.of();
+			}
+
+			@Override
+			public Arguments forArgument(int i) {
+				return new BuiltinArguments(arguments.forArgument(i));
 			}
-		} catch (NumberFormatException nfe) {
-			throw new ParseException(String.format("Could not parse '%s' to the expected type", value));
 		}
-		return ret;
-	}
 
-	// We assume that every non-boolean type will require arguments
-	private static boolean isBooleanType(Field f) {
-		return f.getType().equals(boolean.class) || f.getType().equals(Boolean.class);
-	}
+		private record CommonsCliArguments(CommandLine commandLine) implements Arguments {
+			@Override
+			public void applyTo(CommandMetadata metadata, Object command) throws ParseException {
+				metadata.applyArguments(command, commandLine);
+			}
+
+			@Override
+			public List<String> positional() {
+				return commandLine.getArgList();
+			}
 
-	// This method build an Apache Command Line Options object upon
-	//	the annotated parameters information in the class
-	public static Options buildOptions(Class<?> commandClass) {
-		// It will be the fields that get annotated, and those fields will get
-		//	us to the setter method
-		var fields = commandClass.getDeclaredFields();
-		var options = new Options();
-		for (var field: fields) {
-			if (field.isAnnotationPresent(Parameter.class)) {
-				var parameter = field.getAnnotation(Parameter.class);
-				// Build the option
-				var optionBuilder = Option.builder().
-					required(parameter.mandatory()).
-					hasArg(!isBooleanType(field)).
-					desc(parameter.description());
-				if (!parameter.longName().isEmpty())
-					optionBuilder.longOpt(parameter.longName());
-				if (!parameter.name().trim().isEmpty())
-					optionBuilder.option(parameter.name());
-				options.addOption(optionBuilder.build());
+			@Override
+			public Arguments forArgument(int i) {
+				var ret = new CommandLine.Builder();
+				for (var option : commandLine.getOptions()) ret.addOption(option);
+				return new CommonsCliArguments(ret.addArg(commandLine.getArgList().get(i)).build());
 			}
 		}
-		return options;
 	}
 
 	/** Returns the first argument */
@@ -0,0 +1,210 @@
+package cli;
+
+import cli.annotations.ExitCodePolicy;
+import cli.annotations.Run;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a command once per positional argument, for the commands whose Run method is marked as per item.
+ * Up to {@code --jobs N} items (a {@link FrameworkOptions framework option}; the env variable CLI_JOBS, or else
+ * the number of processors, by default) run at the same time, on a pool of N threads or on virtual threads.
+ * The output of every item is held until it finishes and written in the order of the arguments; with a single
+ * job the items just run one after the other.
+ */
+final class FanOut {
+
+    private static final String JOBS = "jobs";
+    private static final String ENV_VAR = "CLI_JOBS";
+
+    private final static Logger logger = Logger.getLogger(FanOut.class.getName());
+
+    // How many finished items may wait for a slower one before no more items are started
+    private static final int PENDING_PER_THREAD = 4;
+
+    /**
+     * Runs an item.
+     */
+    @FunctionalInterface
+    interface Item {
+        /**
+         * @param index Position of the item in the positional arguments.
+         * @return Exit code, null for 0.
+         * @throws Exception whatever the command throws.
+         */
+        Integer run(int index) throws Exception;
+    }
+
+    private final Run settings;
+    private final int jobs;
+    private final String[] args;
+
+    private FanOut(Run settings, int jobs, String[] args) {
+        this.settings = settings;
+        this.jobs = jobs;
+        this.args = args;
+    }
+
+    /**
+     * @param metadata Command, run once per item.
+     * @param args Command line, with the framework options.
+     * @return Fan out with the number of jobs in the command line.
+     * @throws CmdException if the number of jobs is not a positive number.
+     */
+    static FanOut of(CommandMetadata metadata, String... args) throws CmdException {
+        var jobs = FrameworkOptions.take(metadata, JOBS, args);
+        return new FanOut(
+            metadata.getPerItem(),
+            parseJobs(jobs.value() != null ? jobs.value() : System.getenv(ENV_VAR)),
+            jobs.args()
+        );
+    }
+
+    private static int parseJobs(String jobs) throws CmdException {
+        if (jobs == null || jobs.isBlank()) return Runtime.getRuntime().availableProcessors();
+        try {
+            var ret = Integer.parseInt(jobs.trim());
+            if (ret > 0) return ret;
+        } catch (NumberFormatException nfe) {
+            // Reported below
+        }
+        throw new CmdException(String.format("The number of jobs must be a positive number: %s", jobs), -1);
+    }
+
+    /** @return The command line without the framework options */
+    String[] args() {
+        return args;
+    }
+
+    /** @return True if the items run at the same time, and their outputs are written later on */
+    boolean isParallel() {
+        return jobs > 1;
+    }
+
+    /**
+     * Runs every item, writing their outputs in order to the standard streams of the current thread.
+     * @param items Positional arguments.
+     * @param item Runs an item.
+     * @param beforeOutput Called with the index of an item run in parallel, before its output is written.
+     * @return Exit code of the command, from those of the items.
+     */
+    int run(List<String> items, Item item, BiConsumer<Integer, PrintStream> beforeOutput) {
+        var aggregate = new Aggregate(settings.exitCode());
+        if (jobs == 1) {
+            for (var i = 0; i < items.size(); i++) aggregate.add(execute(item, i, items.get(i)));
+            return aggregate.code;
+        }
+        // Route the standard streams of the items, if the launcher did not already; an embedding program
+        //  gets its own streams back afterwards
+        var running = settings.virtualThreads() ? new Semaphore(jobs) : null;
+        var pending = new ArrayDeque<CompletableFuture<Result>>();
+        try (var scope = StandardStreams.open(); var executor = executor()) {
+            var out = System.out;
+            var err = System.err;
+            for (var i = 0; i < items.size(); i++) {
+                final var index = i;
+                pending.add(CompletableFuture.supplyAsync(() -> {
+                    var result = new Result(index);
+                    if (running != null) running.acquireUninterruptibly();
+                    StandardStreams.route(new StandardStreams.Target(InputStream.nullInputStream(), result.out, result.err));
+                    try {
+                        result.code = execute(item, index, items.get(index));
+                    } finally {
+                        StandardStreams.release();
+                        if (running != null) running.release();
+                    }
+                    return result;
+                }, executor));
+                // Write what is already finished, in order, keeping a bounded number of outputs in memory
+                while (!pending.isEmpty() && (pending.peek().isDone() || pending.size() >= jobs * PENDING_PER_THREAD)) {
+                    aggregate.add(pending.poll().join().writeTo(out, err, beforeOutput));
+                }
+            }
+            while (!pending.isEmpty()) aggregate.add(pending.poll().join().writeTo(out, err, beforeOutput));
+        }
+        return aggregate.code;
+    }
+
+    private ExecutorService executor() {
+        return settings.virtualThreads() ? Executors.newVirtualThreadPerTaskExecutor() : new ForkJoinPool(jobs);
+    }
+
+    // Runs an item, returning its exit code; its failures are reported in its standard error
+    private static int execute(Item item, int index, String name) {
+        try (var s = Tracer.span("run item")) {
+            var ret = item.run(index);
+            return ret == null ? 0 : ret;
+        } catch (CmdException cmde) {
+            logger.log(Level.FINE, cmde.getMessage(), cmde);
+            System.err.printf("%s: %s%n", name, cmde.getMessage());
+            return cmde.getReturnCode();
+        } catch (Exception e) {
+            logger.log(Level.FINE, e.getMessage(), e);
+            System.err.printf("%s: %s%n", name, e.getMessage() == null ? e : e.getMessage());
+            return -1337;
+        }
+    }
+
+    // Output of an item run in parallel
+    private static class Result {
+        final int index;
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int code;
+
+        Result(int index) {
+            this.index = index;
+        }
+
+        int writeTo(PrintStream stdout, PrintStream stderr, BiConsumer<Integer, PrintStream> beforeOutput) {
+            beforeOutput.accept(index, stdout);
+            if (out.size() > 0) {
+                stdout.write(out.toByteArray(), 0, out.size());
+                stdout.flush();
+            }
+            if (err.size() > 0) {
+                stderr.write(err.toByteArray(), 0, err.size());
+                stderr.flush();
+            }
+            return code;
+        }
+    }
+
+    // Exit code of the command, in the order of the items
+    private static class Aggregate {
+        final ExitCodePolicy policy;
+        int code;
+        boolean failed;
+
+        Aggregate(ExitCodePolicy policy) {
+            this.policy = policy;
+        }
+
+        void add(int itemCode) {
+            switch (policy) {
+                case FIRST_FAILURE -> {
+                    if (!failed && itemCode != 0) code = itemCode;
+                }
+                case MAX -> {
+                    if (itemCode != 0) code = failed ? Math.max(code, itemCode) : itemCode;
+                }
+                case FAILURES -> {
+                    if (itemCode != 0) code++;
+                }
+            }
+            failed |= itemCode != 0;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package cli;
+
+import java.util.ArrayList;
+
+/**
+ * Options of the framework itself ({@code --jobs}, {@code --timeout}, {@code --output}, {@code --output-mode}) in
+ * the command line of a command: they are taken out before the command line is parsed, unless the command has an option with the same
+ * name.  They are not recognized after {@code --}; if one is repeated, the last one wins.
+ */
+final class FrameworkOptions {
+
+    /**
+     * @param value Value of the option, or null if it is not there.
+     * @param args Rest of the command line.
+     */
+    record Taken(String value, String[] args) { }
+
+    private FrameworkOptions() { }
+
+    /**
+     * @param metadata Command.
+     * @param name Name of the option, without the dashes.
+     * @param args Command line.
+     * @return Its value and the command line without it.
+     */
+    static Taken take(CommandMetadata metadata, String name, String... args) {
+        if (metadata.getOptions().hasOption(name)) return new Taken(null, args);
+        var option = "--" + name;
+        String value = null;
+        var rest = new ArrayList<String>(args.length);
+        var ours = true;
+        for (var i = 0; i < args.length; i++) {
+            if (ours && args[i].equals(option) && i + 1 < args.length) {
+                value = args[++i];
+            } else if (ours && args[i].startsWith(option + "=")) {
+                value = args[i].substring(option.length() + 1);
+            } else {
+                // Positional arguments from here on
+                if (args[i].equals("--")) ours = false;
+                rest.add(args[i]);
+            }
+        }
+        return value == null ? new Taken(null, args) : new Taken(value, rest.toArray(new String[0]));
+    }
+}
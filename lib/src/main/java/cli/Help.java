@@ -0,0 +1,148 @@
+package cli;
+
+import org.apache.commons.cli.HelpFormatter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Help text of the commands.  The maven plugin renders it at build time into a resource
+ * ({@value #RESOURCE_DIR}&lt;command class&gt;.txt), which the --help path streams without loading Apache
+ * Commons Cli or the command; the runtime renderer is the fallback for commands built without the plugin.
+ */
+public final class Help {
+
+    /** Directory of the precomputed help in the class path */
+    public static final String RESOURCE_DIR = "META-INF/cli/help/";
+
+    // Wide enough for the usage line not to be wrapped before the optional arguments are appended
+    private static final int USAGE_WIDTH = 120;
+
+    private final static Logger logger = Logger.getLogger(Help.class.getName());
+
+    // Version in cli.properties, read once
+    private static volatile String version;
+
+    private Help() { }
+
+    /**
+     * @param commandClassName Name of the command class, as received by the entry point.
+     * @return Name of the resource with its precomputed help.
+     */
+    public static String resourceName(String commandClassName) {
+        return RESOURCE_DIR + commandClassName + ".txt";
+    }
+
+    /**
+     * Renders the help of a command, with \n as line separator.
+     * @param metadata Command.
+     * @param version Version for the footer, may be null or empty.
+     * @return Help text.
+     */
+    public static String render(CommandMetadata metadata, String version) {
+        var options = metadata.getOptions();
+        var optionalArg = metadata.getOptionalArgs();
+        var footer = version == null || version.isEmpty() ? null : String.format("%nv%s", version);
+        var formatter = new HelpFormatter();
+        var text = new StringWriter();
+        var writer = new PrintWriter(text);
+        if (optionalArg != null) {
+            // Format the usage in order to show a list of arguments if necessary
+            var usage = new StringWriter();
+            var usageWriter = new PrintWriter(usage);
+            formatter.printUsage(usageWriter, USAGE_WIDTH, metadata.getCommand(), options);
+            usageWriter.flush();
+            var syntax = (usage + String.format(" [%s]...", optionalArg))
+                .replace("\r", "")
+                .replace("\n", "")
+                .replace("usage:", "");
+            formatter.printHelp(writer, formatter.getWidth(), syntax, metadata.getDescription(), options,
+                formatter.getLeftPadding(), formatter.getDescPadding(), footer, false);
+        } else {
+            formatter.printHelp(writer, formatter.getWidth(), metadata.getCommand(), metadata.getDescription(),
+                options, formatter.getLeftPadding(), formatter.getDescPadding(), footer, true);
+        }
+        writer.flush();
+        return text.toString().replace("\r\n", "\n");
+    }
+
+    /**
+     * Prints the help of a command, rendered at runtime.
+     * @param metadata Command.
+     * @param out Output.
+     */
+    static void print(CommandMetadata metadata, PrintStream out) {
+        write(render(metadata, getVersion()), out);
+    }
+
+    /**
+     * Prints the help rendered at build time for a command, if there is any.
+     * @param commandClassName Name of the command class, as received by the entry point.
+     * @param out Output.
+     * @return False if there is no precomputed help for the command.
+     */
+    static boolean printPrecomputed(String commandClassName, PrintStream out) {
+        try (var is = resource(commandClassName)) {
+            if (is == null) return false;
+            if ("\n".equals(System.lineSeparator())) {
+                is.transferTo(out);
+                out.flush();
+            } else {
+                write(new String(is.readAllBytes(), UTF_8), out);
+            }
+            return true;
+        } catch (IOException ioe) {
+            logger.log(Level.FINE, ioe, () -> String.format("Could not read the help of %s", commandClassName));
+            return false;
+        }
+    }
+
+    private static InputStream resource(String commandClassName) {
+        var loader = Thread.currentThread().getContextClassLoader();
+        if (loader == null) loader = Help.class.getClassLoader();
+        return loader.getResourceAsStream(resourceName(commandClassName));
+    }
+
+    private static void write(String text, PrintStream out) {
+        out.print(text.replace("\n", System.lineSeparator()));
+        out.flush();
+    }
+
+    /**
+     * @return The version in the cli.properties file of the class path (cli.version), or an empty string.
+     */
+    public static String getVersion() {
+        var ret = version;
+        if (ret == null) {
+            ret = readVersion(Help.class.getClassLoader().getResourceAsStream("cli.properties"));
+            version = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * @param is Contents of a cli.properties file, may be null.
+     * @return The version in it (cli.version), or an empty string.
+     */
+    public static String readVersion(InputStream is) {
+        var ret = "";
+        try (is) {
+            var prop = new Properties();
+            prop.load(is);
+            ret = prop.getProperty("cli.version", "");
+        }
+        catch (Exception e) {
+            // No version
+            logger.log(Level.FINE, "Could not find cli.version in cli.properties - Please define it in order to get a version footer in the command help");
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,83 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A file named in the positional arguments of a command, checked to be readable but not opened until it is
+ * used.  Whatever it opens is closed by the framework when the Run method of the command returns, so it must
+ * not be used after that (nor by background commands once they go on on their own threads).
+ */
+public final class InputFile {
+
+    private final InputFiles scope;
+    private final Path path;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    InputFile(InputFiles scope, Path path) {
+        this.scope = scope;
+        this.path = path;
+    }
+
+    /** @return Absolute path of the file */
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * @return Size of the file, in bytes.
+     * @throws IOException if it cannot be read.
+     */
+    public long size() throws IOException {
+        return Files.size(path);
+    }
+
+    /**
+     * @return The file open for reading, the same channel on every call.
+     * @throws IOException if it cannot be opened.
+     */
+    public synchronized FileChannel channel() throws IOException {
+        if (channel == null) channel = scope.channel(path);
+        return channel;
+    }
+
+    /**
+     * The whole file mapped read-only, off the heap: reading it does not copy it into the heap.
+     * @return Buffer, the same one on every call (use duplicate() to read it from several threads).
+     * @throws IOException if it cannot be mapped, or it is larger than 2 GB.
+     */
+    public synchronized MappedByteBuffer map() throws IOException {
+        if (buffer == null) buffer = scope.map(path);
+        return buffer;
+    }
+
+    /**
+     * @return Lines of the file in UTF-8, read and decoded as the stream is consumed.
+     * @throws IOException if it cannot be opened.
+     */
+    public Stream<String> lines() throws IOException {
+        return lines(UTF_8);
+    }
+
+    /**
+     * @param charset Encoding of the file.
+     * @return Lines of the file, read and decoded as the stream is consumed.
+     * @throws IOException if it cannot be opened.
+     */
+    public Stream<String> lines(Charset charset) throws IOException {
+        return scope.register(Files.lines(path, charset));
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
@@ -0,0 +1,214 @@
+package cli;
+
+import org.apache.commons.cli.ParseException;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Files named by the positional arguments of an invocation, opened by the framework for the commands whose
+ * {@link cli.annotations.OptionalArgs} setter takes a list of:
+ * <ul>
+ *     <li>{@code Path}: the arguments resolved against the working directory, not checked</li>
+ *     <li>{@link InputFile}: a handle that opens the file when it is first used, as a channel, a mapped buffer
+ *     or a lazily decoded stream of lines</li>
+ *     <li>{@code FileChannel}: the file open for reading</li>
+ *     <li>{@code MappedByteBuffer} or {@code MemorySegment}: the whole file mapped read-only, off the heap</li>
+ * </ul>
+ * Every argument must be a readable regular file.  Whatever is opened for an invocation is closed (and
+ * unmapped) when its Run method returns, except for background commands, whose files stay open.
+ */
+public final class InputFiles implements AutoCloseable {
+
+    /** Element types of the OptionalArgs lists converted by the framework, besides String */
+    public static final List<String> TYPES = List.of(
+        "java.nio.file.Path",
+        "cli.InputFile",
+        "java.nio.channels.FileChannel",
+        "java.nio.MappedByteBuffer",
+        "java.lang.foreign.MemorySegment"
+    );
+
+    private final static Logger logger = Logger.getLogger(InputFiles.class.getName());
+
+    // Files of the invocation run by the current thread
+    private static final ThreadLocal<InputFiles> current = new ThreadLocal<>();
+
+    private final Path cwd;
+    // Closed in reverse order
+    private final List<AutoCloseable> resources = new ArrayList<>();
+    // Arena of the mapped files, created on first use
+    private AutoCloseable arena;
+    private boolean closed;
+
+    private InputFiles(Path cwd) {
+        this.cwd = cwd;
+    }
+
+    /**
+     * Opens the scope of the files of an invocation run by the current thread.
+     * @param cwd Working directory of the invocation.
+     * @return Scope, to be closed when the Run method returns.
+     */
+    static InputFiles open(Path cwd) {
+        var ret = new InputFiles(cwd);
+        current.set(ret);
+        return ret;
+    }
+
+    /** Leaves the files open (for background commands), but no longer as the files of the current thread */
+    void detach() {
+        if (current.get() == this) current.remove();
+    }
+
+    /**
+     * Converts the positional arguments of the current invocation.
+     * @param type Element type of the OptionalArgs list: String, or one of {@link #TYPES}.
+     * @param args Positional arguments.
+     * @param <T> Element type.
+     * @return Converted arguments, in the same order.
+     * @throws ParseException if an argument is not a readable file, or it cannot be opened.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> of(Class<T> type, List<String> args) throws ParseException {
+        if (type == String.class) return (List<T>) args;
+        var scope = current.get();
+        if (scope == null) scope = new InputFiles(Path.of("").toAbsolutePath());
+        var ret = new Object[args.size()];
+        for (var i = 0; i < ret.length; i++) ret[i] = scope.convert(type, args.get(i));
+        return (List<T>) Arrays.asList(ret);
+    }
+
+    private Object convert(Class<?> type, String arg) throws ParseException {
+        if (type == Path.class) return cwd.resolve(arg);
+        if (current.get() != this) {
+            throw new ParseException(String.format("Could not open %s outside of an invocation", arg));
+        }
+        var path = readable(arg);
+        if (type == InputFile.class) return new InputFile(this, path);
+        try {
+            if (type == FileChannel.class) return channel(path);
+            if (type == MappedByteBuffer.class) return map(path);
+            if (type.getName().equals("java.lang.foreign.MemorySegment")) return segment(path);
+        } catch (IOException e) {
+            throw new ParseException(String.format("Could not open %s: %s", arg, e.getMessage()));
+        }
+        throw new ParseException(String.format("Positional arguments cannot be converted to %s", type.getName()));
+    }
+
+    // The argument resolved against the working directory, if it is a readable regular file
+    private Path readable(String arg) throws ParseException {
+        var ret = cwd.resolve(arg);
+        if (!Files.isRegularFile(ret) || !Files.isReadable(ret))
+            throw new ParseException(String.format("%s is not a readable file", arg));
+        return ret;
+    }
+
+    synchronized <T extends AutoCloseable> T register(T resource) throws IOException {
+        if (closed) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                logger.log(Level.FINE, "Could not close a file", e);
+            }
+            throw new IOException("The files of the invocation were already closed");
+        }
+        resources.add(resource);
+        return resource;
+    }
+
+    FileChannel channel(Path path) throws IOException {
+        return register(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    // MemorySegment mapping the whole file, unmapped when the invocation ends
+    Object segment(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return Foreign.MAP.invokeExact(channel, FileChannel.MapMode.READ_ONLY, 0L, channel.size(), arena());
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+    }
+
+    MappedByteBuffer map(Path path) throws IOException {
+        var segment = segment(path);
+        try {
+            return (MappedByteBuffer) (ByteBuffer) Foreign.AS_BYTE_BUFFER.invokeExact(segment);
+        } catch (UnsupportedOperationException e) {
+            throw new IOException("Too large for a MappedByteBuffer, use a MemorySegment instead");
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+    }
+
+    private synchronized AutoCloseable arena() throws Throwable {
+        if (arena == null) arena = register((AutoCloseable) Foreign.OF_SHARED.invokeExact());
+        return arena;
+    }
+
+    /** Closes every file opened for the invocation, and unmaps the mapped ones */
+    @Override
+    public void close() {
+        detach();
+        List<AutoCloseable> toClose;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            toClose = new ArrayList<>(resources);
+            resources.clear();
+        }
+        for (var i = toClose.size() - 1; i >= 0; i--) {
+            try {
+                toClose.get(i).close();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Could not close an input file", e);
+            }
+        }
+    }
+
+    // java.lang.foreign is a preview API in Java 21: it is bound at runtime, the first time a file is mapped
+    private static final class Foreign {
+
+        // ()AutoCloseable: Arena.ofShared
+        static final MethodHandle OF_SHARED;
+        // (FileChannel, MapMode, long, long, AutoCloseable)Object: FileChannel.map into an arena
+        static final MethodHandle MAP;
+        // (Object)ByteBuffer: MemorySegment.asByteBuffer
+        static final MethodHandle AS_BYTE_BUFFER;
+
+        static {
+            try {
+                var lookup = MethodHandles.publicLookup();
+                var arena = Class.forName("java.lang.foreign.Arena");
+                var segment = Class.forName("java.lang.foreign.MemorySegment");
+                OF_SHARED = lookup.findStatic(arena, "ofShared", MethodType.methodType(arena))
+                    .asType(MethodType.methodType(AutoCloseable.class));
+                MAP = lookup.findVirtual(FileChannel.class, "map",
+                        MethodType.methodType(segment, FileChannel.MapMode.class, long.class, long.class, arena))
+                    .asType(MethodType.methodType(Object.class, FileChannel.class, FileChannel.MapMode.class,
+                        long.class, long.class, AutoCloseable.class));
+                AS_BYTE_BUFFER = lookup.findVirtual(segment, "asByteBuffer", MethodType.methodType(ByteBuffer.class))
+                    .asType(MethodType.methodType(ByteBuffer.class, Object.class));
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+    }
+}
@@ -8,26 +8,50 @@ import java.lang.reflect.Method;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class Introspection {
 
-    private final String commandClassName;
-    private Class<?> commandClass;
+    private final static Logger logger = Logger.getLogger(Introspection.class.getName());
+
+    private final Class<?> commandClass;
     private Object command;
-    private Method method;
+    private final Method method;
 
     public Introspection(String commandClassName) throws CmdException {
-        this.commandClassName = commandClassName;
-        try (var s = new Stopwatch("looking for command")) {
-            lookForCommand();
+        try (var s = Tracer.span("looking for command")) {
+            commandClass = lookForCommand(commandClassName);
         }
         // Instantiate the proper command
-        try (var s = new Stopwatch("instantiate command")) {
+        try (var s = Tracer.span("instantiate command")) {
             instantiateCommand();
         }
         // Look for an 'execute' method with the next arguments:
-        try (var s = new Stopwatch("find execute method")) {
-            findExecuteMethod();
+        try (var s = Tracer.span("find execute method")) {
+            method = findExecuteMethod(commandClass);
+        }
+    }
+
+    /**
+     * Looks for the binder generated at build time for a command class.
+     * @param commandClass Command class.
+     * @return The binder, or null if the command was not processed by {@link cli.processor.CommandProcessor}
+     */
+    @SuppressWarnings("unchecked")
+    static CommandBinder<Object> lookForBinder(Class<?> commandClass) {
+        try {
+            var binderClass = Class.forName(
+                CommandBinder.binderName(commandClass.getName()),
+                true,
+                commandClass.getClassLoader()
+            );
+            return (CommandBinder<Object>) binderClass.getConstructor().newInstance();
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            logger.log(Level.FINE, e, () -> String.format("Ignoring unusable binder for %s", commandClass.getName()));
+            return null;
         }
     }
 
@@ -38,11 +62,10 @@ public class Introspection {
     // Looks for the proper command class
     // The search with google reflections has been optimized away to the build process
     //	in order to get an improvement of ~0.15 sec for each program call.
-    @SuppressWarnings("rawtypes")
-    private void lookForCommand()
+    static Class<?> lookForCommand(String commandClassName)
         throws CmdException {
         try {
-            commandClass = Class.forName(commandClassName);
+            return Class.forName(commandClassName);
         }
         catch(Exception e) {
             throw new CmdException(e);
@@ -64,19 +87,19 @@ public class Introspection {
         }
     }
 
-    private boolean isAcceptable(Class<?> clazz) {
+    private static boolean isAcceptable(Class<?> clazz) {
         return clazz == int.class
             || clazz == void.class;
     }
 
-    private boolean isBackgroundApp(Class<?> clazz) {
+    private static boolean isBackgroundApp(Class<?> clazz) {
         return !Arrays.stream(clazz.getAnnotations()).filter(
             annotation -> annotation instanceof Command c && c.isBackground()
         ).toList().isEmpty();
     }
 
     // Finds an execute method in the command class
-    private void findExecuteMethod() throws CmdException {
+    static Method findExecuteMethod(Class<?> commandClass) throws CmdException {
         try {
             var methods =
                 Arrays.stream(commandClass.getDeclaredMethods()).filter(
@@ -96,7 +119,7 @@ public class Introspection {
                     throw new CmdException("The method annotated as 'Run' must return void if the command is intended to run in the background");
                 if (m.getParameters().length != 1 || m.getParameters()[0].getType() != Path.class)
                     throw new CmdException("The method annotated as 'Run' must have exactly one argument of the class 'Path'");
-                else method = m;
+                else return m;
             }
         } catch (NoSuchElementException | SecurityException e) {
             throw new CmdException(e).setReturnCode(-1337);
@@ -0,0 +1,110 @@
+package cli;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations in nanoseconds, with fixed log-linear buckets: every power of two is split in 8 buckets
+ * of the same width, so a percentile is at most 12.5% above the actual value.  Recording is lock-free and
+ * spread over striped counters, which only use memory for the buckets that were hit.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Values below SUB_BUCKETS have a bucket each; then SUB_BUCKETS per power of two, up to Long.MAX_VALUE
+    static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicReferenceArray<LongAdder> buckets = new AtomicReferenceArray<>(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param nanos Duration, negative ones count as 0.
+     */
+    public void record(long nanos) {
+        var value = Math.max(0, nanos);
+        var i = index(value);
+        var bucket = buckets.get(i);
+        if (bucket == null) {
+            buckets.compareAndSet(i, null, new LongAdder());
+            bucket = buckets.get(i);
+        }
+        bucket.increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        var exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        var sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Smallest value in the bucket
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        var exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BITS);
+    }
+
+    // Largest value in the bucket
+    static long upperBound(int index) {
+        return index == BUCKETS - 1 ? Long.MAX_VALUE : lowerBound(index + 1) - 1;
+    }
+
+    /** @return Number of durations recorded */
+    public long count() {
+        return count.sum();
+    }
+
+    /** @return Longest duration recorded, 0 if there is none */
+    public long max() {
+        return max.get();
+    }
+
+    /** @return Mean of the durations recorded, 0 if there is none */
+    public long mean() {
+        var n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    /**
+     * @param percentile Between 0 and 100.
+     * @return Upper bound of the bucket of the percentile (never above the longest duration), 0 if there is none.
+     */
+    public long percentile(double percentile) {
+        var counts = new long[BUCKETS];
+        var total = 0L;
+        for (var i = 0; i < BUCKETS; i++) {
+            var bucket = buckets.get(i);
+            if (bucket != null) total += counts[i] = bucket.sum();
+        }
+        if (total == 0) return 0;
+        var rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+        var seen = 0L;
+        for (var i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upperBound(i), max());
+        }
+        return max();
+    }
+
+    /** @return Count, mean, 50th, 90th and 99th percentiles and max, in this order */
+    public Map<String, Long> summary() {
+        var ret = new LinkedHashMap<String, Long>();
+        ret.put("count", count());
+        ret.put("mean", mean());
+        ret.put("p50", percentile(50));
+        ret.put("p90", percentile(90));
+        ret.put("p99", percentile(99));
+        ret.put("max", max());
+        return ret;
+    }
+}
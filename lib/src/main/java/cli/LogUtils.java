@@ -2,31 +2,34 @@ package cli;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.logging.Handler;
 import java.util.logging.Level;
+import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
 import static java.util.logging.Level.SEVERE;
 import static java.util.logging.LogManager.getLogManager;
 import static java.util.logging.Logger.getLogger;
 
+/**
+ * Logging configuration of the launchers ({@code -Djava.util.logging.config.class=cli.LogUtils}).  Startup only sets
+ * the level of the cli logger: {@code cli-logging.properties} is read and its handlers are created when the first
+ * record gets past the levels, so that a run that logs nothing (the default level is SEVERE) pays nothing for it.
+ * Messages at the finer levels should be built by suppliers, {@code logger.log(Level.FINE, () -> ...)}.
+ * <p>
+ * With the env variable CLI_LOG_ASYNC (the capacity of the buffer, or any other value for the default one), the
+ * handlers write on a background thread, see {@link AsyncHandler}.
+ */
 public class LogUtils {
 
     private static final String ENV_VAR = "CLI_LOG_LEVEL";
+    private static final String ASYNC_ENV_VAR = "CLI_LOG_ASYNC";
 
     public LogUtils() {
-        try(InputStream stream = LogUtils.class.getResourceAsStream("/cli-logging.properties")) {
-            getLogManager().readConfiguration(stream);
-            // We can override log level by the env variable CLI_LOG_LEVEL
-            // It can take any value in the java util logging Level enumeration
-
-            var level = getLogLevelFromEnvironment();
-            getLogger("cli").setLevel(level);
-            // The following message will only be shown if log is fine enough
-            getLogger("cli").log(
-                Level.FINEST,
-                String.format("Overridden log level to %s by env var %s", level, ENV_VAR)
-            );
-        } catch (IOException ioe) { ioe.printStackTrace(); }
+        // We can override log level by the env variable CLI_LOG_LEVEL
+        // It can take any value in the java util logging Level enumeration
+        getLogger("cli").setLevel(getLogLevelFromEnvironment());
+        getLogger("").addHandler(new LazyHandler());
     }
 
     public static Logger getDefaultLogger() {
@@ -39,4 +42,57 @@ public class LogUtils {
             ? Level.parse(value.toUpperCase())
             : SEVERE;
     }
+
+    // Reads the configuration and replaces the handlers of the root logger
+    static void configure() {
+        try(InputStream stream = LogUtils.class.getResourceAsStream("/cli-logging.properties")) {
+            getLogManager().readConfiguration(stream);
+        } catch (IOException ioe) { ioe.printStackTrace(); }
+        var level = getLogLevelFromEnvironment();
+        getLogger("cli").setLevel(level);
+        var async = System.getenv(ASYNC_ENV_VAR);
+        if (async != null && !async.isBlank()) {
+            var root = getLogger("");
+            for (var handler : root.getHandlers()) {
+                if (handler instanceof AsyncHandler) continue;
+                root.removeHandler(handler);
+                root.addHandler(new AsyncHandler(handler, capacity(async), true));
+            }
+        }
+        // The following message will only be shown if log is fine enough
+        getLogger("cli").log(Level.FINEST, () -> String.format("Overridden log level to %s by env var %s", level, ENV_VAR));
+    }
+
+    private static int capacity(String value) {
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException nfe) {
+            return 1024;
+        }
+    }
+
+    // Stands for the configured handlers until there is something to log
+    private static final class LazyHandler extends Handler {
+
+        private boolean configured;
+
+        @Override
+        public synchronized void publish(LogRecord record) {
+            if (!configured) {
+                configured = true;
+                // Removes this handler
+                configure();
+            }
+            // Other threads may have been logging to this handler while it was replaced
+            for (var handler : getLogger("").getHandlers()) {
+                if (handler != this) handler.publish(record);
+            }
+        }
+
+        @Override
+        public void flush() { }
+
+        @Override
+        public void close() { }
+    }
 }
@@ -0,0 +1,222 @@
+package cli;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Invocations of every command run by this JVM: how many, their exit codes, the return codes of the
+ * {@link CmdException}s they ended with, and how long it took to parse their command lines, to bind them to the
+ * command objects and to run them.  Recording uses striped counters and {@link LatencyHistogram}s, so that
+ * threads running commands at the same time do not wait for each other.
+ * <p>
+ * The metrics are published as MBeans ({@code cli:type=Command,name=<command>}) once {@link #registerMBeans()} is
+ * called, or from the start if the env variable CLI_METRICS is set to {@code jmx}.  If the env variable
+ * CLI_METRICS_FILE is set, they are written to that file (as java properties) when the JVM exits.
+ */
+public final class Metrics {
+
+    private static final String ENV_VAR = "CLI_METRICS";
+    private static final String FILE_ENV_VAR = "CLI_METRICS_FILE";
+    private static final String JMX = "jmx";
+
+    private final static Logger logger = Logger.getLogger(Metrics.class.getName());
+
+    private static final Map<String, CommandStats> commands = new ConcurrentHashMap<>();
+    private static volatile boolean jmx = JMX.equalsIgnoreCase(String.valueOf(System.getenv(ENV_VAR)).trim());
+
+    static {
+        var file = System.getenv(FILE_ENV_VAR);
+        if (file != null && !file.isBlank()) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> write(Path.of(file.trim())), "cli-metrics"));
+        }
+    }
+
+    private Metrics() { }
+
+    /**
+     * Metrics of a command, as published in JMX.  Latencies are in nanoseconds: count, mean, p50, p90, p99 and max.
+     */
+    public interface CommandStatsMXBean {
+        String getCommand();
+        long getInvocations();
+        /** @return Invocations by exit code, including the failed ones */
+        Map<Integer, Long> getExitCodes();
+        /** @return Invocations that ended with a CmdException, by its return code */
+        Map<Integer, Long> getErrors();
+        Map<String, Long> getParseNanos();
+        Map<String, Long> getBindNanos();
+        Map<String, Long> getRunNanos();
+    }
+
+    /**
+     * Metrics of a command.
+     */
+    public static final class CommandStats implements CommandStatsMXBean {
+
+        private final String command;
+        private final LongAdder invocations = new LongAdder();
+        private final Map<Integer, LongAdder> exitCodes = new ConcurrentHashMap<>();
+        private final Map<Integer, LongAdder> errors = new ConcurrentHashMap<>();
+        private final LatencyHistogram parse = new LatencyHistogram();
+        private final LatencyHistogram bind = new LatencyHistogram();
+        private final LatencyHistogram run = new LatencyHistogram();
+
+        private CommandStats(String command) {
+            this.command = command;
+        }
+
+        // An invocation returned, null for the background commands (which are still running)
+        void returned(Integer code) {
+            invocations.increment();
+            if (code != null) counter(exitCodes, code).increment();
+        }
+
+        // An invocation failed
+        void failed(int code) {
+            invocations.increment();
+            counter(exitCodes, code).increment();
+            counter(errors, code).increment();
+        }
+
+        private static LongAdder counter(Map<Integer, LongAdder> counters, int code) {
+            var ret = counters.get(code);
+            return ret != null ? ret : counters.computeIfAbsent(code, c -> new LongAdder());
+        }
+
+        private static Map<Integer, Long> snapshot(Map<Integer, LongAdder> counters) {
+            var ret = new TreeMap<Integer, Long>();
+            counters.forEach((code, counter) -> ret.put(code, counter.sum()));
+            return ret;
+        }
+
+        @Override
+        public String getCommand() { return command; }
+
+        @Override
+        public long getInvocations() { return invocations.sum(); }
+
+        @Override
+        public Map<Integer, Long> getExitCodes() { return snapshot(exitCodes); }
+
+        @Override
+        public Map<Integer, Long> getErrors() { return snapshot(errors); }
+
+        @Override
+        public Map<String, Long> getParseNanos() { return parse.summary(); }
+
+        @Override
+        public Map<String, Long> getBindNanos() { return bind.summary(); }
+
+        @Override
+        public Map<String, Long> getRunNanos() { return run.summary(); }
+
+        /** @return The histograms of parse, bind and run */
+        public LatencyHistogram parse() { return parse; }
+
+        public LatencyHistogram bind() { return bind; }
+
+        public LatencyHistogram run() { return run; }
+    }
+
+    /**
+     * @param command Name of the command.
+     * @return Its metrics, created (and published, if the MBeans are) on first use.
+     */
+    public static CommandStats forCommand(String command) {
+        var ret = commands.get(command);
+        if (ret != null) return ret;
+        var created = new boolean[1];
+        ret = commands.computeIfAbsent(command, c -> {
+            created[0] = true;
+            return new CommandStats(c);
+        });
+        if (created[0] && jmx) register(ret);
+        return ret;
+    }
+
+    /** @return Metrics of the commands run so far */
+    public static Collection<CommandStats> all() {
+        return List.copyOf(commands.values());
+    }
+
+    /** Publishes the metrics of the commands as MBeans, those run so far and those to come */
+    public static synchronized void registerMBeans() {
+        if (jmx) return;
+        jmx = true;
+        commands.values().forEach(Metrics::register);
+    }
+
+    static ObjectName objectName(String command) throws JMException {
+        return new ObjectName("cli:type=Command,name=" + ObjectName.quote(command));
+    }
+
+    private static void register(CommandStats stats) {
+        try {
+            var server = ManagementFactory.getPlatformMBeanServer();
+            var name = objectName(stats.getCommand());
+            if (!server.isRegistered(name)) server.registerMBean(stats, name);
+        } catch (InstanceAlreadyExistsException e) {
+            // Published by another thread
+        } catch (JMException e) {
+            logger.log(Level.WARNING, e, () -> String.format("Could not publish the metrics of %s", stats.getCommand()));
+        }
+    }
+
+    /** Forgets the metrics recorded so far, and unpublishes them */
+    static synchronized void clear() {
+        if (jmx) {
+            var server = ManagementFactory.getPlatformMBeanServer();
+            for (var command : commands.keySet()) {
+                try {
+                    if (server.isRegistered(objectName(command))) server.unregisterMBean(objectName(command));
+                } catch (JMException e) {
+                    logger.log(Level.FINE, e, () -> String.format("Could not unpublish the metrics of %s", command));
+                }
+            }
+        }
+        commands.clear();
+    }
+
+    /**
+     * @return The metrics as java properties, {@code <command>.invocations}, {@code <command>.exit.<code>},
+     * {@code <command>.error.<code>} and {@code <command>.<parse|bind|run>.<count|mean|p50|p90|p99|max>}.
+     */
+    public static String dump() {
+        var ret = new StringBuilder();
+        var sorted = new TreeMap<String, CommandStats>(commands);
+        sorted.forEach((command, stats) -> {
+            ret.append(String.format("%s.invocations=%d%n", command, stats.getInvocations()));
+            stats.getExitCodes().forEach((code, n) -> ret.append(String.format("%s.exit.%d=%d%n", command, code, n)));
+            stats.getErrors().forEach((code, n) -> ret.append(String.format("%s.error.%d=%d%n", command, code, n)));
+            appendLatency(ret, command + ".parse", stats.getParseNanos());
+            appendLatency(ret, command + ".bind", stats.getBindNanos());
+            appendLatency(ret, command + ".run", stats.getRunNanos());
+        });
+        return ret.toString();
+    }
+
+    private static void appendLatency(StringBuilder sb, String prefix, Map<String, Long> summary) {
+        summary.forEach((key, value) -> sb.append(String.format("%s.%s=%d%n", prefix, key, value)));
+    }
+
+    private static void write(Path file) {
+        try {
+            Files.writeString(file, dump());
+        } catch (IOException ioe) {
+            logger.log(Level.WARNING, ioe, () -> String.format("Could not write the metrics to %s", file));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package cli;
+
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Options of a command, precomputed for {@link ArgumentParser}: every option gets an index, and its short and
+ * long names are found with a perfect hash (no collisions, so a lookup is a hash and a single comparison)
+ * computed on a region of the token, without copying it.
+ * It is immutable and shared between threads.
+ */
+final class OptionTable {
+
+    // Source of the table, for the binders that only understand Apache Commons Cli
+    final Options options;
+    // By option index: the name the binders switch on (the short one, or else the long one), whether it takes
+    //  a value and whether it is mandatory
+    final String[] keys;
+    final boolean[] hasArg;
+    final boolean[] required;
+    // Indexes of the mandatory options
+    final int[] requiredOptions;
+    final String[] longNames;
+
+    private final Names shortNames;
+    private final Names longNamesTable;
+
+    OptionTable(Options options) {
+        this.options = options;
+        var list = new ArrayList<>(options.getOptions());
+        var size = list.size();
+        keys = new String[size];
+        hasArg = new boolean[size];
+        required = new boolean[size];
+        longNames = new String[size];
+        var shorts = new String[size];
+        var requiredCount = 0;
+        for (var i = 0; i < size; i++) {
+            Option option = list.get(i);
+            keys[i] = option.getOpt() != null ? option.getOpt() : option.getLongOpt();
+            hasArg[i] = option.hasArg();
+            required[i] = option.isRequired();
+            if (required[i]) requiredCount++;
+            shorts[i] = option.getOpt();
+            longNames[i] = option.getLongOpt();
+        }
+        requiredOptions = new int[requiredCount];
+        var j = 0;
+        for (var i = 0; i < size; i++) if (required[i]) requiredOptions[j++] = i;
+        shortNames = new Names(shorts);
+        longNamesTable = new Names(longNames);
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    /** @return Index of the option with the short name token[from, to), or -1 */
+    int findShort(String token, int from, int to) {
+        return shortNames.find(token, from, to);
+    }
+
+    /** @return Index of the option with the long name token[from, to), or -1 */
+    int findLong(String token, int from, int to) {
+        return longNamesTable.find(token, from, to);
+    }
+
+    /**
+     * Long option starting with token[from, to), as Apache Commons Cli accepts unambiguous prefixes.
+     * @return Index of the option, -1 if there is none, -2 if there are several.
+     */
+    int findLongPrefix(String token, int from, int to) {
+        var ret = -1;
+        var length = to - from;
+        for (var i = 0; i < longNames.length; i++) {
+            var name = longNames[i];
+            if (name != null && name.length() > length && name.regionMatches(0, token, from, length)) {
+                if (ret >= 0) return -2;
+                ret = i;
+            }
+        }
+        return ret;
+    }
+
+    // Perfect hash of a set of names: the size and seed of the table are chosen so that no two names share a slot
+    private static final class Names {
+
+        private final String[] slotNames;
+        private final int[] slotOptions;
+        private final int mask;
+        private final int seed;
+
+        Names(String[] names) {
+            var count = 0;
+            for (var name : names) if (name != null) count++;
+            var capacity = Integer.highestOneBit(Math.max(1, count * 2 - 1)) << 1;
+            var seed = 1;
+            var slots = place(names, capacity, seed);
+            while (slots == null) {
+                // Try another seed, and after a few of them a larger table
+                if (++seed > 64) {
+                    seed = 1;
+                    capacity <<= 1;
+                }
+                slots = place(names, capacity, seed);
+            }
+            this.slotOptions = slots;
+            this.slotNames = new String[capacity];
+            for (var i = 0; i < capacity; i++) if (slots[i] >= 0) slotNames[i] = names[slots[i]];
+            this.mask = capacity - 1;
+            this.seed = seed;
+        }
+
+        // Option index by slot, or null if two different names collide
+        private static int[] place(String[] names, int capacity, int seed) {
+            var slots = new int[capacity];
+            Arrays.fill(slots, -1);
+            for (var i = 0; i < names.length; i++) {
+                var name = names[i];
+                if (name == null) continue;
+                var slot = hash(name, 0, name.length(), seed) & (capacity - 1);
+                if (slots[slot] >= 0) {
+                    // The same name for two options: the first one wins, as in Apache Commons Cli
+                    if (names[slots[slot]].equals(name)) continue;
+                    return null;
+                }
+                slots[slot] = i;
+            }
+            return slots;
+        }
+
+        private static int hash(String s, int from, int to, int seed) {
+            var h = seed;
+            for (var i = from; i < to; i++) h = h * 31 + s.charAt(i);
+            return h ^ (h >>> 16);
+        }
+
+        int find(String token, int from, int to) {
+            var slot = hash(token, from, to, seed) & mask;
+            var name = slotNames[slot];
+            if (name == null || name.length() != to - from || !token.regionMatches(from, name, 0, name.length()))
+                return -1;
+            return slotOptions[slot];
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package cli;
+
+import cli.annotations.OutputMode;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Routes System.out, for the invocation of a command run by the current thread, through a large-buffer stream
+ * that is not flushed on every line (optionally drained by a background writer thread); other invocations in the
+ * same JVM keep their own output.  The buffer is flushed when the command ends, when it fails, when it calls
+ * System.out.flush() and in a shutdown hook, so that nothing is lost if the command calls System.exit.  When the
+ * standard output is a terminal, the stream is flushed on every line instead.
+ */
+final class OutputBuffering implements AutoCloseable {
+
+    private static final String ENV_VAR = "CLI_OUTPUT";
+
+    /** Framework option that overrides the output mode of the command and CLI_OUTPUT */
+    static final String OPTION = "output-mode";
+
+    // Size of the buffers
+    static final int BUFFER_SIZE = 1 << 16;
+    // Buffers waiting for the background writer
+    private static final int QUEUED_BUFFERS = 8;
+
+    private final static Logger logger = Logger.getLogger(OutputBuffering.class.getName());
+
+    /** Nothing installed: the command writes directly */
+    static final OutputBuffering NONE = new OutputBuffering(null, null, null);
+
+    private final StandardStreams.Scope scope;
+    // Streams of the invocation before this one was installed, null for the original ones
+    private final StandardStreams.Target previous;
+    private final OutputStream stream;
+    private final Thread hook;
+
+    private OutputBuffering(StandardStreams.Scope scope, StandardStreams.Target previous, OutputStream stream) {
+        this.scope = scope;
+        this.previous = previous;
+        this.stream = stream;
+        this.hook = stream == null ? null : new Thread(this::flush, "cli-stdout-flush");
+    }
+
+    /**
+     * Mode of a command: the framework option {@code --output-mode} (direct, buffered or async) overrides the env
+     * variable CLI_OUTPUT, which overrides the one in its Command annotation.  Background commands always write
+     * directly.
+     * @param metadata Command.
+     * @param option Value of the framework option, null if there is none.
+     * @return Output mode, never DEFAULT.
+     * @throws CmdException if the option is not an output mode.
+     */
+    static OutputMode resolve(CommandMetadata metadata, String option) throws CmdException {
+        if (metadata.isBackground()) return OutputMode.DIRECT;
+        if (option != null) {
+            try {
+                var ret = OutputMode.valueOf(option.trim().toUpperCase(Locale.ROOT));
+                if (ret != OutputMode.DEFAULT) return ret;
+            } catch (IllegalArgumentException iae) {
+                throw new CmdException(
+                    String.format("The output mode must be direct, buffered or async: %s", option), -1);
+            }
+        }
+        var value = System.getenv(ENV_VAR);
+        if (value != null && !value.isBlank()) {
+            try {
+                var ret = OutputMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+                if (ret != OutputMode.DEFAULT) return ret;
+            } catch (IllegalArgumentException iae) {
+                logger.log(Level.WARNING, () -> String.format("Ignoring %s=%s", ENV_VAR, value));
+            }
+        }
+        return metadata.getOutputMode() == OutputMode.DEFAULT ? OutputMode.DIRECT : metadata.getOutputMode();
+    }
+
+    /**
+     * Routes the System.out of the current thread (and the threads it starts) through the stream for a mode;
+     * closing the returned object flushes it and routes System.out back to where it went.
+     * @param mode Output mode.
+     * @return The installed output.
+     */
+    static OutputBuffering open(OutputMode mode) {
+        if (mode == OutputMode.DIRECT || mode == OutputMode.DEFAULT) return NONE;
+        var scope = StandardStreams.open();
+        var previous = StandardStreams.current();
+        var original = previous != null ? previous.out() : StandardStreams.stdout();
+        // A terminal is read by a human: every line must show up as soon as it is printed.  The output of an
+        //  enclosing invocation (a daemon session, a batch) is not the terminal of this JVM
+        var lineBuffered = previous == null && StandardStreams.isTerminal();
+        var stream = mode == OutputMode.ASYNC && !lineBuffered
+            ? new AsyncOutputStream(original)
+            : new BufferedOutputStream(original, BUFFER_SIZE);
+        var ret = new OutputBuffering(scope, previous, stream);
+        Runtime.getRuntime().addShutdownHook(ret.hook);
+        StandardStreams.route(new StandardStreams.Target(
+            previous != null ? previous.in() : StandardStreams.stdin(),
+            stream,
+            previous != null ? previous.err() : StandardStreams.stderr(),
+            !lineBuffered
+        ));
+        return ret;
+    }
+
+    /** Writes whatever is buffered */
+    void flush() {
+        if (stream == null) return;
+        try {
+            stream.flush();
+        } catch (IOException ioe) {
+            logger.log(Level.FINE, "Could not flush the output", ioe);
+        }
+    }
+
+    /**
+     * Flushes the output and routes System.out back to where it went (which is left open).
+     */
+    @Override
+    public void close() {
+        if (stream == null) return;
+        flush();
+        StandardStreams.restore(previous);
+        scope.close();
+        if (stream instanceof AsyncOutputStream async) {
+            try {
+                async.close();
+            } catch (IOException ioe) {
+                logger.log(Level.FINE, "Could not stop the output writer", ioe);
+            }
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(hook);
+        } catch (IllegalStateException e) {
+            // Already shutting down: the hook flushes it
+        }
+    }
+
+    // Hands full buffers to a background thread that writes them
+    static class AsyncOutputStream extends OutputStream {
+
+        // A buffer to write, or a request to flush (data is null) or to stop (future is null as well)
+        private record Chunk(byte[] data, int length, CompletableFuture<Void> done) { }
+
+        private final OutputStream target;
+        private final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(QUEUED_BUFFERS);
+        private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(QUEUED_BUFFERS + 1);
+        private byte[] buffer = new byte[BUFFER_SIZE];
+        private int count;
+        private volatile IOException failure;
+        private boolean closed;
+
+        AsyncOutputStream(OutputStream target) {
+            this.target = target;
+            Thread.ofPlatform().daemon().name("cli-stdout").start(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                final Chunk chunk;
+                try {
+                    chunk = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    if (chunk.data != null) {
+                        if (failure == null) target.write(chunk.data, 0, chunk.length);
+                        free.offer(chunk.data);
+                    } else {
+                        if (failure == null) target.flush();
+                        if (chunk.done == null) return;
+                    }
+                } catch (IOException ioe) {
+                    failure = ioe;
+                } finally {
+                    if (chunk.done != null) chunk.done.complete(null);
+                }
+            }
+        }
+
+        private void check() throws IOException {
+            if (closed) throw new IOException("Stream closed");
+            var failure = this.failure;
+            if (failure != null) throw failure;
+        }
+
+        private void put(Chunk chunk) throws IOException {
+            try {
+                queue.put(chunk);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+
+        // Hands the current buffer to the writer
+        private void handOff() throws IOException {
+            if (count == 0) return;
+            put(new Chunk(buffer, count, null));
+            var next = free.poll();
+            buffer = next != null ? next : new byte[BUFFER_SIZE];
+            count = 0;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            check();
+            if (count == buffer.length) handOff();
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            check();
+            while (len > 0) {
+                if (count == buffer.length) handOff();
+                var n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        // Waits until everything written so far is in the target
+        @Override
+        public void flush() throws IOException {
+            if (closed) return;
+            handOff();
+            var done = new CompletableFuture<Void>();
+            put(new Chunk(null, 0, done));
+            try {
+                done.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+            check();
+        }
+
+        // Stops the writer, the target is left open
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            try {
+                flush();
+            } finally {
+                closed = true;
+                put(new Chunk(null, 0, null));
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package cli;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.ParseException;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Result of the built-in {@link ArgumentParser}: the options found, in command line order, and the positional
+ * arguments.  Values are the command line tokens themselves (only {@code --name=value} and {@code -xVALUE} forms
+ * take a substring), and the arrays are reused when the same object parses another command line.
+ * It must not be shared between threads.
+ */
+public final class ParsedArguments {
+
+    private OptionTable table;
+    private String[] tokens = new String[0];
+    // Options found: index in the table and value
+    private int[] options = new int[8];
+    private String[] values = new String[8];
+    private int size;
+    // Positional arguments: indexes in the tokens
+    private int[] positional = new int[8];
+    private int positionalCount;
+    // Options found, by index in the table
+    private boolean[] present = new boolean[0];
+
+    /** Creates an empty result, to be filled by {@link ArgumentParser#parse} */
+    public ParsedArguments() { }
+
+    void reset(OptionTable table, String[] tokens) {
+        this.table = table;
+        this.tokens = tokens;
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        positionalCount = 0;
+        if (present.length < table.size()) present = new boolean[table.size()];
+        else Arrays.fill(present, 0, table.size(), false);
+    }
+
+    void addOption(int option, String value) {
+        if (size == options.length) {
+            options = Arrays.copyOf(options, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        options[size] = option;
+        values[size++] = value;
+        present[option] = true;
+    }
+
+    void addArg(int token) {
+        if (positionalCount == positional.length) positional = Arrays.copyOf(positional, positionalCount * 2);
+        positional[positionalCount++] = token;
+    }
+
+    boolean isPresent(int option) {
+        return present[option];
+    }
+
+    /** @return Number of options found (an option repeated in the command line counts every time) */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i Position of the option, from 0 to size() - 1.
+     * @return Short name of the option, or its long name if it has no short one.
+     */
+    public String key(int i) {
+        return table.keys[options[checkIndex(i)]];
+    }
+
+    /**
+     * @param i Position of the option, from 0 to size() - 1.
+     * @return Value of the option, null for flags.
+     */
+    public String value(int i) {
+        return values[checkIndex(i)];
+    }
+
+    private int checkIndex(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException(i);
+        return i;
+    }
+
+    /** @return True if there are positional arguments */
+    public boolean hasArgs() {
+        return positionalCount > 0;
+    }
+
+    /**
+     * @return Positional arguments, in a new list.
+     */
+    public List<String> args() {
+        var ret = new String[positionalCount];
+        for (var i = 0; i < positionalCount; i++) ret[i] = tokens[positional[i]];
+        return Arrays.asList(ret);
+    }
+
+    /**
+     * @param i Position of a positional argument, from 0.
+     * @return The same options, with that positional argument alone.
+     */
+    ParsedArguments forArgument(int i) {
+        if (i < 0 || i >= positionalCount) throw new IndexOutOfBoundsException(i);
+        var ret = new ParsedArguments();
+        ret.table = table;
+        ret.tokens = tokens;
+        ret.options = Arrays.copyOf(options, size);
+        ret.values = Arrays.copyOf(values, size);
+        ret.size = size;
+        ret.positional = new int[] { positional[i] };
+        ret.positionalCount = 1;
+        // A copy: the fan-out items outlive the next parse on this thread
+        ret.present = Arrays.copyOf(present, present.length);
+        return ret;
+    }
+
+    /**
+     * Parses the same tokens with Apache Commons Cli, for the binders that only understand its command lines.
+     * @return Equivalent command line.
+     * @throws ParseException if Apache Commons Cli does not accept them (it should, they were already parsed).
+     */
+    CommandLine toCommandLine() throws ParseException {
+        // Only the options are parsed again, the positional arguments are these ones
+        var isPositional = new boolean[tokens.length];
+        for (var i = 0; i < positionalCount; i++) isPositional[positional[i]] = true;
+        var optionTokens = new String[tokens.length];
+        var count = 0;
+        for (var i = 0; i < tokens.length; i++) if (!isPositional[i]) optionTokens[count++] = tokens[i];
+        var parsed = new DefaultParser().parse(table.options, Arrays.copyOf(optionTokens, count), false);
+        var ret = new CommandLine.Builder();
+        for (var option : parsed.getOptions()) ret.addOption(option);
+        for (var i = 0; i < positionalCount; i++) ret.addArg(tokens[positional[i]]);
+        return ret.build();
+    }
+}
@@ -0,0 +1,41 @@
+package cli;
+
+import cli.annotations.ExitCodePolicy;
+import cli.annotations.Run;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * Run annotation of a command that runs once per positional argument, as written by the generated binders so that
+ * the entry point does not read it by reflection.  Equal to the annotation on the Run method.
+ */
+record PerItemRun(boolean virtualThreads, ExitCodePolicy exitCode) implements Run {
+
+    @Override
+    public boolean perItem() {
+        return true;
+    }
+
+    @Override
+    public Class<? extends Annotation> annotationType() {
+        return Run.class;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Run r && r.perItem() && r.virtualThreads() == virtualThreads && r.exitCode() == exitCode;
+    }
+
+    // As specified by Annotation.hashCode
+    @Override
+    public int hashCode() {
+        return ((127 * "perItem".hashCode()) ^ Boolean.hashCode(true))
+            + ((127 * "virtualThreads".hashCode()) ^ Boolean.hashCode(virtualThreads))
+            + ((127 * "exitCode".hashCode()) ^ exitCode.hashCode());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("@%s(perItem=true, virtualThreads=%s, exitCode=%s)", Run.class.getName(), virtualThreads, exitCode);
+    }
+}
@@ -0,0 +1,98 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Loads the classes a command needs on a background thread, while the main thread parses its command line.
+ * The plugin records them in a training run of every command and writes them next to the scripts, one
+ * {@code <command class>.classes} file per command (see {@link #listName(String)}); the scripts pass that
+ * directory in the system property {@code cli.preload}.
+ * <p>
+ * The classes are loaded and not initialized: running static initializers out of order on a second thread may
+ * change what a command does, or deadlock with the main thread when two initializers depend on each other.
+ * Preloading is off with a single processor, where it only competes with the main thread, and when the env
+ * variable CLI_PRELOAD is {@code false} (or {@code 0}, {@code off}).
+ */
+final class Preloader {
+
+    private static final String PROPERTY = "cli.preload";
+    private static final String ENV_VAR = "CLI_PRELOAD";
+    private static final String EXTENSION = ".classes";
+
+    private final static Logger logger = Logger.getLogger(Preloader.class.getName());
+
+    private Preloader() { }
+
+    /**
+     * Starts preloading the classes of the command in a command line, if there is a list for it.
+     * @param args Command line, the command (class or name) first.
+     * @return The thread preloading the classes, null if it was not started.
+     */
+    static Thread start(String... args) {
+        var dir = System.getProperty(PROPERTY);
+        if (dir == null || dir.isBlank() || args.length == 0) return null;
+        if (!isEnabled(System.getenv(ENV_VAR), Runtime.getRuntime().availableProcessors())) return null;
+        var command = args[0];
+        var loader = Preloader.class.getClassLoader();
+        return Thread.ofPlatform().daemon().name("cli-preload").start(() -> {
+            // The dispatcher script passes the name of the command instead of its class
+            var list = Path.of(dir, listName(CommandIndex.resolve(command)));
+            preload(list, loader);
+        });
+    }
+
+    static boolean isEnabled(String value, int processors) {
+        if (value != null && List.of("false", "0", "off", "no").contains(value.trim().toLowerCase())) return false;
+        return processors > 1;
+    }
+
+    /**
+     * @param commandClass Name of the command class.
+     * @return Name of the file with the classes it loads.
+     */
+    static String listName(String commandClass) {
+        return commandClass + EXTENSION;
+    }
+
+    /**
+     * Loads the classes in a list, one binary name per line.  The ones that cannot be loaded are skipped.
+     * @param list File.
+     * @param loader Class loader of the command.
+     * @return Number of classes loaded.
+     */
+    static int preload(Path list, ClassLoader loader) {
+        List<String> names;
+        try {
+            names = Files.readAllLines(list, UTF_8);
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            logger.log(Level.FINE, e, () -> String.format("Could not read %s", list));
+            return 0;
+        }
+        var start = System.nanoTime();
+        var ret = 0;
+        for (var name : names) {
+            if (name.isBlank()) continue;
+            try {
+                Class.forName(name.trim(), false, loader);
+                ret++;
+            } catch (ClassNotFoundException | LinkageError e) {
+                // The list is older than the libraries
+                logger.log(Level.FINEST, e, () -> String.format("Could not preload %s", name));
+            }
+        }
+        var loaded = ret;
+        logger.log(Level.FINE, () -> String.format("Preloaded %d of %d classes in %d us",
+            loaded, names.size(), (System.nanoTime() - start) / 1_000));
+        return ret;
+    }
+}
@@ -0,0 +1,407 @@
+package cli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Structured output of a command, in the format chosen with the framework option {@code --output}:
+ * <ul>
+ *     <li>{@code text} (default): the values of every record separated by tabs</li>
+ *     <li>{@code ndjson}: a JSON object per line</li>
+ *     <li>{@code csv}: comma separated values, with a header (the names of the fields of the first record)</li>
+ * </ul>
+ * The Run method gets the writer of its invocation with {@link #current()}:
+ * <pre>
+ * var out = RecordWriter.current();
+ * for (var file : files) out.field("name", file.name()).field("size", file.size()).endRecord();
+ * </pre>
+ * Every record must have the same fields, in the same order.  Values are encoded in UTF-8 straight into a reusable
+ * buffer, which is written to the standard output every 64 KB and when the Run method returns.
+ */
+public final class RecordWriter implements AutoCloseable {
+
+    /**
+     * Formats of the records.
+     */
+    public enum Format {
+        TEXT, NDJSON, CSV;
+
+        /**
+         * @param value Value of the --output option, null for the default format.
+         * @return The format.
+         * @throws CmdException if there is no such format.
+         */
+        static Format of(String value) throws CmdException {
+            if (value == null) return TEXT;
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new CmdException(String.format("The output must be text, ndjson or csv: %s", value), -1);
+            }
+        }
+    }
+
+    static final String OPTION = "output";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Longest encoding of a char: a JSON escape
+    private static final int MAX_CHAR_BYTES = 6;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    // Writer of the invocation run by the current thread, inherited by the threads it starts
+    private static final InheritableThreadLocal<RecordWriter> current = new InheritableThreadLocal<>();
+
+    private final Session session;
+    private final int item;
+    private final OutputStream out;
+    private final RecordWriter previous;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;
+    // Fields of the current record
+    private int fields;
+    private long records;
+    // Names of the fields, and their encoding as JSON keys, by position
+    private final List<String> names = new ArrayList<>();
+    private final List<byte[]> keys = new ArrayList<>();
+
+    private RecordWriter(Session session, int item, OutputStream out) {
+        this.session = session;
+        this.item = item;
+        this.out = out;
+        this.previous = current.get();
+    }
+
+    /**
+     * @return Writer of the invocation run by the current thread.
+     * @throws IllegalStateException if the current thread does not run an invocation.
+     */
+    public static RecordWriter current() {
+        var ret = current.get();
+        if (ret == null) throw new IllegalStateException("There are no records outside of an invocation");
+        return ret;
+    }
+
+    /** @return Format of the records */
+    public Format format() {
+        return session.format;
+    }
+
+    public RecordWriter field(String name, CharSequence value) {
+        startField(name);
+        if (value == null) {
+            if (session.format == Format.NDJSON) write(NULL);
+        } else if (session.format == Format.NDJSON) {
+            writeJsonString(value);
+        } else if (session.format == Format.CSV && needsQuotes(value)) {
+            ensure(1);
+            buffer[count++] = '"';
+            for (var i = 0; i < value.length(); i++) {
+                var c = value.charAt(i);
+                if (c == '"') {
+                    ensure(1);
+                    buffer[count++] = '"';
+                }
+                i = writeChar(value, i);
+            }
+            ensure(1);
+            buffer[count++] = '"';
+        } else {
+            for (var i = 0; i < value.length(); i++) {
+                var c = value.charAt(i);
+                // Tabs and line breaks would break the text records
+                i = session.format == Format.TEXT && (c == '\t' || c == '\n' || c == '\r') ? writeSpace(i) : writeChar(value, i);
+            }
+        }
+        return this;
+    }
+
+    public RecordWriter field(String name, long value) {
+        startField(name);
+        ensure(20);
+        if (value == Long.MIN_VALUE) {
+            write(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+            return this;
+        }
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        var digits = 1;
+        for (var v = value; v >= 10; v /= 10) digits++;
+        for (var i = count + digits - 1; i >= count; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        count += digits;
+        return this;
+    }
+
+    public RecordWriter field(String name, double value) {
+        startField(name);
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            if (session.format == Format.NDJSON) write(NULL);
+            else write(Double.toString(value).getBytes(StandardCharsets.US_ASCII));
+        } else {
+            write(Double.toString(value).getBytes(StandardCharsets.US_ASCII));
+        }
+        return this;
+    }
+
+    public RecordWriter field(String name, boolean value) {
+        startField(name);
+        write(value ? TRUE : FALSE);
+        return this;
+    }
+
+    /** Ends the current record */
+    public void endRecord() {
+        if (session.format == Format.NDJSON) {
+            ensure(2);
+            if (fields == 0) buffer[count++] = '{';
+            buffer[count++] = '}';
+        }
+        ensure(1);
+        buffer[count++] = '\n';
+        if (records++ == 0 && session.format == Format.CSV) session.header(item, header(), out);
+        fields = 0;
+        if (count >= BUFFER_SIZE / 2) flushBuffer();
+    }
+
+    private void startField(String name) {
+        var position = fields++;
+        if (records == 0 && position == names.size()) {
+            names.add(name);
+            keys.add(null);
+        }
+        if (position > 0) {
+            ensure(1);
+            buffer[count++] = (byte) (session.format == Format.TEXT ? '\t' : ',');
+        }
+        if (session.format == Format.NDJSON) {
+            ensure(1);
+            if (position == 0) buffer[count++] = '{';
+            write(key(position, name));
+        }
+    }
+
+    // "name": as bytes, computed once per position (and again if the name changes)
+    private byte[] key(int position, String name) {
+        if (position >= names.size()) {
+            names.add(name);
+            keys.add(null);
+        }
+        var ret = keys.get(position);
+        if (ret == null || !name.equals(names.get(position))) {
+            var key = new StringBuilder("\"");
+            for (var i = 0; i < name.length(); i++) {
+                var c = name.charAt(i);
+                if (c == '"' || c == '\\') key.append('\\').append(c);
+                else if (c < 0x20) key.append(String.format("\\u%04x", (int) c));
+                else key.append(c);
+            }
+            ret = key.append("\":").toString().getBytes(StandardCharsets.UTF_8);
+            names.set(position, name);
+            keys.set(position, ret);
+        }
+        return ret;
+    }
+
+    // Header of the CSV records
+    private byte[] header() {
+        var ret = new StringBuilder();
+        for (var name : names) {
+            if (!ret.isEmpty()) ret.append(',');
+            ret.append(needsQuotes(name) ? '"' + name.replace("\"", "\"\"") + '"' : name);
+        }
+        return ret.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean needsQuotes(CharSequence value) {
+        for (var i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+
+    private void writeJsonString(CharSequence value) {
+        ensure(1);
+        buffer[count++] = '"';
+        for (var i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                ensure(2);
+                buffer[count++] = '\\';
+                buffer[count++] = (byte) c;
+            } else if (c < 0x20) {
+                ensure(MAX_CHAR_BYTES);
+                buffer[count++] = '\\';
+                switch (c) {
+                    case '\n' -> buffer[count++] = 'n';
+                    case '\r' -> buffer[count++] = 'r';
+                    case '\t' -> buffer[count++] = 't';
+                    default -> {
+                        buffer[count++] = 'u';
+                        buffer[count++] = '0';
+                        buffer[count++] = '0';
+                        buffer[count++] = HEX[c >> 4];
+                        buffer[count++] = HEX[c & 0xf];
+                    }
+                }
+            } else {
+                i = writeChar(value, i);
+            }
+        }
+        ensure(1);
+        buffer[count++] = '"';
+    }
+
+    private int writeSpace(int i) {
+        ensure(1);
+        buffer[count++] = ' ';
+        return i;
+    }
+
+    // Encodes the char at i in UTF-8, returning the index of its last char (surrogate pairs take two)
+    private int writeChar(CharSequence value, int i) {
+        ensure(4);
+        var c = value.charAt(i);
+        if (c < 0x80) {
+            buffer[count++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[count++] = (byte) (0xc0 | c >> 6);
+            buffer[count++] = (byte) (0x80 | c & 0x3f);
+        } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+            var cp = Character.toCodePoint(c, value.charAt(++i));
+            buffer[count++] = (byte) (0xf0 | cp >> 18);
+            buffer[count++] = (byte) (0x80 | cp >> 12 & 0x3f);
+            buffer[count++] = (byte) (0x80 | cp >> 6 & 0x3f);
+            buffer[count++] = (byte) (0x80 | cp & 0x3f);
+        } else if (Character.isSurrogate(c)) {
+            buffer[count++] = '?';
+        } else {
+            buffer[count++] = (byte) (0xe0 | c >> 12);
+            buffer[count++] = (byte) (0x80 | c >> 6 & 0x3f);
+            buffer[count++] = (byte) (0x80 | c & 0x3f);
+        }
+        return i;
+    }
+
+    private void write(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    // Room for n more bytes: the buffer is written, unless it holds the first record of a CSV (its header goes first)
+    private void ensure(int n) {
+        if (count + n <= buffer.length) return;
+        if (records > 0 || session.format != Format.CSV) flushBuffer();
+        if (count + n > buffer.length) buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + n));
+    }
+
+    private void flushBuffer() {
+        if (count == 0) return;
+        try {
+            out.write(buffer, 0, count);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        count = 0;
+    }
+
+    /** Writes the records so far to the standard output */
+    public void flush() {
+        flushBuffer();
+        try {
+            out.flush();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /** Flushes the records, and restores the writer the thread had before */
+    @Override
+    public void close() {
+        flush();
+        if (current.get() == this) {
+            if (previous == null) current.remove();
+            else current.set(previous);
+        }
+    }
+
+    /**
+     * Output format of an invocation, shared by the writers of its items.
+     */
+    static final class Session {
+
+        private final Format format;
+        // The items run in parallel: their outputs are written later on, in order
+        private final boolean deferred;
+        private volatile byte[] header;
+        private final AtomicBoolean headerWritten = new AtomicBoolean();
+        private final Set<Integer> itemsWithRecords = ConcurrentHashMap.newKeySet();
+
+        /**
+         * @param format Format of the records.
+         * @param deferred True if the outputs of the items are held and written in order later on.
+         */
+        Session(Format format, boolean deferred) {
+            this.format = format;
+            this.deferred = deferred;
+        }
+
+        /**
+         * Opens the writer of the current thread, on its standard output.
+         * @param item Index of the item, for commands run per item.
+         * @return Writer, to be closed when the Run method returns.
+         */
+        RecordWriter open(int item) {
+            var ret = new RecordWriter(this, item, System.out);
+            current.set(ret);
+            return ret;
+        }
+
+        // First CSV record of a writer: the header goes before it, once
+        private void header(int item, byte[] bytes, OutputStream out) {
+            if (deferred) {
+                if (header == null) header = bytes;
+                itemsWithRecords.add(item);
+            } else if (headerWritten.compareAndSet(false, true)) {
+                try {
+                    out.write(bytes);
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+            }
+        }
+
+        /**
+         * Called before the output of an item run in parallel is written, so that the CSV header precedes the first
+         * record in the output.
+         * @param item Index of the item.
+         * @param out Standard output.
+         */
+        void beforeOutput(int item, OutputStream out) {
+            if (deferred && itemsWithRecords.contains(item) && headerWritten.compareAndSet(false, true)) {
+                try {
+                    out.write(header);
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+            }
+        }
+    }
+}
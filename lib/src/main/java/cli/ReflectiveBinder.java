@@ -0,0 +1,317 @@
+package cli;
+
+import cli.annotations.OptionalArgs;
+import cli.annotations.Parameter;
+import cli.annotations.Run;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binder built by introspection for the command classes that were not processed at build time.
+ * Setters, conversions and the Run method are resolved once, so that a cached instance can bind any
+ * number of command objects from concurrent callers.  Setters are called through method handles, and those
+ * of primitive int, long, float, double and boolean parameters get their values without boxing.
+ */
+final class ReflectiveBinder implements CommandBinder<Object> {
+
+    // Converts an option value to the type expected by a setter, and calls it
+    @FunctionalInterface
+    private interface Setter {
+        void apply(Object command, String value) throws Throwable;
+    }
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private final Class<Object> commandClass;
+    private final Constructor<?> constructor;
+    private final Method run;
+    // Setters indexed by both the short and long option names
+    private final Map<String, Setter> setters = new HashMap<>();
+    // Setters of the boolean flags with false bound as their argument, called before applying the arguments
+    private final List<MethodHandle> flags = new LinkedList<>();
+    // (Object, List)void
+    private MethodHandle optionalArgsSetter;
+    // Element type of its list: String, or one of the types opened by InputFiles
+    private Class<?> optionalArgsType = String.class;
+    private String optionalArgs;
+
+    @SuppressWarnings("unchecked")
+    ReflectiveBinder(Class<?> commandClass) throws CmdException {
+        this.commandClass = (Class<Object>) commandClass;
+        this.run = Introspection.findExecuteMethod(commandClass);
+        try {
+            this.constructor = commandClass.getConstructor();
+        } catch (NoSuchMethodException | SecurityException e) {
+            throw new CmdException(e).setReturnCode(-1337);
+        }
+        // Map the setter methods to commandLine option names
+        var methods = commandClass.getMethods();
+        for (var field: commandClass.getDeclaredFields()) {
+            var method = lookForSetter(field, methods);
+            if (field.isAnnotationPresent(Parameter.class)) {
+                var parameter = field.getAnnotation(Parameter.class);
+                var setter = method == null || method.getParameterCount() != 1 ? null : setter(method);
+                if (!parameter.name().trim().isEmpty()) {
+                    setters.put(parameter.name(), setter);
+                }
+                if (!parameter.longName().trim().isEmpty()) {
+                    setters.put(parameter.longName(), setter);
+                }
+                if (setter != null && isBooleanType(field)) {
+                    flags.add(resetFlag(method));
+                }
+            }
+            else if (field.isAnnotationPresent(OptionalArgs.class)) {
+                optionalArgs = field.getAnnotation(OptionalArgs.class).name();
+                optionalArgsSetter = method == null || method.getParameterCount() != 1 ? null : handle(method, Object.class);
+                if (optionalArgsSetter != null
+                        && method.getGenericParameterTypes()[0] instanceof ParameterizedType list
+                        && list.getActualTypeArguments()[0] instanceof Class<?> element
+                        && InputFiles.TYPES.contains(element.getName())) {
+                    optionalArgsType = element;
+                }
+            }
+        }
+    }
+
+    @Override
+    public Class<Object> getCommandClass() {
+        return commandClass;
+    }
+
+    @Override
+    public Object newInstance() {
+        try {
+            return constructor.newInstance();
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // This method build an Apache Command Line Options object upon
+    //	the annotated parameters information in the class
+    @Override
+    public Options buildOptions() {
+        // It will be the fields that get annotated, and those fields will get
+        //	us to the setter method
+        var options = new Options();
+        for (var field: commandClass.getDeclaredFields()) {
+            if (field.isAnnotationPresent(Parameter.class)) {
+                var parameter = field.getAnnotation(Parameter.class);
+                // Build the option
+                var optionBuilder = Option.builder().
+                    required(parameter.mandatory()).
+                    hasArg(!isBooleanType(field)).
+                    desc(parameter.description());
+                if (!parameter.longName().isEmpty())
+                    optionBuilder.longOpt(parameter.longName());
+                if (!parameter.name().trim().isEmpty())
+                    optionBuilder.option(parameter.name());
+                options.addOption(optionBuilder.build());
+            }
+        }
+        return options;
+    }
+
+    // Looks for an OptionalArgs annotation; it means that the command accepts
+    //	additional arguments such as ls or df.
+    @Override
+    public String getOptionalArgs() {
+        return optionalArgs;
+    }
+
+    // This method applies every argument in the command line to the command object
+    @Override
+    public void applyArguments(Object command, CommandLine commandLine) throws ParseException {
+        resetFlags(command);
+        // Apply the command line values to the indexed setters
+        var errors = new LinkedList<String>();
+        for (var option: commandLine.getOptions()) {
+            var setter = setters.get(option.getOpt());
+            if (setter == null) {
+                setter = setters.get(option.getLongOpt());
+            }
+            apply(command, setter, option.getValue(), errors);
+        }
+        checkErrors(errors);
+        applyArgs(command, Arrays.asList(commandLine.getArgs()));
+    }
+
+    // Same, for the arguments found by the built-in parser
+    @Override
+    public void applyArguments(Object command, ParsedArguments arguments) throws ParseException {
+        resetFlags(command);
+        var errors = new LinkedList<String>();
+        for (var i = 0; i < arguments.size(); i++) {
+            apply(command, setters.get(arguments.key(i)), arguments.value(i), errors);
+        }
+        checkErrors(errors);
+        applyArgs(command, arguments.hasArgs() ? arguments.args() : List.of());
+    }
+
+    private void resetFlags(Object command) throws ParseException {
+        try {
+            // Force false for all flags before applying the arguments - we assume it is turned down!
+            for (var flag: flags) {
+                flag.invokeExact(command);
+            }
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new ParseException(t.getMessage());
+        }
+    }
+
+    private static void apply(Object command, Setter setter, String value, List<String> errors) {
+        if (setter != null) {
+            try {
+                setter.apply(command, value);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                errors.add(t.getMessage());
+            }
+        }
+    }
+
+    private static void checkErrors(List<String> errors) throws ParseException {
+        if (!errors.isEmpty()) {
+            // Unable to parse certain options
+            throw new ParseException(String.join("\n", errors));
+        }
+    }
+
+    private void applyArgs(Object command, List<String> args) throws ParseException {
+        if (optionalArgsSetter != null) {
+            // The method must exist and may receive a list of strings (or of the files they name) as its only parameter
+            if (!args.isEmpty()) {
+                try {
+                    optionalArgsSetter.invokeExact(command, (Object) InputFiles.of(optionalArgsType, args));
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new ParseException(t.getMessage());
+                }
+            }
+        } else if (!args.isEmpty()) {
+            // The command line parsed args and it is not contemplated
+            throw new ParseException(
+                String.format(
+                    "Could not parse %s %n",
+                    String.join(",", args)
+                )
+            );
+        }
+    }
+
+    @Override
+    public Run getPerItem() {
+        var ret = run.getAnnotation(Run.class);
+        return ret.perItem() ? ret : null;
+    }
+
+    @Override
+    public Integer run(Object command, Path cwd) throws Exception {
+        try {
+            return (Integer) run.invoke(command, cwd);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+
+    // Gets a string, sets all the string to lower case, then the first
+    //	character to upper case.
+    private static String firstInUpperCase(String fieldName) {
+        return fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1);
+    }
+
+    // Looks for the setter method of a class field
+    private static Method lookForSetter(Field field, Method[] methods) {
+        Method ret = null;
+        if (field != null && methods != null && methods.length > 0) {
+            int i = 0;
+            String expectedMethodName = "set" + firstInUpperCase(field.getName());
+            while (ret == null && i < methods.length) {
+                Method method = methods[i++];
+                if (method.getName().equals(expectedMethodName)) {
+                    ret = method;
+                }
+            }
+        }
+        return ret;
+    }
+
+    // Resolves once the conversion of option values to the type of the setter argument, and binds it to the
+    //	setter: primitive int, long, float, double and boolean are converted and passed without boxing, enums
+    //	and the other types go through the converters of ArgumentConversions, and lists take comma separated
+    //	values of their element type.
+    // An argument-less parameter is supposed to be a Boolean, and if it is
+    //	present, it is assumed to be true
+    private static Setter setter(Method method) throws CmdException {
+        var type = method.getParameterTypes()[0];
+        if (type == int.class) {
+            var handle = handle(method, int.class);
+            return (command, value) -> { handle.invokeExact(command, ArgumentConversions.parseInt(value)); };
+        } else if (type == long.class) {
+            var handle = handle(method, long.class);
+            return (command, value) -> { handle.invokeExact(command, ArgumentConversions.parseLong(value)); };
+        } else if (type == float.class) {
+            var handle = handle(method, float.class);
+            return (command, value) -> { handle.invokeExact(command, ArgumentConversions.parseFloat(value)); };
+        } else if (type == double.class) {
+            var handle = handle(method, double.class);
+            return (command, value) -> { handle.invokeExact(command, ArgumentConversions.parseDouble(value)); };
+        } else if (type == boolean.class) {
+            var handle = handle(method, boolean.class);
+            return (command, value) -> { handle.invokeExact(command, ArgumentConversions.parseFlag(value)); };
+        }
+        var handle = handle(method, Object.class);
+        if (type == List.class && method.getGenericParameterTypes()[0] instanceof ParameterizedType list
+                && list.getActualTypeArguments()[0] instanceof Class<?> element) {
+            return (command, value) -> { handle.invokeExact(command, (Object) ArgumentConversions.toList(element, value)); };
+        }
+        var converter = ArgumentConversions.converter(type);
+        return (command, value) -> { handle.invokeExact(command, (Object) converter.convert(value)); };
+    }
+
+    // Setter of a flag with false as its argument, (Object)void
+    private static MethodHandle resetFlag(Method method) throws CmdException {
+        var type = method.getParameterTypes()[0];
+        var handle = handle(method, type == boolean.class ? boolean.class : Object.class);
+        return MethodHandles.insertArguments(handle, 1, type == boolean.class ? false : Boolean.FALSE);
+    }
+
+    // Handle of a public setter, adapted to (Object, argument)void
+    private static MethodHandle handle(Method method, Class<?> argument) throws CmdException {
+        try {
+            return LOOKUP.unreflect(method).asType(MethodType.methodType(void.class, Object.class, argument));
+        } catch (IllegalAccessException e) {
+            throw new CmdException(e).setReturnCode(-1337);
+        }
+    }
+
+    // We assume that every non-boolean type will require arguments
+    private static boolean isBooleanType(Field f) {
+        return f.getType().equals(boolean.class) || f.getType().equals(Boolean.class);
+    }
+}
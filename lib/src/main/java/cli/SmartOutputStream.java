@@ -1,22 +1,410 @@
 package cli;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Output stream that writes to another stream while keeping a copy of what is written.
+ * The copy may be bounded: see {@link Policy}.  The captured bytes are read back with {@link #getCapture()} or
+ * {@link #writeCaptureTo(OutputStream)}, without copying them again.
+ * Like the streams it wraps, it is not meant to be written by several threads at the same time (a PrintStream
+ * around it takes care of that).
+ */
 public class SmartOutputStream extends OutputStream {
 
+    private final static Logger logger = Logger.getLogger(SmartOutputStream.class.getName());
+
+    // Initial size of the capture buffers, that grow up to their cap
+    private static final int INITIAL_CAPACITY = 8192;
+
+    /**
+     * What is captured once the cap is reached.
+     */
+    public enum Policy {
+        /** The first bytes up to the cap, the rest is only passed through */
+        HEAD,
+        /** The last bytes up to the cap, in a ring buffer */
+        TAIL,
+        /** Everything: beyond the cap, the capture is moved to a temporary file */
+        SPILL
+    }
+
     private final OutputStream os;
-    private final ByteArrayOutputStream baos;
+    private final Capture capture;
+    // Reused by write(int)
+    private final byte[] single = new byte[1];
 
+    /**
+     * Captures everything written in a byte array output stream.
+     * @param os Stream to write to.
+     * @param baos Unbounded capture.
+     */
     public SmartOutputStream(OutputStream os, ByteArrayOutputStream baos) {
         this.os = os;
-        this.baos = baos;
+        this.capture = new StreamCapture(baos);
+    }
+
+    /**
+     * Captures a bounded copy of what is written.
+     * @param os Stream to write to.
+     * @param cap Bytes kept in memory.
+     * @param policy What to do when the cap is reached.
+     */
+    public SmartOutputStream(OutputStream os, int cap, Policy policy) {
+        if (cap < 0) throw new IllegalArgumentException(String.format("Wrong capture cap: %d", cap));
+        this.os = os;
+        this.capture = switch (policy) {
+            case HEAD -> new HeadCapture(cap);
+            case TAIL -> new TailCapture(cap);
+            case SPILL -> new SpillCapture(cap);
+        };
     }
 
     @Override
     public void write(int b) throws IOException {
         os.write(b);
-        baos.write(b);
+        single[0] = (byte) b;
+        capture.write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        os.write(b, off, len);
+        capture.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        os.flush();
+    }
+
+    /**
+     * Closes the wrapped stream; the capture is still available.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            os.close();
+        } finally {
+            capture.close();
+        }
+    }
+
+    /** @return Bytes written to this stream */
+    public long getWrittenBytes() {
+        return capture.written;
+    }
+
+    /** @return Bytes captured */
+    public long getCapturedBytes() {
+        return capture.size();
+    }
+
+    /** @return True if some of the bytes written are not in the capture */
+    public boolean isTruncated() {
+        return capture.size() < capture.written;
+    }
+
+    /**
+     * Reads the captured bytes, straight from the capture buffer (or file).  Writes after this call may or may
+     * not be seen by the returned stream.
+     * @return Stream over the captured bytes.
+     * @throws IOException if the spilled capture cannot be opened.
+     */
+    public InputStream getCapture() throws IOException {
+        return capture.open();
+    }
+
+    /**
+     * Writes the captured bytes to a stream, straight from the capture buffer (or file).
+     * @param out Destination.
+     * @return Number of bytes written.
+     * @throws IOException if the capture cannot be read or the destination cannot be written.
+     */
+    public long writeCaptureTo(OutputStream out) throws IOException {
+        return capture.writeTo(out);
+    }
+
+    /**
+     * @param charset Charset of the output.
+     * @return The captured bytes as text.
+     * @throws IOException if the spilled capture cannot be read.
+     */
+    public String getCapture(Charset charset) throws IOException {
+        try (var in = getCapture()) {
+            return new String(in.readAllBytes(), charset);
+        }
+    }
+
+    /**
+     * Frees the capture (deleting its temporary file, if any); nothing else is captured from now on.
+     */
+    public void discard() {
+        capture.discard();
+    }
+
+    // Copy of the bytes written
+    private static abstract class Capture {
+
+        long written;
+
+        abstract void write(byte[] b, int off, int len) throws IOException;
+        abstract long size();
+        abstract InputStream open() throws IOException;
+        abstract void discard();
+
+        long writeTo(OutputStream out) throws IOException {
+            try (var in = open()) {
+                return in.transferTo(out);
+            }
+        }
+
+        void close() throws IOException { }
+    }
+
+    // Unbounded capture in a caller provided stream
+    private static class StreamCapture extends Capture {
+
+        private ByteArrayOutputStream baos;
+
+        StreamCapture(ByteArrayOutputStream baos) {
+            this.baos = baos;
+        }
+
+        @Override
+        void write(byte[] b, int off, int len) {
+            written += len;
+            if (baos != null) baos.write(b, off, len);
+        }
+
+        @Override
+        long size() {
+            return baos == null ? 0 : baos.size();
+        }
+
+        @Override
+        InputStream open() {
+            // The stream cannot expose its buffer, a copy is inevitable here
+            return new ByteArrayInputStream(baos == null ? new byte[0] : baos.toByteArray());
+        }
+
+        @Override
+        long writeTo(OutputStream out) throws IOException {
+            if (baos == null) return 0;
+            baos.writeTo(out);
+            return baos.size();
+        }
+
+        @Override
+        void discard() {
+            baos = null;
+        }
+    }
+
+    // First bytes of the output, in a buffer that grows up to the cap
+    private static class HeadCapture extends Capture {
+
+        final int cap;
+        byte[] buffer;
+        int count;
+
+        HeadCapture(int cap) {
+            this.cap = cap;
+            this.buffer = new byte[Math.min(cap, INITIAL_CAPACITY)];
+        }
+
+        // Makes room for len more bytes (up to the cap), returns how many fit
+        int reserve(int len) {
+            var fit = Math.min(len, cap - count);
+            if (count + fit > buffer.length) {
+                var size = (int) Math.min(cap, Math.max((long) buffer.length * 2, (long) count + fit));
+                buffer = Arrays.copyOf(buffer, size);
+            }
+            return fit;
+        }
+
+        @Override
+        void write(byte[] b, int off, int len) throws IOException {
+            written += len;
+            if (buffer == null) return;
+            var fit = reserve(len);
+            System.arraycopy(b, off, buffer, count, fit);
+            count += fit;
+        }
+
+        @Override
+        long size() {
+            return count;
+        }
+
+        @Override
+        InputStream open() throws IOException {
+            return buffer == null ? InputStream.nullInputStream() : new ByteArrayInputStream(buffer, 0, count);
+        }
+
+        @Override
+        long writeTo(OutputStream out) throws IOException {
+            if (buffer != null) out.write(buffer, 0, count);
+            return count;
+        }
+
+        @Override
+        void discard() {
+            buffer = null;
+            count = 0;
+        }
+    }
+
+    // Last bytes of the output: the buffer grows up to the cap, then wraps around
+    private static class TailCapture extends HeadCapture {
+
+        // Position of the oldest byte once the buffer is full
+        int start;
+
+        TailCapture(int cap) {
+            super(cap);
+        }
+
+        @Override
+        void write(byte[] b, int off, int len) throws IOException {
+            if (buffer != null && count < cap) {
+                var fit = reserve(len);
+                super.write(b, off, fit);
+                written += len - fit;
+                off += fit;
+                len -= fit;
+            } else {
+                written += len;
+            }
+            if (len == 0 || cap == 0 || buffer == null) return;
+            // Only the last cap bytes of this write can survive
+            if (len > cap) {
+                off += len - cap;
+                len = cap;
+            }
+            var first = Math.min(len, cap - start);
+            System.arraycopy(b, off, buffer, start, first);
+            System.arraycopy(b, off + first, buffer, 0, len - first);
+            start = (start + len) % cap;
+        }
+
+        @Override
+        InputStream open() throws IOException {
+            if (buffer == null || start == 0) return super.open();
+            return new SequenceInputStream(
+                new ByteArrayInputStream(buffer, start, count - start),
+                new ByteArrayInputStream(buffer, 0, start)
+            );
+        }
+
+        @Override
+        long writeTo(OutputStream out) throws IOException {
+            if (buffer == null) return 0;
+            out.write(buffer, start, count - start);
+            out.write(buffer, 0, start);
+            return count;
+        }
+
+        @Override
+        void discard() {
+            super.discard();
+            start = 0;
+        }
+    }
+
+    // Everything: in memory up to the cap, then in a temporary file
+    private static class SpillCapture extends HeadCapture {
+
+        Path file;
+        FileChannel channel;
+        boolean discarded;
+
+        SpillCapture(int cap) {
+            super(cap);
+        }
+
+        @Override
+        void write(byte[] b, int off, int len) throws IOException {
+            if (discarded) {
+                written += len;
+                return;
+            }
+            if (channel == null && count + (long) len <= cap) {
+                super.write(b, off, len);
+                return;
+            }
+            written += len;
+            if (channel == null) spill();
+            var source = ByteBuffer.wrap(b, off, len);
+            while (source.hasRemaining()) channel.write(source);
+        }
+
+        // Moves the capture to a temporary file
+        private void spill() throws IOException {
+            file = Files.createTempFile("cli-capture", ".out");
+            file.toFile().deleteOnExit();
+            channel = FileChannel.open(file, WRITE);
+            var head = ByteBuffer.wrap(buffer, 0, count);
+            while (head.hasRemaining()) channel.write(head);
+            buffer = null;
+            count = 0;
+        }
+
+        @Override
+        long size() {
+            return file == null ? count : written;
+        }
+
+        @Override
+        InputStream open() throws IOException {
+            if (file == null) return super.open();
+            return Channels.newInputStream(FileChannel.open(file, READ));
+        }
+
+        @Override
+        long writeTo(OutputStream out) throws IOException {
+            if (file == null) return super.writeTo(out);
+            try (var source = FileChannel.open(file, READ)) {
+                var target = Channels.newChannel(out);
+                var size = source.size();
+                for (var position = 0L; position < size; ) position += source.transferTo(position, size - position, target);
+                return size;
+            }
+        }
+
+        @Override
+        void close() throws IOException {
+            if (channel != null) channel.close();
+        }
+
+        @Override
+        void discard() {
+            super.discard();
+            discarded = true;
+            try {
+                close();
+                if (file != null) Files.deleteIfExists(file);
+            } catch (IOException ioe) {
+                logger.log(Level.FINE, ioe, () -> String.format("Could not delete %s", file));
+            }
+            file = null;
+            channel = null;
+        }
     }
 }
@@ -0,0 +1,249 @@
+package cli;
+
+import java.io.Console;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.function.Function;
+
+/**
+ * Routes System.in, System.out and System.err to the streams of the invocation run by the current thread
+ * (or by the thread that started it), so that several commands can run at the same time in one JVM, as
+ * the daemon sessions and the parallel batches do.  Threads with no invocation use the original streams.
+ */
+final class StandardStreams {
+
+    /**
+     * Streams of an invocation.
+     * @param in Standard input.
+     * @param out Standard output.
+     * @param err Standard error.
+     * @param buffered True if the standard output is only flushed on request (System.out.flush()), not on every
+     *                 line.
+     */
+    record Target(InputStream in, OutputStream out, OutputStream err, boolean buffered) {
+        Target(InputStream in, OutputStream out, OutputStream err) {
+            this(in, out, err, false);
+        }
+    }
+
+    /** Routing of the standard streams for a while, see {@link #open()} */
+    interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    // Invocation of the current thread, inherited by the threads it creates
+    private static final InheritableThreadLocal<Target> current = new InheritableThreadLocal<>();
+
+    private static PrintStream stdout;
+    private static PrintStream stderr;
+    private static InputStream stdin;
+    // Installed by a launcher, for the life of the JVM
+    private static boolean permanent;
+    // Scopes still open
+    private static int scopes;
+
+    private StandardStreams() { }
+
+    /**
+     * Replaces the standard streams with routing ones for the life of the JVM, as the launchers do; it must be
+     * called before anything (logging included) keeps a reference to them.  Calling it again has no effect.
+     */
+    static synchronized void install() {
+        permanent = true;
+        replace();
+    }
+
+    /**
+     * Replaces the standard streams with routing ones until every scope opened is closed, unless a launcher
+     * already {@link #install() installed} them: for the commands run by a program that embeds the library.
+     * @return Scope, to close once nothing is routed anymore.
+     */
+    static synchronized Scope open() {
+        replace();
+        scopes++;
+        return StandardStreams::closeScope;
+    }
+
+    private static synchronized void closeScope() {
+        if (--scopes > 0 || permanent || stdout == null) return;
+        // Unless somebody else replaced them in the meantime
+        if (System.out instanceof Routing) System.setOut(stdout);
+        if (System.err instanceof Routing) System.setErr(stderr);
+        if (System.in instanceof RoutingInputStream) System.setIn(stdin);
+        stdout = null;
+        stderr = null;
+        stdin = null;
+    }
+
+    private static void replace() {
+        if (stdout != null) return;
+        stdout = System.out;
+        stderr = System.err;
+        stdin = System.in;
+        System.setOut(new Routing(new RoutingOutputStream(stdout, Target::out), stdout));
+        System.setErr(new Routing(new RoutingOutputStream(stderr, Target::err), stderr));
+        System.setIn(new RoutingInputStream(stdin));
+    }
+
+    // Routing standard output or error
+    private static class Routing extends PrintStream {
+        Routing(RoutingOutputStream out, PrintStream original) {
+            super(out, true, original.charset());
+        }
+
+        // Asked for explicitly, unlike the flush after every line: it reaches buffered outputs too
+        @Override
+        public void flush() {
+            synchronized (this) {
+                try {
+                    ((RoutingOutputStream) out).flushAlways();
+                } catch (IOException ioe) {
+                    setError();
+                }
+            }
+        }
+    }
+
+    /** @return The standard output of the process, whatever the invocation of the current thread */
+    static synchronized PrintStream stdout() {
+        return stdout == null ? System.out : stdout;
+    }
+
+    /** @return The standard error of the process, whatever the invocation of the current thread */
+    static synchronized PrintStream stderr() {
+        return stderr == null ? System.err : stderr;
+    }
+
+    /** @return The standard input of the process, whatever the invocation of the current thread */
+    static synchronized InputStream stdin() {
+        return stdin == null ? System.in : stdin;
+    }
+
+    /** @return Streams of the invocation run by the current thread, null if there is none */
+    static Target current() {
+        return current.get();
+    }
+
+    /**
+     * Routes the standard streams of the current thread (and the threads it starts from now on).
+     * @param target Streams of the invocation.
+     */
+    static void route(Target target) {
+        current.set(target);
+    }
+
+    /**
+     * Routes the standard streams of the current thread back to those of an enclosing invocation.
+     * @param previous Streams of that invocation, null for the original ones.
+     */
+    static void restore(Target previous) {
+        if (previous == null) current.remove();
+        else current.set(previous);
+    }
+
+    /**
+     * @return True if the standard output is a terminal.  The console of JDK 22 and later is there even when it is
+     * not, so this asks it, when it can.
+     */
+    static boolean isTerminal() {
+        var console = System.console();
+        if (console == null) return false;
+        if (Terminal.IS_TERMINAL == null) return true;
+        try {
+            return (Boolean) Terminal.IS_TERMINAL.invoke(console);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return true;
+        }
+    }
+
+    // Console.isTerminal(), looked up once
+    private static final class Terminal {
+        static final Method IS_TERMINAL = lookup();
+
+        private static Method lookup() {
+            try {
+                return Console.class.getMethod("isTerminal");
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    }
+
+    /** Flushes the routed standard streams and goes back to the original ones */
+    static void release() {
+        System.out.flush();
+        System.err.flush();
+        current.remove();
+    }
+
+    private static class RoutingOutputStream extends OutputStream {
+
+        private final OutputStream fallback;
+        private final Function<Target, OutputStream> selector;
+
+        RoutingOutputStream(OutputStream fallback, Function<Target, OutputStream> selector) {
+            this.fallback = fallback;
+            this.selector = selector;
+        }
+
+        private OutputStream target() {
+            var target = current.get();
+            return target == null ? fallback : selector.apply(target);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        // Called after every line, which buffered outputs ignore
+        @Override
+        public void flush() throws IOException {
+            var target = current.get();
+            if (target != null && target.buffered() && target.out() == selector.apply(target)) return;
+            target().flush();
+        }
+
+        void flushAlways() throws IOException {
+            target().flush();
+        }
+    }
+
+    private static class RoutingInputStream extends InputStream {
+
+        private final InputStream fallback;
+
+        RoutingInputStream(InputStream fallback) {
+            this.fallback = fallback;
+        }
+
+        private InputStream target() {
+            var target = current.get();
+            return target == null ? fallback : target.in();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return target().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return target().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return target().available();
+        }
+    }
+}
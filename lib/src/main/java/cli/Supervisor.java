@@ -0,0 +1,395 @@
+package cli;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipalNotFoundException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Runtime of the background commands started by the launcher: it keeps a single instance of every command
+ * per host, lets it be stopped gracefully, and reports how it is doing.  Everything lives in a state directory
+ * (the system property cli.state, set by the scripts; otherwise CLI_STATE_DIR, TMPDIR or the temporary directory
+ * of the JVM, followed by cli-&lt;user&gt;/&lt;command&gt;).  It and the cli-&lt;user&gt; directory are created readable only by
+ * the user, and the command refuses to start if someone else owns them:
+ * <ul>
+ *     <li>{@code lock}: locked while the command runs, another instance refuses to start</li>
+ *     <li>{@code pid}: process id of the command</li>
+ *     <li>{@code status}: heap, GC and thread statistics (java properties), written every CLI_STATUS_SECONDS
+ *     (10 by default)</li>
+ *     <li>{@code control.sock}: a unix domain socket that accepts the lines {@code stop} and {@code status}</li>
+ *     <li>{@code stop}: creating this file stops the command, for clients that cannot use the socket</li>
+ * </ul>
+ * Stopping the command (through the socket or the file, or with SIGTERM) runs the actions registered with
+ * {@link #onStop(Runnable)}, waits for them at most CLI_STOP_SECONDS (10 by default), and exits.
+ */
+public final class Supervisor {
+
+    static final String PROPERTY = "cli.state";
+
+    private static final String STATE_ENV_VAR = "CLI_STATE_DIR";
+    private static final String STATUS_ENV_VAR = "CLI_STATUS_SECONDS";
+    private static final String STOP_ENV_VAR = "CLI_STOP_SECONDS";
+
+    private final static Logger logger = Logger.getLogger(Supervisor.class.getName());
+
+    static final List<Runnable> stopActions = new CopyOnWriteArrayList<>();
+    private static volatile Supervisor instance;
+
+    private final String command;
+    private final Path directory;
+    private final Duration grace;
+    private final IntConsumer exit;
+    private final Instant started = Instant.now();
+    private final AtomicBoolean stopping = new AtomicBoolean();
+    private FileChannel lockFile;
+    private FileLock lock;
+    private ServerSocketChannel control;
+    private ScheduledExecutorService scheduler;
+
+    private Supervisor(String command, Path directory, Duration grace, IntConsumer exit) {
+        this.command = command;
+        this.directory = directory;
+        this.grace = grace;
+        this.exit = exit;
+    }
+
+    /**
+     * Registers something to do when the command is asked to stop: closing windows, stopping executors...
+     * Actions run in reverse order of registration.
+     * @param action Action.
+     */
+    public static void onStop(Runnable action) {
+        stopActions.add(action);
+    }
+
+    /** @return True once the command has been asked to stop */
+    public static boolean isStopping() {
+        var supervisor = instance;
+        return supervisor != null && supervisor.stopping.get();
+    }
+
+    /**
+     * Supervises the background command about to run in this JVM.
+     * @param metadata Command.
+     * @throws CmdException if another instance of the command is running, or the state directory cannot be used.
+     */
+    static synchronized void start(CommandMetadata metadata) throws CmdException {
+        if (instance != null) return;
+        var supervisor = open(
+            metadata.getCommand(),
+            directory(metadata.getCommand()),
+            Duration.ofSeconds(getEnv(STOP_ENV_VAR, 10)),
+            System::exit
+        );
+        Runtime.getRuntime().addShutdownHook(new Thread(supervisor::shutdown, "cli-supervisor-shutdown"));
+        instance = supervisor;
+    }
+
+    /**
+     * @param command Name of the command.
+     * @param directory State directory.
+     * @param grace How long the stop actions may take.
+     * @param exit Exits once stopped, with 0 or 1 if the stop actions took too long.
+     * @return Supervisor, once it holds the lock and listens for requests.
+     * @throws CmdException if another instance holds the lock, or the state directory cannot be used.
+     */
+    static Supervisor open(String command, Path directory, Duration grace, IntConsumer exit) throws CmdException {
+        var ret = new Supervisor(command, directory, grace, exit);
+        ret.acquire();
+        ret.listen();
+        return ret;
+    }
+
+    /**
+     * Sends a request to a running background command.
+     * @param args State directory of the command, and stop or status.
+     */
+    public static void main(String[] args) {
+        var ret = 0;
+        try {
+            if (args.length != 2) throw new CmdException("Please specify the state directory, and stop or status", -1);
+            System.out.print(send(Path.of(args[0]), args[1]));
+        } catch (CmdException cmde) {
+            logger.log(Level.SEVERE, cmde.getMessage(), cmde);
+            ret = cmde.getReturnCode();
+        }
+        System.exit(ret);
+    }
+
+    static String send(Path directory, String request) throws CmdException {
+        try (var channel = SocketChannel.open(UnixDomainSocketAddress.of(directory.resolve("control.sock")))) {
+            channel.write(UTF_8.encode(request + "\n"));
+            channel.shutdownOutput();
+            var ret = new StringBuilder();
+            var buffer = ByteBuffer.allocate(4096);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                ret.append(UTF_8.decode(buffer));
+                buffer.clear();
+            }
+            return ret.toString();
+        } catch (IOException ioe) {
+            throw new CmdException(ioe, String.format("The command of %s is not running", directory), 1);
+        }
+    }
+
+    // Default state directory of a command
+    static Path directory(String command) {
+        var property = System.getProperty(PROPERTY);
+        if (property != null && !property.isBlank()) return Path.of(property);
+        var base = System.getenv(STATE_ENV_VAR);
+        if (base == null || base.isBlank()) {
+            var tmp = System.getenv("TMPDIR");
+            base = Path.of(tmp == null || tmp.isBlank() ? System.getProperty("java.io.tmpdir") : tmp)
+                .resolve("cli-" + System.getProperty("user.name")).toString();
+        }
+        return Path.of(base, command);
+    }
+
+    private static int getEnv(String name, int defaultValue) {
+        var value = System.getenv(name);
+        try {
+            return value == null || value.isBlank() ? defaultValue : Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException nfe) {
+            logger.log(Level.WARNING, () -> String.format("Ignoring %s=%s", name, value));
+            return defaultValue;
+        }
+    }
+
+    // Locks the state directory, or fails if another instance holds it
+    private void acquire() throws CmdException {
+        try {
+            createPrivate(directory);
+            lockFile = FileChannel.open(directory.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                lock = lockFile.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                lockFile.close();
+                var pid = directory.resolve("pid");
+                throw new CmdException(String.format("%s is already running (pid %s)", command,
+                    Files.exists(pid) ? Files.readString(pid).trim() : "unknown"), -1);
+            }
+            Files.deleteIfExists(directory.resolve("stop"));
+            Files.writeString(directory.resolve("pid"), Long.toString(ProcessHandle.current().pid()));
+        } catch (IOException ioe) {
+            throw new CmdException(ioe, String.format("Could not use %s", directory), -1);
+        }
+    }
+
+    // Creates a directory (and the cli-<user> one above it) readable only by the user, or fails if someone else
+    // owns it: in a shared temporary directory another user could have created it first
+    private static void createPrivate(Path directory) throws IOException, CmdException {
+        var parent = directory.toAbsolutePath().getParent();
+        if (parent != null) {
+            var name = parent.getFileName();
+            if (name != null && name.toString().equals("cli-" + System.getProperty("user.name"))) createPrivate(parent);
+            else Files.createDirectories(parent);
+        }
+        try {
+            Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (FileAlreadyExistsException e) {
+            // Checked below
+        } catch (UnsupportedOperationException e) {
+            Files.createDirectories(directory);
+        }
+        checkOwner(directory);
+        restrictPermissions(directory, "rwx------");
+    }
+
+    private static void checkOwner(Path directory) throws IOException, CmdException {
+        try {
+            var owner = Files.getOwner(directory, LinkOption.NOFOLLOW_LINKS);
+            var user = directory.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!owner.equals(user)) {
+                throw new CmdException(String.format("%s belongs to %s, not to %s", directory, owner.getName(),
+                    user.getName()), -1);
+            }
+        } catch (UnsupportedOperationException | UserPrincipalNotFoundException e) {
+            logger.log(Level.FINE, e, () -> String.format("Could not check the owner of %s", directory));
+        }
+    }
+
+    // Control socket, stop file and status file
+    private void listen() throws CmdException {
+        var socket = directory.resolve("control.sock");
+        try {
+            // A socket file nobody listens on is a leftover of a previous instance: the lock is ours
+            Files.deleteIfExists(socket);
+            control = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            control.bind(UnixDomainSocketAddress.of(socket));
+            restrictPermissions(socket, "rw-------");
+        } catch (IOException | UnsupportedOperationException e) {
+            // The stop file still works
+            logger.log(Level.WARNING, e, () -> String.format("Could not listen on %s", socket));
+            control = null;
+        }
+        if (control != null) {
+            Thread.ofPlatform().name("cli-supervisor-control").daemon().start(this::serve);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            var t = new Thread(r, "cli-supervisor");
+            t.setDaemon(true);
+            return t;
+        });
+        var period = getEnv(STATUS_ENV_VAR, 10);
+        scheduler.scheduleAtFixedRate(this::writeStatus, 0, period, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::checkStopFile, 1, 1, TimeUnit.SECONDS);
+    }
+
+    private void serve() {
+        while (control.isOpen()) {
+            try (var channel = control.accept()) {
+                var buffer = ByteBuffer.allocate(256);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    if (buffer.position() > 0 && buffer.get(buffer.position() - 1) == '\n') break;
+                }
+                buffer.flip();
+                var request = UTF_8.decode(buffer).toString().trim();
+                var response = switch (request) {
+                    case "stop" -> "stopping\n";
+                    case "status" -> status();
+                    default -> String.format("unknown request %s%n", request);
+                };
+                channel.write(UTF_8.encode(response));
+                if (request.equals("stop")) requestStop();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException ioe) {
+                logger.log(Level.FINE, "Control request failed", ioe);
+            }
+        }
+    }
+
+    private void checkStopFile() {
+        try {
+            if (Files.deleteIfExists(directory.resolve("stop"))) requestStop();
+        } catch (IOException ioe) {
+            logger.log(Level.FINE, "Could not check the stop file", ioe);
+        }
+    }
+
+    // Stops the command: the stop actions run (for a bounded time) and the JVM exits
+    private void requestStop() {
+        if (!stopping.compareAndSet(false, true)) return;
+        Thread.ofPlatform().name("cli-supervisor-stop").start(() -> {
+            writeStatus();
+            exit.accept(runStopActions() ? 0 : 1);
+        });
+    }
+
+    // Runs the stop actions, returning false if they did not finish in time
+    private boolean runStopActions() {
+        var actions = new ArrayList<>(stopActions);
+        var runner = Thread.ofPlatform().name("cli-supervisor-actions").daemon().start(() -> {
+            for (var i = actions.size() - 1; i >= 0; i--) {
+                try {
+                    actions.get(i).run();
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "A stop action failed", e);
+                }
+            }
+        });
+        try {
+            if (runner.join(grace)) return true;
+            logger.log(Level.WARNING, () -> String.format("%s did not stop in %s", command, grace));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    // The JVM is exiting: the command stopped by itself, was stopped or got a signal
+    void shutdown() {
+        if (stopping.compareAndSet(false, true)) runStopActions();
+        scheduler.shutdownNow();
+        try {
+            if (control != null) control.close();
+            Files.deleteIfExists(directory.resolve("control.sock"));
+            Files.deleteIfExists(directory.resolve("pid"));
+            Files.deleteIfExists(directory.resolve("status"));
+            lock.release();
+            lockFile.close();
+        } catch (IOException ioe) {
+            logger.log(Level.FINE, ioe, () -> String.format("Could not clean %s", directory));
+        }
+    }
+
+    private void writeStatus() {
+        var file = directory.resolve("status");
+        try {
+            var tmp = directory.resolve("status.tmp");
+            Files.writeString(tmp, status());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ioe) {
+            logger.log(Level.FINE, ioe, () -> String.format("Could not write %s", file));
+        }
+    }
+
+    // Statistics of the JVM, as java properties
+    String status() {
+        var memory = ManagementFactory.getMemoryMXBean();
+        var heap = memory.getHeapMemoryUsage();
+        var threads = ManagementFactory.getThreadMXBean();
+        var ret = new StringBuilder();
+        ret.append(String.format("command=%s%n", command));
+        ret.append(String.format("pid=%d%n", ProcessHandle.current().pid()));
+        ret.append(String.format("state=%s%n", stopping.get() ? "stopping" : "running"));
+        ret.append(String.format("started=%s%n", started));
+        ret.append(String.format("updated=%s%n", Instant.now()));
+        ret.append(String.format("uptime.seconds=%d%n", Duration.between(started, Instant.now()).toSeconds()));
+        ret.append(String.format("heap.used=%d%n", heap.getUsed()));
+        ret.append(String.format("heap.committed=%d%n", heap.getCommitted()));
+        ret.append(String.format("heap.max=%d%n", heap.getMax()));
+        ret.append(String.format("nonheap.used=%d%n", memory.getNonHeapMemoryUsage().getUsed()));
+        for (var gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            var name = gc.getName().replace(' ', '_');
+            ret.append(String.format("gc.%s.count=%d%n", name, gc.getCollectionCount()));
+            ret.append(String.format("gc.%s.millis=%d%n", name, gc.getCollectionTime()));
+        }
+        ret.append(String.format("threads=%d%n", threads.getThreadCount()));
+        ret.append(String.format("threads.daemon=%d%n", threads.getDaemonThreadCount()));
+        ret.append(String.format("threads.peak=%d%n", threads.getPeakThreadCount()));
+        return ret.toString();
+    }
+
+    private static void restrictPermissions(Path path, String permissions) {
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(permissions));
+        } catch (UnsupportedOperationException | IOException e) {
+            logger.log(Level.FINE, e, () -> String.format("Could not restrict permissions of %s", path));
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package cli;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Nanosecond, nesting-aware span tracer for the phases of a command launch.  Commands may add their own
+ * spans:
+ * <pre>
+ * try (var span = Tracer.span("load index")) {
+ *     ...
+ * }
+ * </pre>
+ * If the env variable CLI_TRACE is set to {@code json} or {@code chrome}, the spans are written on exit as
+ * a nested JSON report or in Chrome trace-event format (to the file in CLI_TRACE_FILE, or the standard
+ * error).  Spans are also logged at FINE level.  Otherwise, a span costs a level check.
+ */
+public final class Tracer {
+
+    private static final String ENV_VAR = "CLI_TRACE";
+    private static final String FILE_ENV_VAR = "CLI_TRACE_FILE";
+    private static final String JSON = "json";
+    private static final String CHROME = "chrome";
+
+    private final static Logger logger = Logger.getLogger(Tracer.class.getName());
+
+    private static final String format = System.getenv(ENV_VAR) == null
+        ? null
+        : System.getenv(ENV_VAR).trim().toLowerCase(Locale.ROOT);
+    private static volatile boolean recording = JSON.equals(format) || CHROME.equals(format);
+
+    private static final ThreadLocal<Recorded> current = new ThreadLocal<>();
+    private static final ConcurrentLinkedQueue<Recorded> spans = new ConcurrentLinkedQueue<>();
+    private static final AtomicLong ids = new AtomicLong();
+
+    /** Span that does nothing, returned when tracing is disabled */
+    private static final Span NOOP = () -> { };
+
+    static {
+        if (recording) {
+            Runtime.getRuntime().addShutdownHook(new Thread(Tracer::report, "cli-tracer"));
+        }
+    }
+
+    private Tracer() { }
+
+    // Turns the recording of the spans on or off, for tests; the report is only written if CLI_TRACE asks for it
+    static void setRecording(boolean on) {
+        recording = on;
+    }
+
+    // Discards the spans recorded so far
+    static void clear() {
+        spans.clear();
+        current.remove();
+    }
+
+    /**
+     * A phase being measured; closing it ends the measure.
+     */
+    @FunctionalInterface
+    public interface Span extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * @return True if spans are being measured (either recorded or logged)
+     */
+    public static boolean isEnabled() {
+        return recording || logger.isLoggable(Level.FINE);
+    }
+
+    /**
+     * Opens a span, nested in the span currently open in this thread (if any).
+     * @param name Name of the phase.
+     * @return Span to close when the phase is over.
+     */
+    public static Span span(String name) {
+        if (!isEnabled()) return NOOP;
+        var span = new Recorded(ids.incrementAndGet(), name, current.get(), System.nanoTime());
+        current.set(span);
+        if (recording) spans.add(span);
+        return span;
+    }
+
+    /**
+     * Records the time from the start of the JVM to now as a span; called when main is reached.
+     */
+    static void startup() {
+        if (!isEnabled()) return;
+        ProcessHandle.current().info().startInstant().ifPresent(start -> {
+            var now = System.nanoTime();
+            var sinceStart = Math.max(
+                0,
+                (System.currentTimeMillis() - start.toEpochMilli()) * 1_000_000L
+            );
+            var span = new Recorded(ids.incrementAndGet(), "jvm startup", null, now - sinceStart);
+            if (recording) spans.add(span);
+            span.end(now);
+        });
+    }
+
+    // A span measured by this tracer
+    private static class Recorded implements Span {
+
+        final long id;
+        final String name;
+        final Recorded parent;
+        final long thread;
+        final String threadName;
+        final long start;
+        volatile long end = -1;
+
+        Recorded(long id, String name, Recorded parent, long start) {
+            this.id = id;
+            this.name = name;
+            this.parent = parent;
+            this.start = start;
+            var t = Thread.currentThread();
+            this.thread = t.threadId();
+            this.threadName = t.getName();
+        }
+
+        @Override
+        public void close() {
+            if (end >= 0) return;
+            end(System.nanoTime());
+            if (current.get() == this) current.set(parent);
+        }
+
+        void end(long nanos) {
+            end = nanos;
+            logger.log(Level.FINE, () -> String.format(Locale.ROOT, "%s -> %.3f ms", name, (end - start) / 1e6));
+        }
+
+        // Spans still open when the report is written (for instance, exit) last until then
+        long duration() {
+            return Math.max(0, (end >= 0 ? end : System.nanoTime()) - start);
+        }
+    }
+
+    // Writes the recorded spans with the format in CLI_TRACE
+    private static void report() {
+        var file = System.getenv(FILE_ENV_VAR);
+        try (var out = file == null || file.isBlank()
+            ? new PrintStream(new NonClosingStream(System.err), false, UTF_8)
+            : new PrintStream(new FileOutputStream(file), false, UTF_8)) {
+            write(out, CHROME.equals(format));
+        } catch (IOException ioe) {
+            logger.log(Level.WARNING, ioe, () -> String.format("Could not write the trace to %s", file));
+        }
+    }
+
+    /**
+     * Writes the spans recorded so far.
+     * @param out Output stream.
+     * @param chrome True for Chrome trace-event format, false for a nested JSON report.
+     */
+    static void write(PrintStream out, boolean chrome) {
+        var recorded = new ArrayList<>(spans);
+        recorded.sort(Comparator.comparingLong(s -> s.start));
+        // Times are relative to the first span (the JVM startup when it is known)
+        var origin = recorded.isEmpty() ? 0 : recorded.getFirst().start;
+        if (chrome) {
+            var pid = ProcessHandle.current().pid();
+            out.print("{\"traceEvents\":[");
+            var first = true;
+            for (var span: recorded) {
+                if (!first) out.print(",");
+                first = false;
+                out.printf(
+                    Locale.ROOT,
+                    "%n{\"name\":%s,\"ph\":\"X\",\"ts\":%.3f,\"dur\":%.3f,\"pid\":%d,\"tid\":%d}",
+                    quote(span.name), (span.start - origin) / 1e3, span.duration() / 1e3, pid, span.thread
+                );
+            }
+            out.printf("%n],\"displayTimeUnit\":\"ms\"}%n");
+        } else {
+            var children = new HashMap<Recorded, List<Recorded>>();
+            for (var span: recorded) {
+                children.computeIfAbsent(span.parent, k -> new LinkedList<>()).add(span);
+            }
+            out.print("{\"spans\":");
+            writeChildren(out, children, null, origin, 1);
+            out.printf("%n}%n");
+        }
+        out.flush();
+    }
+
+    private static void writeChildren(
+        PrintStream out,
+        Map<Recorded, List<Recorded>> children,
+        Recorded parent,
+        long origin,
+        int depth
+    ) {
+        var spans = children.getOrDefault(parent, List.of());
+        var indent = "  ".repeat(depth);
+        out.print("[");
+        var first = true;
+        for (var span: spans) {
+            if (!first) out.print(",");
+            first = false;
+            out.printf(
+                Locale.ROOT,
+                "%n%s{\"name\":%s,\"thread\":%s,\"startMillis\":%.3f,\"durationMillis\":%.3f,\"children\":",
+                indent, quote(span.name), quote(span.threadName), (span.start - origin) / 1e6, span.duration() / 1e6
+            );
+            writeChildren(out, children, span, origin, depth + 1);
+            out.print("}");
+        }
+        if (!spans.isEmpty()) out.printf("%n%s", "  ".repeat(depth - 1));
+        out.print("]");
+    }
+
+    private static String quote(String s) {
+        var sb = new StringBuilder("\"");
+        for (var c: s.toCharArray()) {
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    // Lets the report be written to the standard error without closing it
+    private static class NonClosingStream extends java.io.FilterOutputStream {
+        NonClosingStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
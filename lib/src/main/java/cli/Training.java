@@ -0,0 +1,52 @@
+package cli;
+
+import org.apache.commons.cli.DefaultParser;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Training run used at build time: it exercises the launcher for a set of commands without running them,
+ * so that the JVM records what they load (for instance in a class-data-sharing archive).
+ * For every command class it builds the metadata, instantiates and binds an empty command line, and
+ * renders the help.
+ */
+class Training {
+
+    private final static Logger logger = Logger.getLogger(Training.class.getName());
+
+    /**
+     * Runs the training.
+     * @param args Names of the command classes.
+     */
+    public static void main(String[] args) {
+        var out = System.out;
+        // The help output is not interesting here
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (var commandClass: args) {
+                train(commandClass);
+            }
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static void train(String commandClass) {
+        try {
+            var metadata = CommandMetadata.forName(commandClass);
+            var command = metadata.newInstance();
+            try {
+                metadata.applyArguments(command, new DefaultParser().parse(metadata.getOptions(), new String[0], false));
+            } catch (Exception e) {
+                // Mandatory parameters, etc.: not relevant
+                logger.log(Level.FINE, e.getMessage());
+            }
+            EntryPoint.launch(null, commandClass, "--help");
+        } catch (CmdException | RuntimeException e) {
+            logger.log(Level.WARNING, e, () -> String.format("Could not train %s", commandClass));
+        }
+    }
+}
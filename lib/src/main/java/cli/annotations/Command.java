@@ -13,10 +13,17 @@ import java.lang.annotation.Target;
 public @interface Command {	
 	// Name of the command
 	String command();
+	// Other names the command can be launched with from the dispatcher script
+	String[] aliases() default {};
 	// Command description
 	String description();
 	// Additional args necessary for java vm
 	String jvmArgs() default "";
 	// Is the command intended to be a background app? like a swing app
 	boolean isBackground() default false;
+	// How the standard output is written: buffered output is much faster for commands that print a lot
+	OutputMode output() default OutputMode.DEFAULT;
+	// Time limit of the Run method, as in 30s or PT1M (empty for none): it runs on a virtual thread, interrupted and
+	//	cancelled when the time is up (see cli.Cancellation); the framework option --timeout overrides it
+	String timeout() default "";
 }
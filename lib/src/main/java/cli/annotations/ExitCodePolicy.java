@@ -0,0 +1,13 @@
+package cli.annotations;
+
+/**
+ * How the exit codes of the items of a command run once per positional argument make its exit code.
+ */
+public enum ExitCodePolicy {
+	// The exit code of the first item, in the order of the arguments, that did not return 0
+	FIRST_FAILURE,
+	// The highest exit code among the items that did not return 0, for commands whose codes rank how bad things went (as in 1 = differences, 2 = trouble)
+	MAX,
+	// The number of items that did not return 0
+	FAILURES
+}
@@ -0,0 +1,15 @@
+package cli.annotations;
+
+/**
+ * How the standard output of a command is written.
+ */
+public enum OutputMode {
+	// The one in the env variable CLI_OUTPUT, or DIRECT if it is not set
+	DEFAULT,
+	// Straight to the standard output of the JVM (flushed on every line)
+	DIRECT,
+	// Through a large buffer, flushed when it is full and when the command ends
+	BUFFERED,
+	// Through large buffers written by a background thread
+	ASYNC
+}
@@ -9,4 +9,12 @@ import java.lang.annotation.Target;
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Run {
+	// The method processes a single positional argument: it is run once per argument, each time on a new
+	//	instance of the command with the OptionalArgs list holding just that argument, several at the same time
+	//	(as many as the --jobs framework option says), and their outputs are written in the order of the arguments
+	boolean perItem() default false;
+	// Per item runs: use virtual threads, for items that mostly wait for I/O, instead of a pool of --jobs threads
+	boolean virtualThreads() default false;
+	// Per item runs: how the exit codes of the items make the exit code of the command
+	ExitCodePolicy exitCode() default ExitCodePolicy.FIRST_FAILURE;
 }
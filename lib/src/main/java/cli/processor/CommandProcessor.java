@@ -0,0 +1,488 @@
+package cli.processor;
+
+import cli.Cancellation;
+import cli.CommandBinder;
+import cli.annotations.Command;
+import cli.annotations.OptionalArgs;
+import cli.annotations.Parameter;
+import cli.annotations.Run;
+import org.apache.commons.cli.ParseException;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Annotation processor that validates every class annotated with {@link Command} and generates a
+ * {@link CommandBinder} for it, so that the entry point does not need to introspect the command on every
+ * launch.
+ * Wrong Run signatures and missing setters are reported as compile errors; if the processor option
+ * {@value #LENIENT} is true they are reported as warnings instead and no binder is generated, leaving
+ * the command to the introspection path at runtime.
+ */
+@SupportedAnnotationTypes("cli.annotations.Command")
+@SupportedOptions(CommandProcessor.LENIENT)
+public class CommandProcessor extends AbstractProcessor {
+
+    /** Processor option: report invalid commands as warnings instead of errors */
+    public static final String LENIENT = "cli.processor.lenient";
+
+    // Conversion applied to the option value for the setter types bound at build time; the other declared
+    //	types go through the converters registered in ArgumentConversions
+    private static final Map<String, String> CONVERSIONS = Map.of(
+        "java.lang.String", "value",
+        "java.lang.Integer", "cli.ArgumentConversions.toInteger(value)",
+        "java.lang.Long", "cli.ArgumentConversions.toLong(value)",
+        "java.lang.Double", "cli.ArgumentConversions.toDouble(value)",
+        "java.lang.Float", "cli.ArgumentConversions.toFloat(value)",
+        "java.lang.Boolean", "cli.ArgumentConversions.toFlag(value)"
+    );
+    // Same for the primitive types, converted without boxing
+    private static final Map<TypeKind, String> PRIMITIVE_CONVERSIONS = Map.of(
+        TypeKind.INT, "cli.ArgumentConversions.parseInt(value)",
+        TypeKind.LONG, "cli.ArgumentConversions.parseLong(value)",
+        TypeKind.FLOAT, "cli.ArgumentConversions.parseFloat(value)",
+        TypeKind.DOUBLE, "cli.ArgumentConversions.parseDouble(value)",
+        TypeKind.BOOLEAN, "cli.ArgumentConversions.parseFlag(value)"
+    );
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (var type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(Command.class))) {
+            var binder = new BinderModel(type);
+            if (binder.problems.isEmpty()) {
+                write(binder);
+            } else {
+                var kind = Boolean.parseBoolean(processingEnv.getOptions().get(LENIENT))
+                    ? Diagnostic.Kind.WARNING
+                    : Diagnostic.Kind.ERROR;
+                binder.problems.forEach(p -> processingEnv.getMessager().printMessage(kind, p.message, p.element));
+            }
+        }
+        return false;
+    }
+
+    private record Problem(String message, Element element) { }
+
+    private record ParameterModel(
+        String key,
+        String name,
+        String longName,
+        String description,
+        boolean mandatory,
+        boolean flag,
+        String setter,
+        String conversion
+    ) { }
+
+    // Everything the binder needs to know about a command class, validated
+    private class BinderModel {
+
+        final TypeElement type;
+        final List<Problem> problems = new LinkedList<>();
+        final List<ParameterModel> parameters = new LinkedList<>();
+        String optionalArgsName;
+        String optionalArgsSetter;
+        // Element type of the OptionalArgs list, if the framework opens the files for the command
+        String optionalArgsType;
+        ExecutableElement run;
+
+        BinderModel(TypeElement type) {
+            this.type = type;
+            checkClass();
+            lookForParameters();
+            lookForRunMethod();
+        }
+
+        String packageName() {
+            return processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        }
+
+        // Simple name of the binder class, generated in the same package as the command
+        String binderName() {
+            var name = CommandBinder.binderName(processingEnv.getElementUtils().getBinaryName(type).toString());
+            return name.substring(name.lastIndexOf('.') + 1);
+        }
+
+        String className() {
+            return type.getQualifiedName().toString();
+        }
+
+        private void problem(String message, Element element) {
+            problems.add(new Problem(message, element));
+        }
+
+        private void checkClass() {
+            if (type.getModifiers().contains(Modifier.ABSTRACT))
+                problem("A command class cannot be abstract", type);
+            if (type.getNestingKind() != NestingKind.TOP_LEVEL && !type.getModifiers().contains(Modifier.STATIC))
+                problem("A nested command class must be static", type);
+            var hasConstructor = ElementFilter.constructorsIn(type.getEnclosedElements()).stream().anyMatch(
+                c -> c.getParameters().isEmpty() && c.getModifiers().contains(Modifier.PUBLIC)
+            );
+            if (!hasConstructor)
+                problem("A command class must have a public constructor without arguments", type);
+            var command = type.getAnnotation(Command.class);
+            if (!command.timeout().isBlank()) {
+                try {
+                    // Same parsing as at runtime: a number of seconds, and zero for no limit
+                    if (Cancellation.parseLimit(command.timeout()) != null && command.isBackground())
+                        problem("A command intended to run in the background cannot have a timeout", type);
+                } catch (ParseException e) {
+                    problem(String.format("The timeout must be a duration, as in 30s or PT1M: %s", command.timeout()), type);
+                }
+            }
+        }
+
+        // Looks for the public setter method of a class field
+        private ExecutableElement lookForSetter(VariableElement field) {
+            var name = field.getSimpleName().toString();
+            var expectedMethodName = "set" + name.substring(0, 1).toUpperCase() + name.substring(1);
+            return ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type)).stream().filter(
+                m -> m.getSimpleName().contentEquals(expectedMethodName)
+                    && m.getModifiers().contains(Modifier.PUBLIC)
+                    && m.getParameters().size() == 1
+            ).findFirst().orElse(null);
+        }
+
+        private String conversion(TypeMirror type) {
+            if (type.getKind().isPrimitive()) return PRIMITIVE_CONVERSIONS.get(type.getKind());
+            if (type.getKind() != TypeKind.DECLARED) return null;
+            var declared = (DeclaredType) type;
+            var element = (TypeElement) declared.asElement();
+            var name = element.getQualifiedName().toString();
+            if (element.getKind() == ElementKind.ENUM)
+                return String.format("cli.ArgumentConversions.toEnum(%s.class, value)", name);
+            if (CONVERSIONS.containsKey(name)) return CONVERSIONS.get(name);
+            if (name.equals("java.util.List")) {
+                // Comma separated values of a non generic element type
+                if (declared.getTypeArguments().size() != 1) return null;
+                var elementType = declared.getTypeArguments().getFirst();
+                if (elementType.getKind() != TypeKind.DECLARED || !((DeclaredType) elementType).getTypeArguments().isEmpty())
+                    return null;
+                return String.format("cli.ArgumentConversions.toList(%s.class, value)",
+                    ((TypeElement) ((DeclaredType) elementType).asElement()).getQualifiedName());
+            }
+            if (!declared.getTypeArguments().isEmpty()) return null;
+            return String.format("cli.ArgumentConversions.convert(%s.class, value)", name);
+        }
+
+        private boolean isBooleanType(TypeMirror type) {
+            return type.getKind() == TypeKind.BOOLEAN || type.toString().equals("java.lang.Boolean");
+        }
+
+        private void lookForParameters() {
+            var keys = new HashSet<String>();
+            var types = processingEnv.getTypeUtils();
+            var list = types.erasure(processingEnv.getElementUtils().getTypeElement("java.util.List").asType());
+            for (var field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                var parameter = field.getAnnotation(Parameter.class);
+                var optionalArgs = field.getAnnotation(OptionalArgs.class);
+                if (parameter == null && optionalArgs == null) continue;
+                var setter = lookForSetter(field);
+                if (setter == null) {
+                    problem(String.format("No public setter found for field '%s'", field.getSimpleName()), field);
+                    continue;
+                }
+                var setterType = setter.getParameters().getFirst().asType();
+                if (parameter != null) {
+                    var hasName = !parameter.name().trim().isEmpty();
+                    var hasLongName = !parameter.longName().isEmpty();
+                    if (!hasName && !hasLongName) {
+                        problem("A parameter must define at least one of name and longName", field);
+                        continue;
+                    }
+                    var conversion = conversion(setterType);
+                    if (conversion == null) {
+                        problem(String.format("Unsupported parameter type %s", setterType), setter);
+                        continue;
+                    }
+                    var key = hasName ? parameter.name() : parameter.longName();
+                    if (!keys.add(key) || (hasName && hasLongName && !keys.add(parameter.longName()))) {
+                        problem(String.format("Duplicate parameter name '%s'", key), field);
+                        continue;
+                    }
+                    parameters.add(new ParameterModel(
+                        key,
+                        hasName ? parameter.name() : null,
+                        hasLongName ? parameter.longName() : null,
+                        parameter.description(),
+                        parameter.mandatory(),
+                        isBooleanType(field.asType()),
+                        setter.getSimpleName().toString(),
+                        conversion
+                    ));
+                } else {
+                    if (!types.isAssignable(list, types.erasure(setterType))) {
+                        problem("The setter of an OptionalArgs field must accept a List<String>", setter);
+                        continue;
+                    }
+                    var elementType = listElement(setterType);
+                    if (elementType != null && !elementType.equals("java.lang.String")) {
+                        if (!cli.InputFiles.TYPES.contains(elementType)) {
+                            problem(String.format(
+                                "The setter of an OptionalArgs field must accept a List of String or of %s",
+                                String.join(", ", cli.InputFiles.TYPES)
+                            ), setter);
+                            continue;
+                        }
+                        optionalArgsType = elementType;
+                    }
+                    optionalArgsName = optionalArgs.name();
+                    optionalArgsSetter = setter.getSimpleName().toString();
+                }
+            }
+        }
+
+        // Qualified name of the element type of a List, null if it is not a class
+        private String listElement(TypeMirror type) {
+            if (type.getKind() != TypeKind.DECLARED || ((DeclaredType) type).getTypeArguments().size() != 1) return null;
+            var element = ((DeclaredType) type).getTypeArguments().getFirst();
+            if (element.getKind() != TypeKind.DECLARED) return null;
+            return ((TypeElement) ((DeclaredType) element).asElement()).getQualifiedName().toString();
+        }
+
+        // Same rules Introspection checks at runtime
+        private void lookForRunMethod() {
+            var methods = ElementFilter.methodsIn(type.getEnclosedElements()).stream().filter(
+                m -> m.getAnnotation(Run.class) != null
+            ).toList();
+            if (methods.isEmpty()) {
+                problem("Please define a method annotated with @Run", type);
+                return;
+            }
+            if (methods.size() > 1) {
+                problem("Only one method annotated as 'Run' per command class", type);
+                return;
+            }
+            var m = methods.getFirst();
+            var returnKind = m.getReturnType().getKind();
+            if (returnKind != TypeKind.INT && returnKind != TypeKind.VOID)
+                problem("The method annotated as 'Run' must return int or void", m);
+            else if (type.getAnnotation(Command.class).isBackground() && returnKind != TypeKind.VOID)
+                problem("The method annotated as 'Run' must return void if the command is intended to run in the background", m);
+            if (m.getParameters().size() != 1
+                || !m.getParameters().getFirst().asType().toString().equals("java.nio.file.Path"))
+                problem("The method annotated as 'Run' must have exactly one argument of the class 'Path'", m);
+            if (m.getModifiers().contains(Modifier.PRIVATE))
+                problem("The method annotated as 'Run' cannot be private", m);
+            if (m.getAnnotation(Run.class).perItem()) {
+                if (type.getAnnotation(Command.class).isBackground())
+                    problem("A command intended to run in the background cannot run per item", m);
+                else if (optionalArgsSetter == null)
+                    problem("A command that runs per item needs a field annotated with OptionalArgs", m);
+            }
+            run = m;
+        }
+    }
+
+    private void write(BinderModel binder) {
+        var packageName = binder.packageName();
+        var binderName = binder.binderName();
+        var qualifiedName = packageName.isEmpty() ? binderName : packageName + "." + binderName;
+        try (var out = new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedName, binder.type).openWriter())) {
+            new BinderWriter(out, binder).write(packageName, binderName);
+        } catch (IOException ioe) {
+            processingEnv.getMessager().printMessage(
+                Diagnostic.Kind.ERROR,
+                String.format("Could not write %s: %s", qualifiedName, ioe.getMessage()),
+                binder.type
+            );
+        }
+    }
+
+    // Writes the java source of a binder
+    private record BinderWriter(PrintWriter out, BinderModel binder) {
+
+        void write(String packageName, String binderName) {
+            var command = binder.className();
+            if (!packageName.isEmpty()) {
+                out.printf("package %s;%n%n", packageName);
+            }
+            out.printf("@javax.annotation.processing.Generated(\"%s\")%n", CommandProcessor.class.getName());
+            out.printf("public final class %s implements cli.CommandBinder<%s> {%n%n", binderName, command);
+
+            out.printf("    @Override%n");
+            out.printf("    public Class<%s> getCommandClass() {%n", command);
+            out.printf("        return %s.class;%n", command);
+            out.printf("    }%n%n");
+
+            out.printf("    @Override%n");
+            out.printf("    public %s newInstance() {%n", command);
+            out.printf("        return new %s();%n", command);
+            out.printf("    }%n%n");
+
+            writeBuildOptions();
+
+            out.printf("    @Override%n");
+            out.printf("    public String getOptionalArgs() {%n");
+            out.printf("        return %s;%n", literal(binder.optionalArgsName));
+            out.printf("    }%n%n");
+
+            writeApplyArguments(command);
+
+            var run = binder.run.getAnnotation(Run.class);
+            out.printf("    @Override%n");
+            out.printf("    public cli.annotations.Run getPerItem() {%n");
+            if (run.perItem()) {
+                out.printf("        return cli.CommandBinder.perItem(%s, cli.annotations.ExitCodePolicy.%s);%n",
+                    run.virtualThreads(), run.exitCode().name());
+            } else {
+                out.printf("        return null;%n");
+            }
+            out.printf("    }%n%n");
+
+            out.printf("    @Override%n");
+            out.printf("    public Integer run(%s command, java.nio.file.Path cwd) throws Exception {%n", command);
+            if (binder.run.getReturnType().getKind() == TypeKind.VOID) {
+                out.printf("        command.%s(cwd);%n", binder.run.getSimpleName());
+                out.printf("        return null;%n");
+            } else {
+                out.printf("        return command.%s(cwd);%n", binder.run.getSimpleName());
+            }
+            out.printf("    }%n");
+            out.printf("}%n");
+        }
+
+        private void writeBuildOptions() {
+            out.printf("    @Override%n");
+            out.printf("    public org.apache.commons.cli.Options buildOptions() {%n");
+            out.printf("        var options = new org.apache.commons.cli.Options();%n");
+            for (var p : binder.parameters) {
+                out.printf("        options.addOption(org.apache.commons.cli.Option.builder()%n");
+                out.printf("            .required(%s)%n", p.mandatory());
+                out.printf("            .hasArg(%s)%n", !p.flag());
+                out.printf("            .desc(%s)%n", literal(p.description()));
+                if (p.longName() != null) out.printf("            .longOpt(%s)%n", literal(p.longName()));
+                if (p.name() != null) out.printf("            .option(%s)%n", literal(p.name()));
+                out.printf("            .build());%n");
+            }
+            out.printf("        return options;%n");
+            out.printf("    }%n%n");
+        }
+
+        private void writeApplyArguments(String command) {
+            var flags = binder.parameters.stream().filter(ParameterModel::flag).toList();
+            out.printf("    @Override%n");
+            out.printf("    public void applyArguments(%s command, org.apache.commons.cli.CommandLine commandLine)%n", command);
+            out.printf("            throws org.apache.commons.cli.ParseException {%n");
+            out.printf("        var errors = new java.util.LinkedList<String>();%n");
+            if (!flags.isEmpty()) out.printf("        resetFlags(command, errors);%n");
+            if (!binder.parameters.isEmpty()) {
+                out.printf("        for (var option : commandLine.getOptions()) {%n");
+                out.printf("            apply(command, option.getOpt() != null ? option.getOpt() : option.getLongOpt(), option.getValue(), errors);%n");
+                out.printf("        }%n");
+            }
+            out.printf("        applyArgs(command, errors, java.util.Arrays.asList(commandLine.getArgs()));%n");
+            out.printf("    }%n%n");
+
+            out.printf("    @Override%n");
+            out.printf("    public void applyArguments(%s command, cli.ParsedArguments arguments)%n", command);
+            out.printf("            throws org.apache.commons.cli.ParseException {%n");
+            out.printf("        var errors = new java.util.LinkedList<String>();%n");
+            if (!flags.isEmpty()) out.printf("        resetFlags(command, errors);%n");
+            if (!binder.parameters.isEmpty()) {
+                out.printf("        for (var i = 0; i < arguments.size(); i++) {%n");
+                out.printf("            apply(command, arguments.key(i), arguments.value(i), errors);%n");
+                out.printf("        }%n");
+            }
+            out.printf("        applyArgs(command, errors, arguments.hasArgs() ? arguments.args() : java.util.List.of());%n");
+            out.printf("    }%n%n");
+
+            if (!flags.isEmpty()) {
+                // Force false for all flags before applying the arguments - we assume it is turned down!
+                out.printf("    private static void resetFlags(%s command, java.util.List<String> errors) {%n", command);
+                out.printf("        try {%n");
+                flags.forEach(p -> out.printf("            command.%s(false);%n", p.setter()));
+                out.printf("        } catch (Exception e) {%n");
+                out.printf("            errors.add(e.getMessage());%n");
+                out.printf("        }%n");
+                out.printf("    }%n%n");
+            }
+            if (!binder.parameters.isEmpty()) {
+                out.printf("    private static void apply(%s command, String key, String value, java.util.List<String> errors) {%n", command);
+                out.printf("        try {%n");
+                out.printf("            switch (key) {%n");
+                for (var p : binder.parameters) {
+                    out.printf("                case %s -> command.%s(%s);%n", literal(p.key()), p.setter(), p.conversion());
+                }
+                out.printf("                default -> { }%n");
+                out.printf("            }%n");
+                out.printf("        } catch (Exception e) {%n");
+                out.printf("            errors.add(e.getMessage());%n");
+                out.printf("        }%n");
+                out.printf("    }%n%n");
+            }
+            out.printf("    private static void applyArgs(%s command, java.util.List<String> errors, java.util.List<String> args)%n", command);
+            out.printf("            throws org.apache.commons.cli.ParseException {%n");
+            out.printf("        if (!errors.isEmpty()) {%n");
+            out.printf("            // Unable to parse certain options%n");
+            out.printf("            throw new org.apache.commons.cli.ParseException(String.join(\"\\n\", errors));%n");
+            out.printf("        }%n");
+            if (binder.optionalArgsSetter != null) {
+                out.printf("        if (!args.isEmpty()) {%n");
+                if (binder.optionalArgsType != null) {
+                    out.printf("            command.%s(cli.InputFiles.of(%s.class, args));%n",
+                        binder.optionalArgsSetter, binder.optionalArgsType);
+                } else {
+                    out.printf("            command.%s(args);%n", binder.optionalArgsSetter);
+                }
+                out.printf("        }%n");
+            } else {
+                out.printf("        if (!args.isEmpty()) {%n");
+                out.printf("            // The command line parsed args and it is not contemplated%n");
+                out.printf("            throw new org.apache.commons.cli.ParseException(%n");
+                out.printf("                String.format(\"Could not parse %%s %%n\", String.join(\",\", args))%n");
+                out.printf("            );%n");
+                out.printf("        }%n");
+            }
+            out.printf("    }%n%n");
+        }
+
+        // Java literal for a (possibly null) string
+        private static String literal(String s) {
+            if (s == null) return "null";
+            var sb = new StringBuilder("\"");
+            for (var c : s.toCharArray()) {
+                switch (c) {
+                    case '"' -> sb.append("\\\"");
+                    case '\\' -> sb.append("\\\\");
+                    case '\n' -> sb.append("\\n");
+                    case '\r' -> sb.append("\\r");
+                    case '\t' -> sb.append("\\t");
+                    default -> {
+                        if (c < 0x20 || c > 0x7e) sb.append(String.format("\\u%04x", (int) c));
+                        else sb.append(c);
+                    }
+                }
+            }
+            return sb.append('"').toString();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package cli;
+
+import cli.annotations.Command;
+import cli.annotations.OptionalArgs;
+import cli.annotations.Parameter;
+import cli.annotations.Run;
+
+import java.nio.file.Path;
+import java.util.List;
+
+@Command(command = "files", description = "this is a test command with optional arguments")
+public class SampleFilesCommand {
+
+    @Parameter(
+        name = "a",
+        longName = "all",
+        description = "do not ignore entries starting with ."
+    )
+    private Boolean all;
+    public void setAll(Boolean b) { all = b; }
+
+    @OptionalArgs(name = "FILE")
+    private List<String> files;
+    public void setFiles(List<String> f) { files = f; }
+
+    @Run
+    public int list(Path cwd) {
+        if (files != null) files.forEach(System.out::println);
+        return 0;
+    }
+}
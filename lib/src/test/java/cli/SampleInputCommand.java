@@ -0,0 +1,43 @@
+package cli;
+
+import cli.annotations.Command;
+import cli.annotations.OptionalArgs;
+import cli.annotations.Run;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+@Command(command = "input", description = "this is a test command that reads its input files")
+public class SampleInputCommand {
+
+    // Channels opened during the last run, to check that they are closed afterwards
+    static final List<FileChannel> channels = new ArrayList<>();
+
+    @OptionalArgs(name = "FILE")
+    private List<InputFile> files;
+    public void setFiles(List<InputFile> f) { files = f; }
+
+    // Returns the number of lines, checking that every way of reading the files agrees
+    @Run
+    public int count(Path cwd) throws IOException {
+        channels.clear();
+        var ret = 0;
+        for (var file : files) {
+            long count;
+            try (var lines = file.lines()) {
+                count = lines.count();
+            }
+            var buffer = file.map();
+            var newLines = 0;
+            while (buffer.hasRemaining()) if (buffer.get() == '\n') newLines++;
+            if (newLines != count) return -1;
+            ret += newLines;
+            channels.add(file.channel());
+            if (file.channel().size() != file.size()) return -1;
+        }
+        return ret;
+    }
+}
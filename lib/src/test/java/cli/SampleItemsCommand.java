@@ -0,0 +1,32 @@
+package cli;
+
+import cli.annotations.Command;
+import cli.annotations.ExitCodePolicy;
+import cli.annotations.OptionalArgs;
+import cli.annotations.Parameter;
+import cli.annotations.Run;
+
+import java.nio.file.Path;
+import java.util.List;
+
+@Command(command = "items", description = "this is a test command that runs once per argument")
+public class SampleItemsCommand {
+
+    @Parameter(name = "prefix", description = "printed before every item")
+    private String prefix;
+    public void setPrefix(String p) { prefix = p; }
+
+    @OptionalArgs(name = "ITEM")
+    private List<String> items;
+    public void setItems(List<String> i) { items = i; }
+
+    // Items are numbers: the item sleeps that long, and fails with that exit code if it is a multiple of 10
+    @Run(perItem = true, exitCode = ExitCodePolicy.MAX)
+    public int process(Path cwd) throws InterruptedException {
+        if (items.size() != 1) return -1;
+        var item = Integer.parseInt(items.getFirst());
+        Thread.sleep(item % 7);
+        System.out.println(prefix + item);
+        return item % 10 == 0 ? item / 10 : 0;
+    }
+}
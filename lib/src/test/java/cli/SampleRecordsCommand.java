@@ -0,0 +1,25 @@
+package cli;
+
+import cli.annotations.Command;
+import cli.annotations.OptionalArgs;
+import cli.annotations.Run;
+
+import java.nio.file.Path;
+import java.util.List;
+
+@Command(command = "records", description = "this is a test command that writes a record per argument")
+public class SampleRecordsCommand {
+
+    @OptionalArgs(name = "WORD")
+    private List<String> words;
+    public void setWords(List<String> w) { words = w; }
+
+    @Run(perItem = true)
+    public int run(Path cwd) {
+        var out = RecordWriter.current();
+        for (var word : words) {
+            out.field("word", word).field("length", word.length()).field("even", word.length() % 2 == 0).endRecord();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,37 @@
+package cli;
+
+import cli.annotations.Command;
+import cli.annotations.Parameter;
+import cli.annotations.Run;
+
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+
+@Command(command = "slow", description = "this is a test command with a time limit", timeout = "300ms")
+public class SampleSlowCommand {
+
+    // Set when a spinning run sees that it was cancelled
+    static volatile boolean cancelled;
+
+    @Parameter(name = "sleep", description = "milliseconds to sleep")
+    private Long sleep;
+    public void setSleep(Long s) { sleep = s; }
+
+    @Parameter(name = "spin", description = "busy loop until cancelled")
+    private Boolean spin;
+    public void setSpin(Boolean s) { spin = s; }
+
+    @Run
+    public int run(Path cwd) throws InterruptedException {
+        if (spin != null && spin) {
+            try {
+                while (true) Cancellation.current().throwIfCancelled();
+            } catch (CancellationException e) {
+                cancelled = true;
+                throw e;
+            }
+        }
+        Thread.sleep(sleep == null ? 0 : sleep);
+        return 0;
+    }
+}
@@ -0,0 +1,73 @@
+package cli;
+
+import cli.annotations.Command;
+import cli.annotations.Parameter;
+import cli.annotations.Run;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+@Command(command = "types", description = "parameters of every supported type")
+public class SampleTypesCommand {
+
+    // Converted by a converter registered at runtime
+    public record Point(int x, int y) { }
+
+    @Parameter(name = "count", description = "primitive int")
+    private int count;
+    public void setCount(int c) { count = c; }
+
+    @Parameter(name = "size", description = "primitive long")
+    private long size;
+    public void setSize(long s) { size = s; }
+
+    @Parameter(name = "ratio", description = "primitive double")
+    private double ratio;
+    public void setRatio(double r) { ratio = r; }
+
+    @Parameter(name = "verbose", description = "primitive boolean")
+    private boolean verbose;
+    public void setVerbose(boolean v) { verbose = v; }
+
+    @Parameter(name = "level", description = "enumerated parameter")
+    private SampleEnum level;
+    public void setLevel(SampleEnum l) { level = l; }
+
+    @Parameter(name = "file", description = "path")
+    private Path file;
+    public void setFile(Path f) { file = f; }
+
+    @Parameter(name = "timeout", description = "duration")
+    private Duration timeout;
+    public void setTimeout(Duration t) { timeout = t; }
+
+    @Parameter(name = "amount", description = "big decimal")
+    private BigDecimal amount;
+    public void setAmount(BigDecimal a) { amount = a; }
+
+    @Parameter(name = "ports", description = "list of integers")
+    private List<Integer> ports;
+    public void setPorts(List<Integer> p) { ports = p; }
+
+    @Parameter(name = "point", description = "user type")
+    private Point point;
+    public void setPoint(Point p) { point = p; }
+
+    public int getCount() { return count; }
+    public long getSize() { return size; }
+    public double getRatio() { return ratio; }
+    public boolean isVerbose() { return verbose; }
+    public SampleEnum getLevel() { return level; }
+    public Path getFile() { return file; }
+    public Duration getTimeout() { return timeout; }
+    public BigDecimal getAmount() { return amount; }
+    public List<Integer> getPorts() { return ports; }
+    public Point getPoint() { return point; }
+
+    @Run
+    public int run(Path cwd) {
+        return count;
+    }
+}
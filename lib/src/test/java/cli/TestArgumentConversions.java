@@ -0,0 +1,102 @@
+package cli;
+
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestArgumentConversions {
+
+    static {
+        ArgumentConversions.register(SampleTypesCommand.Point.class, value -> {
+            var comma = value == null ? -1 : value.indexOf(',');
+            if (comma < 0) throw new ParseException(String.format("Could not parse '%s' to a point", value));
+            return new SampleTypesCommand.Point(
+                ArgumentConversions.parseInt(value.substring(0, comma)),
+                ArgumentConversions.parseInt(value.substring(comma + 1))
+            );
+        });
+    }
+
+    private static final String[] ARGS = {
+        "-count", "3", "-size", "12345678901", "-ratio", "0.5", "-verbose", "-level", "bAr", "-file", "a/b.txt",
+        "-timeout", "1500ms", "-amount", "12.50", "-ports", "80, 443", "-point", "1,2"
+    };
+
+    @Test
+    public void testConversions() throws ParseException {
+        assertEquals(SampleEnum.BAZ, ArgumentConversions.toEnum(SampleEnum.class, "baz"));
+        assertEquals(SampleEnum.FOO, ArgumentConversions.convert(SampleEnum.class, "Foo"));
+        assertThrowsExactly(ParseException.class, () -> ArgumentConversions.toEnum(SampleEnum.class, "qux"));
+        assertEquals(Duration.ofSeconds(90), ArgumentConversions.toDuration("PT1M30S"));
+        assertEquals(Duration.ofMinutes(5), ArgumentConversions.toDuration("5m"));
+        assertEquals(Duration.ofDays(-1), ArgumentConversions.toDuration("-1d"));
+        assertThrowsExactly(ParseException.class, () -> ArgumentConversions.toDuration("5 parsecs"));
+        assertEquals(new BigDecimal("1.10"), ArgumentConversions.convert(BigDecimal.class, "1.10"));
+        assertEquals(List.of(1, 2, 3), ArgumentConversions.toList(Integer.class, "1,2,3"));
+        assertEquals(List.of(), ArgumentConversions.toList(Integer.class, ""));
+        assertEquals(7, ArgumentConversions.convert(int.class, "7"));
+        assertThrowsExactly(ParseException.class, () -> ArgumentConversions.parseInt("seven"));
+        // No factory method, constructor or registered converter
+        assertThrowsExactly(ParseException.class, () -> ArgumentConversions.convert(Object.class, "x"));
+        assertThrows(IllegalArgumentException.class, () -> ArgumentConversions.register(Integer.class, value -> 0));
+    }
+
+    @Test
+    public void testGeneratedBinder() {
+        var binder = Introspection.lookForBinder(SampleTypesCommand.class);
+        assertNotNull(binder);
+        check(binder);
+    }
+
+    @Test
+    public void testReflectiveBinder() {
+        try {
+            check(new ReflectiveBinder(SampleTypesCommand.class));
+        } catch (CmdException e) {
+            fail(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void check(CommandBinder<?> binder) {
+        var typed = (CommandBinder<Object>) binder;
+        try {
+            var options = typed.buildOptions();
+            var command = (SampleTypesCommand) typed.newInstance();
+            typed.applyArguments(command, new DefaultParser().parse(options, ARGS, false));
+            assertEquals(3, command.getCount());
+            assertEquals(12345678901L, command.getSize());
+            assertEquals(0.5, command.getRatio());
+            assertTrue(command.isVerbose());
+            assertEquals(SampleEnum.BAR, command.getLevel());
+            assertEquals(Path.of("a/b.txt"), command.getFile());
+            assertEquals(Duration.ofMillis(1500), command.getTimeout());
+            assertEquals(new BigDecimal("12.50"), command.getAmount());
+            assertEquals(List.of(80, 443), command.getPorts());
+            assertEquals(new SampleTypesCommand.Point(1, 2), command.getPoint());
+            // Flags are reset on every binding, and the built-in parser gives the same result
+            var parsed = new ParsedArguments();
+            ArgumentParser.parse(new OptionTable(options), new String[] { "-count", "4" }, parsed);
+            typed.applyArguments(command, parsed);
+            assertEquals(4, command.getCount());
+            assertFalse(command.isVerbose());
+            var wrong = new DefaultParser().parse(options, new String[] { "-count", "four" }, false);
+            assertThrowsExactly(ParseException.class, () -> typed.applyArguments(command, wrong));
+        } catch (ParseException e) {
+            fail(e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package cli;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.MissingOptionException;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestArgumentParser {
+
+    private static final Options options = new Options()
+        .addOption(Option.builder("name").longOpt("full-name").hasArg().required().build())
+        .addOption(Option.builder("n").longOpt("number").hasArg().build())
+        .addOption(Option.builder("a").longOpt("all").build())
+        .addOption(Option.builder("l").build())
+        .addOption(Option.builder().longOpt("verbose").build())
+        .addOption(Option.builder().longOpt("version").build());
+
+    // Options (key=value) and arguments found by a parser, or the class of its exception
+    private static List<String> commonsCli(String... args) {
+        try {
+            CommandLine commandLine = new DefaultParser().parse(options, args, false);
+            var ret = new ArrayList<String>();
+            for (var option : commandLine.getOptions()) ret.add(option.getKey() + "=" + option.getValue());
+            ret.add("args=" + commandLine.getArgList());
+            return ret;
+        } catch (ParseException e) {
+            return List.of(e.getClass().getSimpleName());
+        }
+    }
+
+    private static List<String> builtin(String... args) {
+        try {
+            var arguments = new ParsedArguments();
+            ArgumentParser.parse(new OptionTable(options), args, arguments);
+            var ret = new ArrayList<String>();
+            for (var i = 0; i < arguments.size(); i++) ret.add(arguments.key(i) + "=" + arguments.value(i));
+            ret.add("args=" + arguments.args());
+            return ret;
+        } catch (ParseException e) {
+            return List.of(e.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    public void testSameAsCommonsCli() {
+        var lines = List.of(
+            new String[] { "-name", "x" },
+            new String[] { "--full-name", "x", "file1", "file2" },
+            new String[] { "--full-name=x", "-n", "-5", "-a" },
+            new String[] { "-name=x" },
+            new String[] { "-full-name=x", "-n=3", "-al" },
+            new String[] { "-name", "x", "-n3", "-la" },
+            new String[] { "-name", "x", "-full-name", "y", "--number=4" },
+            new String[] { "-name", "x", "--full", "y", "--verb" },
+            new String[] { "-name", "x", "--ver" },
+            new String[] { "-name", "x", "-a=true" },
+            new String[] { "-name", "x", "--all=true" },
+            new String[] { "-name", "x", "-unknown" },
+            new String[] { "-name" },
+            new String[] { "-name", "-a" },
+            new String[] { "-a" },
+            new String[] { "-name", "x", "--", "-a", "--all" },
+            new String[] { "-", "-name", "x", "last" },
+            new String[] { "-la", "-name", "x", "-n", "1", "-n", "2" },
+            new String[] { }
+        );
+        for (var line : lines) {
+            assertEquals(commonsCli(line), builtin(line), Arrays.toString(line));
+        }
+    }
+
+    @Test
+    public void testMandatory() {
+        var e = assertThrows(MissingOptionException.class, () -> ArgumentParser.parse(new OptionTable(options), new String[] { "-a" }, new ParsedArguments()));
+        assertEquals(List.of("name"), e.getMissingOptions());
+    }
+
+    @Test
+    public void testReuse() {
+        try {
+            var table = new OptionTable(options);
+            var arguments = new ParsedArguments();
+            ArgumentParser.parse(table, new String[] { "-name", "x", "-a", "f1", "f2" }, arguments);
+            var args = arguments.args();
+            var item = arguments.forArgument(1);
+            ArgumentParser.parse(table, new String[] { "-name", "y" }, arguments);
+            assertEquals(1, arguments.size());
+            assertEquals("y", arguments.value(0));
+            assertEquals(List.of(), arguments.args());
+            // The lists and items handed out before are not affected
+            assertEquals(List.of("f1", "f2"), args);
+            assertEquals(List.of("f2"), item.args());
+            assertEquals(2, item.size());
+            assertEquals("x", item.value(0));
+            assertEquals("a", item.key(1));
+        } catch (ParseException e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testBinders() {
+        try {
+            var command = new SampleCommand();
+            var metadata = CommandMetadata.forClass(SampleCommand.class);
+            var arguments = new ParsedArguments();
+            ArgumentParser.parse(metadata, new String[] { "-testParam", "lalala", "-enumParam", "baz", "-numericParam", "234", "-flag" }, arguments);
+            metadata.applyArguments(command, arguments);
+            var reflective = new ReflectiveBinder(SampleCommand.class);
+            var other = (SampleCommand) reflective.newInstance();
+            reflective.applyArguments(other, arguments);
+            assertEquals(0, reflective.run(other, Paths.get("")));
+            assertEquals(0, new EntryPoint(ArgumentParser.Kind.BUILTIN).executeEntryPoint(
+                SampleFilesCommand.class.getName(), Paths.get(""), "-a", "f1"
+            ));
+            assertThrows(CmdException.class, () -> new EntryPoint(ArgumentParser.Kind.BUILTIN).executeEntryPoint(
+                SampleCommand.class.getName(), Paths.get(""), "-flag=true"
+            ));
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+}
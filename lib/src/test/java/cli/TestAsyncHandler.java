@@ -0,0 +1,82 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestAsyncHandler {
+
+    // Keeps the messages, the first one waits until it is released
+    private static class Target extends Handler {
+        final List<String> messages = new CopyOnWriteArrayList<>();
+        final CountDownLatch release = new CountDownLatch(1);
+        boolean closed;
+
+        @Override
+        public void publish(LogRecord record) {
+            if (messages.isEmpty()) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            messages.add(record.getMessage());
+        }
+
+        @Override
+        public void flush() { }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static List<String> publish(boolean dropOldest) {
+        var target = new Target();
+        var handler = new AsyncHandler(target, 2, dropOldest);
+        handler.publish(new LogRecord(Level.INFO, "0"));
+        // Let the worker take the first one, then fill the buffer and overflow it
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (var i = 1; i <= 4; i++) handler.publish(new LogRecord(Level.INFO, Integer.toString(i)));
+        target.release.countDown();
+        handler.close();
+        assertTrue(target.closed);
+        return target.messages;
+    }
+
+    @Test
+    public void testDropOldest() {
+        assertEquals(List.of("0", "2 log records were dropped", "3", "4"), publish(true));
+    }
+
+    @Test
+    public void testDropNewest() {
+        assertEquals(List.of("0", "2 log records were dropped", "1", "2"), publish(false));
+    }
+
+    @Test
+    public void testFlush() {
+        var target = new Target();
+        target.release.countDown();
+        var handler = new AsyncHandler(target, 16, true);
+        for (var i = 0; i < 10; i++) handler.publish(new LogRecord(Level.INFO, Integer.toString(i)));
+        handler.flush();
+        assertEquals(10, target.messages.size());
+        assertEquals("9", target.messages.get(9));
+        handler.close();
+    }
+}
@@ -0,0 +1,76 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestBatch {
+
+    @Test
+    public void testSplit() {
+        try {
+            assertEquals(List.of("-a", "b c", "d\"e", "f g", "h\\i"), Batch.split(" -a 'b c'  \"d\\\"e\" f\\ g h\\\\i "));
+            assertEquals(List.of("", "x"), Batch.split("'' x"));
+            assertThrows(CmdException.class, () -> Batch.split("'unterminated"));
+        } catch (CmdException e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testSequential() {
+        try {
+            StandardStreams.install();
+            var out = new ByteArrayOutputStream();
+            var status = new ByteArrayOutputStream();
+            var batch = new Batch(
+                SampleCommand.class.getName(), 1, false,
+                new PrintStream(out, true, UTF_8), new PrintStream(new ByteArrayOutputStream(), true, UTF_8),
+                new PrintStream(status, true, UTF_8)
+            );
+            var records = "-testParam a\n-numericParam x\n\n-testParam 'b c' -flag\n";
+            assertEquals(-1337, batch.run(new BufferedReader(new StringReader(records)), Path.of("/tmp")));
+            assertEquals(String.format("1\t0%n2\t-1337%n4\t0%n"), status.toString(UTF_8));
+            var output = out.toString(UTF_8);
+            assertTrue(output.contains(String.format("a%n")));
+            assertTrue(output.contains(String.format("b c%nnull%nnull%ntrue%n")));
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testParallelKeepsOrder() {
+        try {
+            StandardStreams.install();
+            var out = new ByteArrayOutputStream();
+            var records = new StringBuilder();
+            for (var i = 0; i < 200; i++) records.append("-testParam value").append(i).append('\0');
+            var batch = new Batch(
+                SampleCommand.class.getName(), 8, true,
+                new PrintStream(out, true, UTF_8), new PrintStream(new ByteArrayOutputStream(), true, UTF_8), null
+            );
+            assertEquals(0, batch.run(new BufferedReader(new StringReader(records.toString())), Path.of("/tmp")));
+            var lines = out.toString(UTF_8).lines().toList();
+            assertEquals(200 * 5, lines.size());
+            for (var i = 0; i < 200; i++) {
+                // Every invocation prints its working directory first, then its parameters
+                assertEquals("/tmp", lines.get(i * 5));
+                assertEquals("value" + i, lines.get(i * 5 + 1));
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestCancellation {
+
+    private static Integer run(String... args) throws CmdException {
+        return new EntryPoint().executeEntryPoint("cli.SampleSlowCommand", Path.of(""), args);
+    }
+
+    @Test
+    public void testTimeout() {
+        try {
+            assertEquals(0, run("-sleep", "10"));
+            // The limit of the annotation
+            var start = System.nanoTime();
+            var e = assertThrowsExactly(CmdException.class, () -> run("-sleep", "10000"));
+            assertEquals(Cancellation.TIMEOUT, e.getReturnCode());
+            assertTrue(System.nanoTime() - start < 5_000_000_000L);
+            // Overridden by the framework option
+            assertEquals(0, run("--timeout", "0", "-sleep", "500"));
+            assertEquals(Cancellation.TIMEOUT,
+                assertThrowsExactly(CmdException.class, () -> run("--timeout=50ms", "-sleep", "250")).getReturnCode());
+            assertEquals(-1, assertThrowsExactly(CmdException.class, () -> run("--timeout", "soon")).getReturnCode());
+        } catch (CmdException e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testToken() {
+        SampleSlowCommand.cancelled = false;
+        var e = assertThrowsExactly(CmdException.class, () -> run("-spin"));
+        assertEquals(Cancellation.TIMEOUT, e.getReturnCode());
+        for (var i = 0; i < 50 && !SampleSlowCommand.cancelled; i++) {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ie) {
+                fail();
+            }
+        }
+        assertTrue(SampleSlowCommand.cancelled);
+        // Without a limit, the token is never cancelled
+        assertFalse(Cancellation.current().isCancelled());
+    }
+}
@@ -0,0 +1,52 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestColorWriter {
+
+    private static String write(boolean colors, Consumer<ColorWriter> body) {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new ColorWriter(bytes, colors, StandardCharsets.UTF_8)) {
+            body.accept(out);
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testColors() {
+        var text = write(true, out -> out.paint("dir", ANSIEscapeCode.BRIGHT_BLUE).print(' ').print(-1234L));
+        assertEquals(ANSIEscapeCode.BRIGHT_BLUE.sequence() + "dir" + ANSIEscapeCode.CLEAR.sequence() + " -1234", text);
+        assertEquals("\u001b[34;1m", ANSIEscapeCode.BRIGHT_BLUE.sequence());
+        // Without colors, no escape sequences at all
+        assertEquals("dir 0", write(false, out -> out.paint("dir", ANSIEscapeCode.BLUE).print(' ').print(0L)));
+    }
+
+    @Test
+    public void testText() {
+        var text = "año → 😀 ok";
+        assertEquals(text, write(true, out -> out.print(text)));
+        assertEquals(Long.toString(Long.MIN_VALUE) + Long.MAX_VALUE,
+            write(true, out -> out.print(Long.MIN_VALUE).print(Long.MAX_VALUE)));
+        // Larger than the buffer
+        var large = "x".repeat(20_000) + "ñ".repeat(10_000);
+        assertEquals(large + System.lineSeparator(), write(false, out -> out.print(large).println()));
+    }
+
+    @Test
+    public void testDetection() {
+        assertTrue(ANSIEscapeCode.detect(null, null, true));
+        assertFalse(ANSIEscapeCode.detect(null, null, false));
+        assertFalse(ANSIEscapeCode.detect(null, "1", true));
+        assertTrue(ANSIEscapeCode.detect(null, "", true));
+        assertTrue(ANSIEscapeCode.detect("always", "1", false));
+        assertFalse(ANSIEscapeCode.detect("never", null, true));
+    }
+}
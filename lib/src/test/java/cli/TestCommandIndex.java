@@ -0,0 +1,45 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestCommandIndex {
+
+    @Test
+    public void testWriteAndRead() {
+        try {
+            var text = new StringWriter();
+            CommandIndex.write(List.of(
+                new CommandIndex.Entry("files", SampleFilesCommand.class.getName(), List.of("ls", "dir"), false, "lists\tthe\nfiles"),
+                new CommandIndex.Entry("app", SampleBackgroundApp.class.getName(), List.of(), true, null)
+            ), text);
+            var index = CommandIndex.read(new StringReader(text.toString()));
+            assertEquals(2, index.entries().size());
+            var entry = index.lookup("dir");
+            assertEquals(SampleFilesCommand.class.getName(), entry.className());
+            assertEquals("files", entry.command());
+            assertEquals("lists the files", entry.description());
+            assertEquals(entry, index.lookup("files"));
+            assertTrue(index.lookup("app").background());
+            assertNull(index.lookup(SampleFilesCommand.class.getName()));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testResolve() {
+        // There is no index in the test class path: class names are left as they are
+        assertEquals(SampleCommand.class.getName(), CommandIndex.resolve(SampleCommand.class.getName()));
+        assertNull(CommandIndex.resolve(null));
+    }
+}
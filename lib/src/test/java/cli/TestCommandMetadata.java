@@ -0,0 +1,97 @@
+package cli;
+
+import org.apache.commons.cli.DefaultParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestCommandMetadata {
+
+    // Keeps the output of the sample commands run by the current thread (and the threads it starts) out of the log
+    private static ByteArrayOutputStream capture() {
+        StandardStreams.install();
+        var out = new ByteArrayOutputStream();
+        StandardStreams.route(new StandardStreams.Target(InputStream.nullInputStream(), out, new ByteArrayOutputStream()));
+        return out;
+    }
+
+    @Test
+    public void testCached() {
+        try {
+            var metadata = CommandMetadata.forName("cli.SampleCommand");
+            assertSame(metadata, CommandMetadata.forName("cli.SampleCommand"));
+            assertSame(metadata, CommandMetadata.forClass(SampleCommand.class));
+            assertEquals("test", metadata.getCommand());
+            assertTrue(metadata.isGenerated());
+            CommandMetadata.clear();
+            assertNotSame(metadata, CommandMetadata.forName("cli.SampleCommand"));
+        } catch (CmdException e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testInvalidCommandNotCached() {
+        assertThrowsExactly(CmdException.class, () -> CommandMetadata.forName("cli.SampleWrongBackgroundApp"));
+        assertThrowsExactly(CmdException.class, () -> CommandMetadata.forName("cli.SampleWrongBackgroundApp"));
+        assertThrowsExactly(CmdException.class, () -> CommandMetadata.forName("cli.DoesNotExist"));
+        assertThrowsExactly(CmdException.class, () -> CommandMetadata.forClass(SampleEnum.class));
+    }
+
+    @Test
+    public void testReflectiveBinder() {
+        var out = capture();
+        try {
+            var binder = new ReflectiveBinder(SampleCommand.class);
+            var command = (SampleCommand) binder.newInstance();
+            var commandLine = new DefaultParser().parse(
+                binder.buildOptions(),
+                new String[] { "-testParam", "lalala", "-enumParam", "baz", "-numericParam", "234" },
+                false
+            );
+            binder.applyArguments(command, commandLine);
+            assertEquals(0, binder.run(command, Paths.get("")));
+            assertTrue(out.toString(UTF_8).contains("lalala"));
+            assertThrowsExactly(CmdException.class, () -> new ReflectiveBinder(SampleWrongBackgroundApp.class));
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            StandardStreams.release();
+        }
+    }
+
+    @Test
+    public void testConcurrentInvocations() {
+        CommandMetadata.clear();
+        capture();
+        try (var executor = Executors.newFixedThreadPool(8)) {
+            var results = executor.invokeAll(IntStream.range(0, 200).mapToObj(i -> (Callable<Integer>) () ->
+                new EntryPoint().executeEntryPoint(
+                    "cli.SampleCommand",
+                    Paths.get(""),
+                    "-testParam", "p" + i, "-enumParam", i % 2 == 0 ? "foo" : "BAR", "-numericParam", Integer.toString(i)
+                )
+            ).toList());
+            for (var result: results) {
+                assertEquals(0, result.get());
+            }
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            StandardStreams.release();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package cli;
+
+import cli.annotations.Command;
+import cli.processor.CommandProcessor;
+import org.apache.commons.cli.Option;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestCommandProcessor {
+
+    @Test
+    public void testBinderGenerated() {
+        var binder = Introspection.lookForBinder(SampleCommand.class);
+        assertNotNull(binder);
+        assertEquals(SampleCommand.class, binder.getCommandClass());
+        assertEquals(SampleCommand.class, binder.newInstance().getClass());
+        assertNull(binder.getOptionalArgs());
+        assertNotNull(Introspection.lookForBinder(SampleBackgroundApp.class));
+    }
+
+    @Test
+    public void testNoBinderForWrongCommand() {
+        // Reported as a warning by the lenient processor, left to introspection
+        assertNull(Introspection.lookForBinder(SampleWrongBackgroundApp.class));
+        assertNull(Introspection.lookForBinder(SampleEnum.class));
+    }
+
+    @Test
+    public void testSameOptionsAsIntrospection() throws CmdException {
+        var binder = Introspection.lookForBinder(SampleCommand.class);
+        assertNotNull(binder);
+        assertEquals(describe(new ReflectiveBinder(SampleCommand.class).buildOptions().getOptions()),
+            describe(binder.buildOptions().getOptions()));
+    }
+
+    @Test
+    public void testPerItem() throws CmdException {
+        var binder = Introspection.lookForBinder(SampleItemsCommand.class);
+        assertNotNull(binder);
+        // Same annotation as the one on the Run method, without reflection
+        var expected = new ReflectiveBinder(SampleItemsCommand.class).getPerItem();
+        assertNotNull(expected);
+        assertInstanceOf(PerItemRun.class, binder.getPerItem());
+        assertEquals(expected, binder.getPerItem());
+        assertEquals(binder.getPerItem(), expected);
+        assertEquals(expected.hashCode(), binder.getPerItem().hashCode());
+        assertNull(Introspection.lookForBinder(SampleCommand.class).getPerItem());
+    }
+
+    private static String describe(java.util.Collection<Option> options) {
+        return options.stream().map(
+            o -> o.getOpt() + "|" + o.getLongOpt() + "|" + o.hasArg() + "|" + o.isRequired() + "|" + o.getDescription()
+        ).sorted().collect(Collectors.joining(","));
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        assertEquals(List.of(), process("timeout = \"30\""));
+        assertEquals(List.of(), process("timeout = \"PT1M\""));
+        // No limit, so a background command can have it
+        assertEquals(List.of(), process("timeout = \"0\", isBackground = true"));
+        assertEquals(List.of("A command intended to run in the background cannot have a timeout"),
+            process("timeout = \"30\", isBackground = true"));
+        var problems = process("timeout = \"soon\"");
+        assertEquals(1, problems.size());
+        assertTrue(problems.get(0).startsWith("The timeout must be a duration"));
+    }
+
+    // Errors of the processor on a command with these extra Command attributes
+    private static List<String> process(String attributes) throws IOException {
+        var source = String.format("""
+            package sample;
+            @cli.annotations.Command(command = "sample", description = "sample", %s)
+            public class Sample {
+                @cli.annotations.Run
+                public %s
+            }
+            """, attributes, attributes.contains("isBackground")
+                // Background commands do not return an exit code
+                ? "void run(java.nio.file.Path cwd) { }"
+                : "int run(java.nio.file.Path cwd) { return 0; }");
+        var file = new SimpleJavaFileObject(URI.create("string:///sample/Sample.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        var output = Files.createTempDirectory("processor");
+        // The generated binder needs the library and Apache Commons Cli
+        var classPath = Stream.of(Command.class, Option.class)
+            .map(c -> Path.of(URI.create(c.getProtectionDomain().getCodeSource().getLocation().toString())).toString())
+            .collect(Collectors.joining(File.pathSeparator));
+        var diagnostics = new DiagnosticCollector<JavaFileObject>();
+        var task = ToolProvider.getSystemJavaCompiler().getTask(null, null, diagnostics,
+            List.of("-proc:only", "-cp", classPath, "-s", output.toString()), null, List.of(file));
+        task.setProcessors(List.of(new CommandProcessor()));
+        task.call();
+        return diagnostics.getDiagnostics().stream()
+            .filter(d -> d.getKind() == Diagnostic.Kind.ERROR)
+            .map(d -> d.getMessage(null))
+            .toList();
+    }
+}
@@ -0,0 +1,87 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestDaemon {
+
+    // Sends a request the same way the thin client in template.sh does, returns the standard output
+    private String send(Path socket, Path dir, String... args) throws IOException {
+        var request = new StringBuilder();
+        for (var field: new String[] {
+            Daemon.PROTOCOL,
+            dir.resolve("err").toString(),
+            dir.resolve("status").toString(),
+            dir.toString(),
+            Integer.toString(args.length)
+        }) request.append(field).append('\0');
+        for (var arg: args) request.append(arg).append('\0');
+        request.append("SOME_VAR=some value").append('\0').append('\0');
+        try (var channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            channel.write(ByteBuffer.wrap(request.toString().getBytes(UTF_8)));
+            channel.shutdownOutput();
+            var out = new ByteArrayOutputStream();
+            var buffer = ByteBuffer.allocate(1024);
+            while (channel.read(buffer) >= 0) {
+                out.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            return out.toString(UTF_8);
+        }
+    }
+
+    @Test
+    public void testSessions() {
+        try {
+            StandardStreams.install();
+            var dir = Files.createTempDirectory("daemon");
+            var socket = dir.resolve("cli.sock");
+            var daemon = new Daemon(socket, Duration.ofMillis(500), 2);
+            var server = Thread.ofPlatform().start(() -> {
+                try {
+                    daemon.serve();
+                } catch (CmdException e) {
+                    fail(e);
+                }
+            });
+            // The socket file shows up when it is bound, a bit before it listens
+            String output = null;
+            for (var attempt = 0; output == null; attempt++) {
+                try {
+                    output = send(socket, dir, "cli.SampleCommand", "-testParam", "fromDaemon", "-enumParam", "baz");
+                } catch (IOException e) {
+                    if (attempt > 500) throw e;
+                    Thread.sleep(10);
+                }
+            }
+            assertTrue(output.contains("fromDaemon"));
+            assertTrue(output.contains(dir.toString()));
+            assertEquals("0", Files.readString(dir.resolve("status")));
+
+            send(socket, dir, "cli.SampleCommand", "-numericParam", "notANumber");
+            assertEquals(Integer.toString(-1337 & 0xff), Files.readString(dir.resolve("status")));
+            assertFalse(Files.readString(dir.resolve("err")).isEmpty());
+
+            // Idle shutdown
+            server.join(5000);
+            assertFalse(server.isAlive());
+            assertFalse(Files.exists(socket));
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestFanOut {
+
+    // Runs the sample command on the numbers from 1 to 50, returning its exit code and output
+    private static String run(ArgumentParser.Kind parser, int[] exitCode, String... options) throws CmdException {
+        StandardStreams.install();
+        var out = new ByteArrayOutputStream();
+        StandardStreams.route(new StandardStreams.Target(InputStream.nullInputStream(), out, new ByteArrayOutputStream()));
+        try {
+            var args = new ArrayList<String>();
+            args.add("-prefix");
+            args.add("item ");
+            args.addAll(java.util.List.of(options));
+            IntStream.rangeClosed(1, 50).forEach(i -> args.add(Integer.toString(i)));
+            exitCode[0] = new EntryPoint(parser).executeEntryPoint("cli.SampleItemsCommand", Path.of(""), args.toArray(new String[0]));
+        } finally {
+            StandardStreams.release();
+        }
+        return out.toString(UTF_8);
+    }
+
+    @Test
+    public void testOrderedOutput() {
+        var expected = IntStream.rangeClosed(1, 50).mapToObj(i -> String.format("item %d%n", i)).collect(Collectors.joining());
+        try {
+            assertTrue(CommandMetadata.forName("cli.SampleItemsCommand").isPerItem());
+            for (var parser : ArgumentParser.Kind.values()) {
+                for (var jobs : new String[] { "--jobs=1", "--jobs=8" }) {
+                    var exitCode = new int[1];
+                    assertEquals(expected, run(parser, exitCode, jobs, "--jobs", "4"));
+                    // The highest exit code: 50 / 10
+                    assertEquals(5, exitCode[0]);
+                }
+            }
+            assertThrowsExactly(CmdException.class, () -> run(ArgumentParser.Kind.COMMONS_CLI, new int[1], "--jobs", "0"));
+        } catch (CmdException e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testStreamsRestored() {
+        var original = System.out;
+        var out = new ByteArrayOutputStream();
+        var stream = new PrintStream(out, true, UTF_8);
+        System.setOut(stream);
+        try {
+            // An embedding program gets its own standard output back
+            new EntryPoint().executeEntryPoint("cli.SampleItemsCommand", Path.of(""), "--jobs", "4", "1", "2", "3");
+            assertSame(stream, System.out);
+        } catch (CmdException e) {
+            fail(e);
+        } finally {
+            System.setOut(original);
+        }
+        assertTrue(out.toString(UTF_8).contains("3"));
+    }
+}
@@ -0,0 +1,40 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestHelp {
+
+    @Test
+    public void testRender() {
+        try {
+            var help = Help.render(CommandMetadata.forClass(SampleCommand.class), "1.2.3");
+            assertTrue(help.startsWith("usage: test [-enumParam <arg>]"));
+            assertTrue(help.contains("this is a test command\n"));
+            assertTrue(help.endsWith("v1.2.3\n"));
+            assertFalse(help.contains("\r"));
+
+            help = Help.render(CommandMetadata.forClass(SampleFilesCommand.class), "");
+            // The name of the command, and the optional arguments after the options
+            assertTrue(help.startsWith("usage:  files [-a] [FILE]...\n"));
+            assertTrue(help.endsWith("entries starting with .\n"));
+        } catch (CmdException e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testNoPrecomputedHelp() {
+        var out = new ByteArrayOutputStream();
+        assertFalse(Help.printPrecomputed(SampleCommand.class.getName(), new PrintStream(out, true, UTF_8)));
+        assertEquals(0, out.size());
+    }
+}
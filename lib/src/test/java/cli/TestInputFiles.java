@@ -0,0 +1,72 @@
+package cli;
+
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestInputFiles {
+
+    private static Path sampleFiles() throws IOException {
+        var dir = Files.createTempDirectory("input");
+        Files.writeString(dir.resolve("one.txt"), "a\nb\nc\n");
+        Files.writeString(dir.resolve("two.txt"), "d\ne\n");
+        return dir;
+    }
+
+    @Test
+    public void testCommand() {
+        try {
+            var dir = sampleFiles();
+            assertEquals(5, new EntryPoint().executeEntryPoint("cli.SampleInputCommand", dir, "one.txt", "two.txt"));
+            // Closed when the command returned
+            assertEquals(2, SampleInputCommand.channels.size());
+            SampleInputCommand.channels.forEach(c -> assertFalse(c.isOpen()));
+            // Every argument must be a readable file
+            assertThrowsExactly(CmdException.class,
+                () -> new EntryPoint().executeEntryPoint("cli.SampleInputCommand", dir, "one.txt", "three.txt"));
+            assertThrowsExactly(CmdException.class,
+                () -> new EntryPoint().executeEntryPoint("cli.SampleInputCommand", dir.getParent(), dir.getFileName().toString()));
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testConversions() {
+        try {
+            var dir = sampleFiles();
+            var args = List.of("one.txt", "two.txt");
+            FileChannel channel;
+            MappedByteBuffer buffer;
+            try (var files = InputFiles.open(dir)) {
+                assertEquals(List.of(dir.resolve("one.txt"), dir.resolve("two.txt")), InputFiles.of(Path.class, args));
+                channel = InputFiles.of(FileChannel.class, args).getFirst();
+                assertEquals(6, channel.size());
+                buffer = InputFiles.of(MappedByteBuffer.class, args).get(1);
+                assertEquals('d', buffer.get(0));
+                var segment = InputFiles.of(Class.forName("java.lang.foreign.MemorySegment"), args).getFirst();
+                assertTrue(segment.toString().contains("limit: 6"));
+            }
+            assertFalse(channel.isOpen());
+            // Unmapped
+            assertThrows(IllegalStateException.class, () -> buffer.get(0));
+            // Files are only opened for an invocation
+            assertThrowsExactly(ParseException.class, () -> InputFiles.of(FileChannel.class, args));
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+}
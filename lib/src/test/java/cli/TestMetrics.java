@@ -0,0 +1,97 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestMetrics {
+
+    @Test
+    public void testHistogram() {
+        // Every value falls in its bucket, and the buckets are contiguous
+        for (var value : new long[] { 0, 1, 7, 8, 15, 16, 17, 1_000, 123_456_789, Long.MAX_VALUE }) {
+            var i = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.lowerBound(i) <= value && value <= LatencyHistogram.upperBound(i));
+        }
+        for (var i = 1; i < LatencyHistogram.BUCKETS; i++) {
+            assertEquals(LatencyHistogram.upperBound(i - 1) + 1, LatencyHistogram.lowerBound(i));
+        }
+        var histogram = new LatencyHistogram();
+        for (var i = 1; i <= 1000; i++) histogram.record(i * 1_000L);
+        assertEquals(1000, histogram.count());
+        assertEquals(1_000_000, histogram.max());
+        assertEquals(500_500, histogram.mean());
+        // At most 12.5% above
+        var p50 = histogram.percentile(50);
+        assertTrue(p50 >= 500_000 && p50 <= 562_500);
+        assertEquals(1_000_000, histogram.percentile(100));
+    }
+
+    @Test
+    public void testCommands() {
+        Metrics.clear();
+        // The output of the command stays out of the log
+        StandardStreams.install();
+        var out = new ByteArrayOutputStream();
+        StandardStreams.route(new StandardStreams.Target(InputStream.nullInputStream(), out, new ByteArrayOutputStream()));
+        try (var executor = Executors.newFixedThreadPool(8)) {
+            var calls = new ArrayList<Future<Integer>>();
+            for (var i = 0; i < 40; i++) {
+                var item = Integer.toString(i);
+                calls.add(executor.submit(() ->
+                    new EntryPoint().executeEntryPoint("cli.SampleItemsCommand", Path.of(""), "-prefix", ">", item)
+                ));
+            }
+            for (var call : calls) call.get();
+            assertThrowsExactly(CmdException.class,
+                () -> new EntryPoint().executeEntryPoint("cli.SampleItemsCommand", Path.of(""), "-unknown"));
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        } finally {
+            StandardStreams.release();
+        }
+        assertTrue(out.toString(UTF_8).contains(">39"));
+        var stats = Metrics.forCommand("items");
+        assertEquals(41, stats.getInvocations());
+        // 0, 10, 20 and 30 end with 0, 1, 2 and 3
+        assertEquals(Map.of(0, 37L, 1, 1L, 2, 1L, 3, 1L, -1337, 1L), stats.getExitCodes());
+        assertEquals(Map.of(-1337, 1L), stats.getErrors());
+        assertEquals(41, stats.parse().count());
+        assertEquals(40, stats.bind().count());
+        assertEquals(40, stats.run().count());
+        var dump = Metrics.dump();
+        assertTrue(dump.contains("items.invocations=41"));
+        assertTrue(dump.contains("items.exit.2=1"));
+        assertTrue(dump.contains("items.run.count=40"));
+    }
+
+    @Test
+    public void testMBeans() {
+        try {
+            Metrics.clear();
+            Metrics.forCommand("items").failed(-1);
+            Metrics.registerMBeans();
+            var server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1L, server.getAttribute(Metrics.objectName("items"), "Invocations"));
+            Metrics.clear();
+            assertTrue(!server.isRegistered(Metrics.objectName("items")));
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package cli;
+
+import cli.annotations.OutputMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestOutputBuffering {
+
+    private void check(OutputMode mode) {
+        StandardStreams.install();
+        var captured = new ByteArrayOutputStream();
+        var target = new StandardStreams.Target(InputStream.nullInputStream(), captured, new ByteArrayOutputStream());
+        StandardStreams.route(target);
+        try {
+            var expected = new StringBuilder();
+            try (var output = OutputBuffering.open(mode)) {
+                for (var i = 0; i < 100_000; i++) {
+                    System.out.println(i);
+                    expected.append(i).append(System.lineSeparator());
+                }
+                // The last lines are still in the buffer
+                assertTrue(captured.size() < expected.length());
+                // Unless the command asks for them
+                System.out.flush();
+                assertEquals(expected.toString(), captured.toString(UTF_8));
+                System.out.print("last");
+            }
+            // Back to the streams of the enclosing invocation
+            assertSame(target, StandardStreams.current());
+            assertEquals(expected + "last", captured.toString(UTF_8));
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            StandardStreams.release();
+        }
+    }
+
+    @Test
+    public void testBuffered() {
+        check(OutputMode.BUFFERED);
+    }
+
+    @Test
+    public void testAsync() {
+        check(OutputMode.ASYNC);
+    }
+
+    @Test
+    public void testResolve() {
+        try {
+            var metadata = CommandMetadata.forName("cli.SampleCommand");
+            assertEquals(OutputMode.BUFFERED, OutputBuffering.resolve(metadata, " Buffered "));
+            assertEquals(OutputMode.ASYNC, OutputBuffering.resolve(metadata, "async"));
+            assertThrowsExactly(CmdException.class, () -> OutputBuffering.resolve(metadata, "fast"));
+            // Background commands always write directly
+            var background = CommandMetadata.forName("cli.SampleBackgroundApp");
+            assertEquals(OutputMode.DIRECT, OutputBuffering.resolve(background, "buffered"));
+        } catch (CmdException e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testFrameworkOption() {
+        StandardStreams.install();
+        var out = new ByteArrayOutputStream();
+        StandardStreams.route(new StandardStreams.Target(InputStream.nullInputStream(), out, new ByteArrayOutputStream()));
+        try {
+            var ret = new EntryPoint().executeEntryPoint(
+                "cli.SampleCommand", Path.of(""), "--output-mode=buffered", "-testParam", "buffered", "-enumParam", "foo"
+            );
+            assertEquals(0, ret);
+            // Flushed when the command returned
+            assertTrue(out.toString(UTF_8).contains("buffered"));
+            assertThrowsExactly(CmdException.class, () -> new EntryPoint().executeEntryPoint(
+                "cli.SampleCommand", Path.of(""), "--output-mode", "fast", "-testParam", "x"
+            ));
+        } catch (CmdException e) {
+            fail(e);
+        } finally {
+            StandardStreams.release();
+        }
+    }
+}
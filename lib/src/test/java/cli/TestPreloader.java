@@ -0,0 +1,46 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestPreloader {
+
+    static volatile boolean initialized = false;
+
+    static class Preloaded {
+        static {
+            initialized = true;
+        }
+    }
+
+    @Test
+    public void testPreload() throws IOException {
+        var dir = Files.createTempDirectory("preload");
+        var list = dir.resolve(Preloader.listName(SampleCommand.class.getName()));
+        assertEquals("cli.SampleCommand.classes", list.getFileName().toString());
+        Files.write(list, List.of(SampleCommand.class.getName(), "", "cli.NoSuchClass", Preloaded.class.getName()), UTF_8);
+        // The ones that are not there are skipped
+        assertEquals(2, Preloader.preload(list, getClass().getClassLoader()));
+        // Loaded, not initialized
+        assertFalse(initialized);
+        assertEquals(0, Preloader.preload(dir.resolve("missing.classes"), getClass().getClassLoader()));
+    }
+
+    @Test
+    public void testEnabled() {
+        assertTrue(Preloader.isEnabled(null, 4));
+        assertTrue(Preloader.isEnabled("true", 2));
+        assertFalse(Preloader.isEnabled(null, 1));
+        assertFalse(Preloader.isEnabled("false", 8));
+        assertFalse(Preloader.isEnabled(" OFF ", 8));
+        assertFalse(Preloader.isEnabled("0", 8));
+    }
+}
@@ -0,0 +1,72 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestRecordWriter {
+
+    private static String run(String... args) throws CmdException {
+        StandardStreams.install();
+        var out = new ByteArrayOutputStream();
+        StandardStreams.route(new StandardStreams.Target(InputStream.nullInputStream(), out, new ByteArrayOutputStream()));
+        try {
+            new EntryPoint().executeEntryPoint("cli.SampleRecordsCommand", Path.of(""), args);
+        } finally {
+            StandardStreams.release();
+        }
+        return out.toString(UTF_8);
+    }
+
+    @Test
+    public void testFormats() {
+        try {
+            assertEquals("a,b\t3\tfalse\n", run("a,b"));
+            assertEquals("{\"word\":\"a\\\"ñ\",\"length\":3,\"even\":false}\n", run("--output=ndjson", "a\"ñ"));
+            assertEquals("word,length,even\n\"a,\"\"b\"\"\",5,false\n", run("--output", "csv", "a,\"b\""));
+            assertEquals(-1, assertThrowsExactly(CmdException.class, () -> run("--output", "xml", "a")).getReturnCode());
+        } catch (CmdException e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testItems() {
+        try {
+            // A single header, before the first record, whatever item writes first
+            var words = IntStream.rangeClosed(1, 200).mapToObj(i -> "w".repeat(i % 13 + 1)).toList();
+            var expected = "word,length,even\n" + words.stream()
+                .map(w -> String.format("%s,%d,%b\n", w, w.length(), w.length() % 2 == 0))
+                .collect(Collectors.joining());
+            for (var jobs : List.of("1", "8")) {
+                var args = new ArrayList<>(List.of("--jobs", jobs, "--output", "csv"));
+                args.addAll(words);
+                assertEquals(expected, run(args.toArray(new String[0])));
+            }
+        } catch (CmdException e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testLargeOutput() {
+        try {
+            // More than the buffer, in a single record
+            var word = "x".repeat(200_000);
+            assertEquals("word,length,even\n" + word + ",200000,true\n", run("--output", "csv", word));
+        } catch (CmdException e) {
+            fail(e);
+        }
+    }
+}
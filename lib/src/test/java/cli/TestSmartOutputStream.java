@@ -0,0 +1,73 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestSmartOutputStream {
+
+    // Writes the same text through a smart stream, returns the capture
+    private String capture(SmartOutputStream stream, ByteArrayOutputStream passedThrough) throws IOException {
+        try (var ps = new PrintStream(stream, false, UTF_8)) {
+            ps.print("0123456789");
+            ps.write('a');
+            ps.print("bcdefghij");
+        }
+        assertEquals("0123456789abcdefghij", passedThrough.toString(UTF_8));
+        assertEquals(20, stream.getWrittenBytes());
+        var ret = stream.getCapture(UTF_8);
+        var copy = new ByteArrayOutputStream();
+        assertEquals(ret.length(), stream.writeCaptureTo(copy));
+        assertEquals(ret, copy.toString(UTF_8));
+        return ret;
+    }
+
+    @Test
+    public void testUnbounded() {
+        try {
+            var out = new ByteArrayOutputStream();
+            var baos = new ByteArrayOutputStream();
+            assertEquals("0123456789abcdefghij", capture(new SmartOutputStream(out, baos), out));
+            assertEquals("0123456789abcdefghij", baos.toString(UTF_8));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testPolicies() {
+        try {
+            var out = new ByteArrayOutputStream();
+            var head = new SmartOutputStream(out, 12, SmartOutputStream.Policy.HEAD);
+            assertEquals("0123456789ab", capture(head, out));
+            assertTrue(head.isTruncated());
+
+            out = new ByteArrayOutputStream();
+            var tail = new SmartOutputStream(out, 12, SmartOutputStream.Policy.TAIL);
+            assertEquals("89abcdefghij", capture(tail, out));
+            assertTrue(tail.isTruncated());
+
+            out = new ByteArrayOutputStream();
+            var big = new SmartOutputStream(out, 100, SmartOutputStream.Policy.TAIL);
+            assertEquals("0123456789abcdefghij", capture(big, out));
+            assertFalse(big.isTruncated());
+
+            out = new ByteArrayOutputStream();
+            var spill = new SmartOutputStream(out, 12, SmartOutputStream.Policy.SPILL);
+            assertEquals("0123456789abcdefghij", capture(spill, out));
+            assertFalse(spill.isTruncated());
+            spill.discard();
+            assertEquals(0, spill.getCapturedBytes());
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+}
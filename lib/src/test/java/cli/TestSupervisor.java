@@ -0,0 +1,126 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestSupervisor {
+
+    @Test
+    public void testSingleInstance() {
+        try {
+            var dir = Files.createTempDirectory("supervisor");
+            var supervisor = Supervisor.open("sample", dir, Duration.ofSeconds(1), code -> { });
+            try {
+                assertEquals(Long.toString(ProcessHandle.current().pid()), Files.readString(dir.resolve("pid")));
+                var e = assertThrowsExactly(CmdException.class,
+                    () -> Supervisor.open("sample", dir, Duration.ofSeconds(1), code -> { }));
+                assertEquals(-1, e.getReturnCode());
+                assertTrue(e.getMessage().contains("already running"));
+            } finally {
+                supervisor.shutdown();
+            }
+            // Released when the first one ends
+            Supervisor.open("sample", dir, Duration.ofSeconds(1), code -> { }).shutdown();
+            assertTrue(Files.notExists(dir.resolve("pid")));
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testPrivateDirectory() {
+        try {
+            var base = Files.createTempDirectory("supervisor");
+            var user = base.resolve("cli-" + System.getProperty("user.name"));
+            var dir = user.resolve("sample");
+            Supervisor.open("sample", dir, Duration.ofSeconds(1), code -> { }).shutdown();
+            assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(user)));
+            assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(dir)));
+            // Only root can give it away
+            try {
+                Files.setOwner(user, user.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName("nobody"));
+            } catch (IOException e) {
+                return;
+            }
+            var e = assertThrowsExactly(CmdException.class,
+                () -> Supervisor.open("sample", dir, Duration.ofSeconds(1), code -> { }));
+            assertEquals(-1, e.getReturnCode());
+            assertTrue(e.getMessage().contains("belongs to nobody"));
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testStatus() {
+        try {
+            var dir = Files.createTempDirectory("supervisor");
+            var supervisor = Supervisor.open("sample", dir, Duration.ofSeconds(1), code -> { });
+            try {
+                var status = Supervisor.send(dir, "status");
+                assertTrue(status.contains("command=sample"));
+                assertTrue(status.contains("state=running"));
+                assertTrue(status.contains("heap.used="));
+                assertTrue(status.contains("threads="));
+                // Also written to the status file
+                for (var i = 0; i < 50 && Files.notExists(dir.resolve("status")); i++) Thread.sleep(100);
+                assertTrue(Files.readString(dir.resolve("status")).contains("pid=" + ProcessHandle.current().pid()));
+            } finally {
+                supervisor.shutdown();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @Test
+    public void testStop() {
+        try {
+            stop(dir -> assertEquals("stopping\n", Supervisor.send(dir, "stop")));
+            stop(dir -> Files.createFile(dir.resolve("stop")));
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        void send(Path dir) throws Exception;
+    }
+
+    private static void stop(Request request) throws Exception {
+        var dir = Files.createTempDirectory("supervisor");
+        var order = new CopyOnWriteArrayList<String>();
+        Supervisor.stopActions.add(() -> order.add("first"));
+        Supervisor.stopActions.add(() -> order.add("second"));
+        var exit = new CompletableFuture<Integer>();
+        var supervisor = Supervisor.open("sample", dir, Duration.ofSeconds(1), exit::complete);
+        try {
+            request.send(dir);
+            assertEquals(0, exit.get(5, TimeUnit.SECONDS));
+            // In reverse order
+            assertEquals(List.of("second", "first"), order);
+        } finally {
+            Supervisor.stopActions.clear();
+            supervisor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestTracer {
+
+    private static final Logger logger = Logger.getLogger(Tracer.class.getName());
+
+    private static String write(boolean chrome) {
+        var out = new ByteArrayOutputStream();
+        Tracer.write(new PrintStream(out, true, UTF_8), chrome);
+        return out.toString(UTF_8);
+    }
+
+    @Test
+    public void testDisabled() {
+        var level = logger.getLevel();
+        // Spans are logged at FINE level: keep them out of the way
+        logger.setLevel(Level.INFO);
+        Tracer.clear();
+        try {
+            Tracer.setRecording(false);
+            assertFalse(Tracer.isEnabled());
+            // The same span that does nothing, every time
+            try (var a = Tracer.span("a"); var b = Tracer.span("b")) {
+                assertSame(a, b);
+            }
+            assertEquals("{\"spans\":[]\n}\n", write(false).replace(System.lineSeparator(), "\n"));
+        } finally {
+            Tracer.setRecording(false);
+            Tracer.clear();
+            logger.setLevel(level);
+        }
+    }
+
+    @Test
+    public void testNesting() {
+        var level = logger.getLevel();
+        logger.setLevel(Level.INFO);
+        Tracer.clear();
+        try {
+            Tracer.setRecording(true);
+            assertTrue(Tracer.isEnabled());
+            try (var outer = Tracer.span("outer")) {
+                try (var inner = Tracer.span("inner")) {
+                    // Closing twice has no effect
+                    inner.close();
+                }
+                try (var second = Tracer.span("second")) {
+                    var thread = Thread.ofPlatform().name("other").start(() -> Tracer.span("other").close());
+                    thread.join();
+                } catch (InterruptedException e) {
+                    fail(e);
+                }
+            }
+            Tracer.span("after").close();
+            var json = write(false);
+            var outer = json.indexOf("\"name\":\"outer\"");
+            var inner = json.indexOf("\"name\":\"inner\"");
+            var second = json.indexOf("\"name\":\"second\"");
+            var after = json.indexOf("\"name\":\"after\"");
+            assertTrue(outer >= 0 && outer < inner && inner < second && second < after, json);
+            // Children are indented one level further than their parent
+            assertTrue(json.contains("\n  {\"name\":\"outer\""), json);
+            assertTrue(json.contains("\n    {\"name\":\"inner\""), json);
+            assertTrue(json.contains("\n    {\"name\":\"second\""), json);
+            assertTrue(json.contains("\n  {\"name\":\"after\""), json);
+            // Another thread starts its own tree
+            assertTrue(json.contains("\n  {\"name\":\"other\",\"thread\":\"other\""), json);
+        } finally {
+            Tracer.setRecording(false);
+            Tracer.clear();
+            logger.setLevel(level);
+        }
+    }
+
+    @Test
+    public void testChrome() {
+        var level = logger.getLevel();
+        logger.setLevel(Level.INFO);
+        Tracer.clear();
+        try {
+            Tracer.setRecording(true);
+            try (var span = Tracer.span("say \"hi\"\n")) {
+                Tracer.span("child").close();
+            }
+            var chrome = write(true);
+            assertTrue(chrome.startsWith("{\"traceEvents\":["), chrome);
+            assertTrue(chrome.contains("{\"name\":\"say \\\"hi\\\"\\n\",\"ph\":\"X\",\"ts\":0.000,"), chrome);
+            assertTrue(chrome.contains("{\"name\":\"child\",\"ph\":\"X\","), chrome);
+            assertTrue(chrome.contains("\"pid\":" + ProcessHandle.current().pid()), chrome);
+            assertTrue(chrome.strip().endsWith("],\"displayTimeUnit\":\"ms\"}"), chrome);
+        } finally {
+            Tracer.setRecording(false);
+            Tracer.clear();
+            logger.setLevel(level);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package cli;
 
-import cli.annotations.Command;
+import cli.CommandScanner.CommandClass;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -8,19 +9,37 @@ import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
-import org.reflections.Reflections;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.attribute.PosixFileAttributes;
 import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Pattern;
 
 import static java.nio.file.Files.readAttributes;
 import static java.nio.file.Files.setPosixFilePermissions;
@@ -32,20 +51,88 @@ import static java.nio.file.attribute.PosixFilePermission.OWNER_EXECUTE;
 import static java.nio.file.attribute.PosixFilePermission.OWNER_READ;
 import static java.nio.file.attribute.PosixFilePermission.OWNER_WRITE;
 
-@Mojo(name = "generate-files", defaultPhase = LifecyclePhase.PREPARE_PACKAGE)
+@Mojo(
+    name = "generate-files",
+    defaultPhase = LifecyclePhase.PREPARE_PACKAGE,
+    requiresDependencyResolution = ResolutionScope.COMPILE
+)
 public class CliGeneratorMojo extends AbstractMojo {
 
     @Parameter(defaultValue = "${project}", required = true, readonly = true)
     MavenProject project;
 
-    private String toString(InputStream is) {
-        var ret = "";
-        try {
-            ret = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
+    /**
+     * Generate class-data-sharing archives with a training run of the commands.  The training runs against
+     * redist/libs, so the goal must be executed once the libraries have been copied there.
+     */
+    @Parameter(property = "cli.cds", defaultValue = "false")
+    boolean cds;
+
+    /** "project" for a single archive shared by every command, "command" for one archive per command */
+    @Parameter(property = "cli.cds.mode", defaultValue = CDS_PROJECT)
+    String cdsMode;
+
+    /**
+     * Record the classes every command loads in a training run, so that the scripts preload them on a background
+     * thread (see cli.Preloader).  Like the archives, the training runs against redist/libs.
+     */
+    @Parameter(property = "cli.preload", defaultValue = "false")
+    boolean preload;
+
+    /** Render the help of the commands into resources, so that --help does not load commons-cli or the command */
+    @Parameter(property = "cli.help", defaultValue = "true")
+    boolean precomputeHelp;
+
+    /**
+     * Name of the dispatcher script, which launches any command by its name (or alias) as first argument; no
+     * dispatcher script is generated if it is empty
+     */
+    @Parameter(property = "cli.dispatcher", defaultValue = "${project.artifactId}")
+    String dispatcher;
+
+    /**
+     * JDK used for the training runs - it must be the same the scripts will run with - and to build the runtime
+     * image
+     */
+    @Parameter(property = "cli.cds.javaHome", defaultValue = "${java.home}")
+    File javaHome;
+
+    /**
+     * Build into redist/runtime a runtime image with just the modules the libraries need (found by jdeps), without
+     * debug information and with its own class-data-sharing archive; the scripts run with it when it is there.
+     * Like the training, it runs against redist/libs.
+     */
+    @Parameter(property = "cli.runtime", defaultValue = "false")
+    boolean runtime;
+
+    /**
+     * Modules to add to the runtime image besides the ones jdeps finds, comma-separated: the ones only used through
+     * reflection or services, such as jdk.localedata
+     */
+    @Parameter(property = "cli.runtime.modules")
+    String runtimeModules;
+
+    private static final String CDS_PROJECT = "project";
+    private static final String CDS_COMMAND = "command";
+    // Name of the archive shared by every command
+    private static final String PROJECT_ARCHIVE = "cli.jsa";
+    // Directory of the runtime image, next to the scripts
+    private static final String RUNTIME = "runtime";
+    // Module name: Java identifiers separated by dots
+    private static final Pattern MODULE_NAME =
+        Pattern.compile("\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*(\\.\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*)*");
+    // Files written by the last generation, whatever its configuration
+    private static final String OUTPUTS = "cli-generator/outputs";
+    // Resources written by this goal into the output directory
+    private static final String GENERATED_RESOURCES = "META-INF/cli";
+
+    // Files written by the current execution
+    private final List<File> outputs = Collections.synchronizedList(new ArrayList<>());
+
+    private static String toString(InputStream is) throws IOException {
+        try (is) {
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
         }
-        return ret;
     }
 
     private void makeExecutable(File f) throws IOException {
@@ -66,50 +153,522 @@ public class CliGeneratorMojo extends AbstractMojo {
         }
     }
 
+    // Name of the class-data-sharing archive a command script looks for, next to the script
+    private String archiveName(String commandName) {
+        return CDS_COMMAND.equals(cdsMode) ? commandName + ".jsa" : PROJECT_ARCHIVE;
+    }
+
+    // Runs the training for the commands, dumping the classes they load into dynamic archives and/or the
+    //  lists of classes to preload
+    private void generateTrainingFiles(List<CommandClass> commands, File scriptsDir) {
+        var libs = libs(scriptsDir);
+        var jars = libs.listFiles((dir, name) -> name.endsWith(".jar"));
+        if (jars == null || jars.length == 0) {
+            getLog().warn(String.format("Skipping the training of the commands: no libraries found in %s", libs));
+            return;
+        }
+        var archivePerCommand = cds && CDS_COMMAND.equals(cdsMode);
+        if (archivePerCommand || preload) {
+            // A single training run per command for both
+            for (var command : commands) {
+                var classList = preload
+                    ? new File(project.getBuild().getDirectory(), "cli-generator/" + command.className() + ".classlist")
+                    : null;
+                train(
+                    archivePerCommand ? new File(scriptsDir, archiveName(command.command())) : null,
+                    classList,
+                    libs,
+                    command.jvmArgs(),
+                    List.of(command.className())
+                );
+                if (classList != null && classList.isFile())
+                    writePreloadList(classList, jars, new File(scriptsDir, Preloader.listName(command.className())));
+            }
+        }
+        if (cds && !archivePerCommand) {
+            train(
+                new File(scriptsDir, PROJECT_ARCHIVE),
+                null,
+                libs,
+                "",
+                commands.stream().map(CommandClass::className).sorted().toList()
+            );
+        }
+    }
+
+    // Keeps, out of the classes loaded in a training run, the ones in the libraries (the ones of the JDK are
+    //  already in its default archive), in the order they were loaded
+    void writePreloadList(File classList, File[] jars, File list) {
+        try {
+            var entries = new HashSet<String>();
+            for (var jar : jars) {
+                try (var file = new JarFile(jar)) {
+                    file.stream().map(JarEntry::getName).filter(n -> n.endsWith(".class")).forEach(entries::add);
+                }
+            }
+            var names = new LinkedHashSet<String>();
+            for (var line : Files.readAllLines(classList.toPath(), StandardCharsets.UTF_8)) {
+                // Comments, lambda proxies and the like
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith("@")) continue;
+                var name = line.split(" ", 2)[0];
+                if (entries.contains(name + ".class")) names.add(name.replace('/', '.'));
+            }
+            names.remove("cli.Training");
+            var text = new StringBuilder();
+            for (var name : names) text.append(name).append('\n');
+            writeIfChanged(list, text.toString());
+            getLog().info(String.format("Generated preload list %s (%d classes)", list.getName(), names.size()));
+        } catch (IOException ioe) {
+            getLog().warn(String.format("Could not generate %s", list.getName()), ioe);
+        }
+    }
+
+    private static File libs(File scriptsDir) {
+        return new File(scriptsDir.getParentFile(), "libs");
+    }
+
+    private static File runtimeImage(File scriptsDir) {
+        return new File(scriptsDir.getParentFile(), RUNTIME);
+    }
+
+    // JVM of the training runs: the one the scripts will run with
+    File java(File libs) {
+        var image = new File(libs.getParentFile(), RUNTIME);
+        return new File(runtime && image.isDirectory() ? image : javaHome, "bin/java");
+    }
+
+    // Builds the runtime image with the modules the libraries need
+    private void generateRuntime(File scriptsDir) {
+        var libs = libs(scriptsDir);
+        var image = runtimeImage(scriptsDir);
+        deleteRuntime(image);
+        var jars = libs.listFiles((dir, name) -> name.endsWith(".jar"));
+        if (jars == null || jars.length == 0) {
+            getLog().warn(String.format("Skipping the runtime image: no libraries found in %s", libs));
+            return;
+        }
+        var jdeps = new ArrayList<>(List.of(
+            new File(javaHome, "bin/jdeps").getAbsolutePath(),
+            "--ignore-missing-deps",
+            "--print-module-deps",
+            "--multi-release", release()
+        ));
+        for (var jar : jars) jdeps.add(jar.getAbsolutePath());
+        var output = run(jdeps, libs);
+        if (output == null) return;
+        // The modules are on the last line of the output; anything that is not a module name is left out of jlink
+        var lines = output.strip().lines().toList();
+        var found = moduleNames(lines.isEmpty() ? "" : lines.getLast());
+        if (found.isEmpty()) {
+            getLog().warn(String.format("Skipping the runtime image: jdeps did not print the modules:%n%s", output));
+            return;
+        }
+        var modules = new TreeSet<>(found);
+        modules.add("java.base");
+        if (runtimeModules != null) modules.addAll(moduleNames(runtimeModules));
+        // Not compressed: the modules are mapped as they are at startup
+        var jlink = List.of(
+            new File(javaHome, "bin/jlink").getAbsolutePath(),
+            "--add-modules", String.join(",", modules),
+            "--strip-debug",
+            "--no-header-files",
+            "--no-man-pages",
+            "--generate-cds-archive",
+            "--output", image.getAbsolutePath()
+        );
+        if (run(jlink, libs) != null) {
+            getLog().info(String.format("Generated runtime image %s with %s", image.getName(), String.join(", ", modules)));
+            outputs.add(image);
+        }
+    }
+
+    // Valid module names in a comma-separated list, warning about the rest
+    List<String> moduleNames(String list) {
+        var ret = new ArrayList<String>();
+        for (var token : list.split(",")) {
+            var name = token.trim();
+            if (name.isEmpty()) continue;
+            if (MODULE_NAME.matcher(name).matches()) ret.add(name);
+            else getLog().warn(String.format("Ignoring %s: it is not a module name", name));
+        }
+        return ret;
+    }
+
+    // Feature release of the JDK in javaHome, for the multi-release jars
+    private String release() {
+        try (var is = new FileInputStream(new File(javaHome, "release"))) {
+            var properties = new Properties();
+            properties.load(is);
+            var version = properties.getProperty("JAVA_VERSION", "").replace("\"", "");
+            if (!version.isEmpty()) return version.split("\\.")[0];
+        } catch (IOException ioe) {
+            getLog().debug(String.format("Could not read the release of %s", javaHome));
+        }
+        return String.valueOf(Runtime.version().feature());
+    }
+
+    private void deleteRuntime(File image) {
+        if (!image.exists()) return;
+        try (var files = Files.walk(image.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile).forEach(file -> {
+                // jlink writes some files read-only
+                file.setWritable(true);
+                file.delete();
+            });
+        } catch (IOException ioe) {
+            getLog().warn(String.format("Could not delete %s", image), ioe);
+        }
+    }
+
+    // Runs a JDK tool, returning its standard output, or null if it failed.  Its warnings go to the build log
+    private String run(List<String> commandLine, File directory) {
+        var tool = new File(commandLine.getFirst()).getName();
+        File errors = null;
+        try {
+            errors = File.createTempFile(tool, ".err");
+            var process = new ProcessBuilder(commandLine)
+                .directory(directory)
+                .redirectError(errors)
+                .start();
+            var output = toString(process.getInputStream());
+            var failed = process.waitFor() != 0;
+            var warnings = Files.readString(errors.toPath()).strip();
+            if (!failed) {
+                if (!warnings.isEmpty()) getLog().debug(String.format("%s:%n%s", tool, warnings));
+                return output;
+            }
+            getLog().warn(String.format("%s failed:%n%s%n%s", tool, output, warnings));
+        } catch (IOException ioe) {
+            getLog().warn(String.format("Could not run %s", tool), ioe);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (errors != null) errors.delete();
+        }
+        return null;
+    }
+
+    // Renders the help of every command into the output directory, under the name the scripts pass to the
+    //  entry point.  This is the only step that loads the command classes
+    private void generateHelp(List<CommandClass> commands, File classes, ClassLoader loader) {
+        var properties = new File(classes, "cli.properties");
+        var version = "";
+        if (properties.isFile()) {
+            try {
+                version = Help.readVersion(new FileInputStream(properties));
+            } catch (IOException ioe) {
+                getLog().warn(String.format("Could not read %s", properties), ioe);
+            }
+        }
+        for (var command : commands) {
+            var file = new File(classes, Help.resourceName(command.className()));
+            try {
+                var metadata = CommandMetadata.forClass(Class.forName(command.binaryName(), false, loader));
+                writeIfChanged(file, Help.render(metadata, version));
+            } catch (CmdException | IOException | ClassNotFoundException | LinkageError e) {
+                // The help of a previous build would replace the one rendered at runtime
+                file.delete();
+                getLog().warn(String.format("Could not generate the help of %s", command.className()), e);
+            }
+        }
+    }
+
+    // Class loader of the commands: the output directory and the compile dependencies of the project, over the
+    //  plugin, whose library classes the commands share.  One per execution, since the plugin realm is shared
+    //  by every module of the build
+    private URLClassLoader commandLoader(File classes) throws MojoExecutionException, IOException {
+        var urls = new LinkedHashSet<URL>();
+        urls.add(classes.toURI().toURL());
+        try {
+            for (var element : project.getCompileClasspathElements()) urls.add(new File(element).toURI().toURL());
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MojoExecutionException("Could not resolve the dependencies of the commands", e);
+        }
+        return new URLClassLoader(urls.toArray(new URL[0]), getClass().getClassLoader());
+    }
+
+    // Writes the index of the commands into the output directory, so that the entry point can find them by name
+    private void generateIndex(List<CommandClass> commands, File classes) throws IOException {
+        var entries = new ArrayList<CommandIndex.Entry>();
+        var names = new HashMap<String, String>();
+        for (var command : commands) {
+            var entry = new CommandIndex.Entry(
+                command.command(),
+                command.className(),
+                command.aliases(),
+                command.background(),
+                command.description()
+            );
+            var entryNames = new ArrayList<String>();
+            entryNames.add(entry.command());
+            entryNames.addAll(entry.aliases());
+            for (var name : entryNames) {
+                // Only one of them can be launched by that name
+                var previous = names.putIfAbsent(name, entry.className());
+                if (previous != null)
+                    getLog().warn(String.format("Both %s and %s are named %s", previous, entry.className(), name));
+            }
+            entries.add(entry);
+        }
+        entries.sort(Comparator.comparing(CommandIndex.Entry::command).thenComparing(CommandIndex.Entry::className));
+        var text = new StringWriter();
+        CommandIndex.write(entries, text);
+        writeIfChanged(new File(classes, CommandIndex.RESOURCE), text.toString());
+    }
+
+    // Values of the placeholders of the script templates
+    private static Map<String, String> scriptValues(String commandClass, String command, String jvmArgs, String archive, boolean background) {
+        return Map.of(
+            "COMMAND_CLASS", commandClass,
+            "COMMAND", command,
+            "JVM_ARGS", jvmArgs.trim(),
+            "CDS_ARCHIVE", archive,
+            "START_COMMAND", background ? "start" : "",
+            // Background apps are not run by the daemon
+            "DAEMON", background ? "false" : "true",
+            // Supervised, see cli.Supervisor; windows has no terminal to detach from with javaw
+            "BACKGROUND", background ? "true" : "false",
+            "JAVA_COMMAND", background ? "javaw" : "java"
+        );
+    }
+
+    // Writes a file, unless it already has that content (so that its modification time does not change)
+    boolean writeIfChanged(File file, String text) throws IOException {
+        var path = file.toPath();
+        var bytes = text.getBytes(StandardCharsets.UTF_8);
+        outputs.add(file);
+        if (Files.isRegularFile(path) && Files.size(path) == bytes.length && Arrays.equals(Files.readAllBytes(path), bytes))
+            return false;
+        file.getParentFile().mkdirs();
+        Files.write(path, bytes);
+        return true;
+    }
+
+    private boolean writeScript(File script, String text) throws IOException {
+        var written = writeIfChanged(script, text);
+        if (written || !script.canExecute()) makeExecutable(script);
+        return written;
+    }
+
+    // Writes the scripts of every command (and the dispatcher) in parallel
+    private void generateScripts(List<CommandClass> commands, File scriptsDir) throws IOException {
+        var scripts = new ArrayList<Script>();
+        for (String templateName: List.of("template.bat", "template.sh")) {
+            var resource = CliGeneratorMojo.class.getClassLoader().getResourceAsStream(templateName);
+            if (resource == null) throw new IOException(String.format("Missing script template %s", templateName));
+            var template = ScriptTemplate.compile(toString(resource));
+            var extension = templateName.substring(templateName.lastIndexOf(".") + 1);
+            for (var command : commands) {
+                // For every annotated class, create a file based on the template
+                // Optimization: let the entry point get straight the class name,
+                //	we are making the work in advance!
+                scripts.add(new Script(
+                    new File(scriptsDir, command.command() + "." + extension),
+                    template,
+                    scriptValues(command.className(), command.command(), command.jvmArgs(), archiveName(command.command()), command.background())
+                ));
+            }
+            if (dispatcher != null && !dispatcher.isBlank()) {
+                if (commands.stream().anyMatch(c -> dispatcher.equals(c.command()))) {
+                    getLog().warn(String.format("Not generating the dispatcher script: there is a command named %s", dispatcher));
+                } else {
+                    // Any command, by its name: no command class, no specific jvm arguments
+                    scripts.add(new Script(
+                        new File(scriptsDir, dispatcher + "." + extension),
+                        template,
+                        scriptValues("", "", "", PROJECT_ARCHIVE, false)
+                    ));
+                }
+            }
+        }
+        var written = new AtomicInteger();
+        try {
+            scripts.parallelStream().forEach(script -> {
+                try {
+                    if (writeScript(script.file(), script.template().render(script.values()))) written.incrementAndGet();
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+            });
+        } catch (UncheckedIOException uioe) {
+            throw uioe.getCause();
+        }
+        getLog().info(String.format("Wrote %d scripts, %d unchanged", written.get(), scripts.size() - written.get()));
+    }
+
+    private record Script(File file, ScriptTemplate template, Map<String, String> values) { }
+
+    // Deletes the files the previous generation wrote and this one did not (the scripts, archives and preload lists
+    //  of the commands that are gone, for instance), and records the ones written this time
+    private void deleteStaleFiles(File record) {
+        var current = new LinkedHashSet<String>();
+        synchronized (outputs) {
+            outputs.stream().map(File::getAbsolutePath).forEach(current::add);
+        }
+        try {
+            if (record.isFile()) {
+                for (var name : Files.readAllLines(record.toPath(), StandardCharsets.UTF_8)) {
+                    var file = new File(name);
+                    if (current.contains(name) || !file.isFile()) continue;
+                    // The JVM writes archives read-only
+                    file.setWritable(true);
+                    if (file.delete()) getLog().info(String.format("Deleted stale %s", file.getName()));
+                    else getLog().warn(String.format("Could not delete stale %s", file));
+                }
+            }
+            record.getParentFile().mkdirs();
+            Files.write(record.toPath(), current, StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            getLog().warn(String.format("Could not update %s", record), ioe);
+        }
+    }
+
+    // Command line of a training run, writing the archive and/or the list of the classes loaded (either can be null)
+    List<String> trainingCommandLine(File archive, File classList, File libs, String jvmArgs, List<String> commandClasses) {
+        var ret = new ArrayList<String>();
+        ret.add(java(libs).getAbsolutePath());
+        if (archive != null) ret.add("-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath());
+        if (classList != null) ret.add("-XX:DumpLoadedClassList=" + classList.getAbsolutePath());
+        // Same class path the scripts use
+        ret.add("-cp");
+        ret.add(libs.getAbsolutePath() + File.separator + "*");
+        if (!jvmArgs.isBlank()) ret.addAll(Arrays.asList(jvmArgs.trim().split("\\s+")));
+        ret.add("-Djava.util.logging.config.class=cli.LogUtils");
+        ret.add("cli.Training");
+        ret.addAll(commandClasses);
+        return ret;
+    }
+
+    // Runs the training, writing the archive and/or the list of the classes loaded (either can be null)
+    private void train(File archive, File classList, File libs, String jvmArgs, List<String> commandClasses) {
+        var commandLine = trainingCommandLine(archive, classList, libs, jvmArgs, commandClasses);
+        var files = new ArrayList<File>();
+        if (archive != null) files.add(archive);
+        if (classList != null) {
+            files.add(classList);
+            classList.getParentFile().mkdirs();
+        }
+        var names = files.stream().map(File::getName).toList();
+        try {
+            for (var file : files) {
+                // The JVM writes archives read-only
+                file.setWritable(true);
+                file.delete();
+            }
+            var process = new ProcessBuilder(commandLine)
+                .directory(libs)
+                .redirectErrorStream(true)
+                .start();
+            var output = toString(process.getInputStream());
+            if (process.waitFor() != 0 || !files.stream().allMatch(File::isFile)) {
+                getLog().warn(String.format("Could not generate %s:%n%s", String.join(", ", names), output));
+                // Not a valid list if the training failed
+                if (classList != null) classList.delete();
+            } else if (archive != null) {
+                getLog().info(String.format("Generated class-data-sharing archive %s", archive.getName()));
+                outputs.add(archive);
+            }
+        } catch (IOException ioe) {
+            getLog().warn(String.format("Could not run the training for %s", String.join(", ", names)), ioe);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Configuration the generated files depend on, besides the classes
+    private String configuration(PluginDescriptor pluginDescriptor, File scriptsDir) throws IOException {
+        var ret = String.join("\n",
+            pluginDescriptor.getVersion(),
+            "cds=" + cds,
+            "cdsMode=" + cdsMode,
+            "preload=" + preload,
+            "precomputeHelp=" + precomputeHelp,
+            "dispatcher=" + dispatcher,
+            "javaHome=" + javaHome,
+            "runtime=" + runtime,
+            "runtimeModules=" + runtimeModules
+        );
+        // The archives, the preload lists and the runtime image depend on the libraries as well
+        if (cds || preload || runtime) ret += "\nlibs=" + new CommandScanner(libs(scriptsDir).toPath()).fingerprint("");
+        return ret;
+    }
+
+    // True if the fingerprint is the one of the last generation and its outputs are still there
+    private static boolean isUpToDate(File cache, String fingerprint) {
+        if (!cache.isFile()) return false;
+        try {
+            var lines = Files.readAllLines(cache.toPath(), StandardCharsets.UTF_8);
+            return !lines.isEmpty()
+                && lines.getFirst().equals(fingerprint)
+                && lines.stream().skip(1).allMatch(f -> new File(f).exists());
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    private void writeCache(File cache, String fingerprint) {
+        try {
+            cache.getParentFile().mkdirs();
+            var lines = new ArrayList<String>();
+            lines.add(fingerprint);
+            synchronized (outputs) {
+                outputs.stream().map(File::getAbsolutePath).distinct().forEach(lines::add);
+            }
+            Files.write(cache.toPath(), lines, StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            getLog().warn(String.format("Could not write %s", cache), ioe);
+        }
+    }
+
     public void execute() throws MojoExecutionException, MojoFailureException {
         var pluginDescriptor = (PluginDescriptor) getPluginContext().get("pluginDescriptor");
-        var classRealm = pluginDescriptor.getClassRealm();
         var classes = new File(project.getBuild().getOutputDirectory());
+        var scriptsDir = new File(project.getBuild().getDirectory(), "redist/scripts");
+        var scanner = new CommandScanner(classes.toPath());
+        outputs.clear();
         try {
-            classRealm.addURL(classes.toURI().toURL());
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
-        }
-        try {
-            Class clazz = Class.forName("cli.annotations.Command");
-            // Scan for the annotated classes
-            Set<Class<?>> commands = new Reflections().getTypesAnnotatedWith(clazz);
-            for (Class<?> eachClazz: commands) {
-                if (eachClazz != null) getLog().info(String.format("Generating scripts for %s", eachClazz));
+            var start = System.nanoTime();
+            // Our own outputs are not part of the fingerprint
+            var configuration = configuration(pluginDescriptor, scriptsDir);
+            var fingerprint = scanner.fingerprint(configuration, GENERATED_RESOURCES);
+            var cache = new File(
+                project.getBuild().getDirectory(),
+                String.format("cli-generator/%08x.fingerprint", configuration.hashCode())
+            );
+            if (isUpToDate(cache, fingerprint)) {
+                getLog().info("Commands unchanged since the last build, nothing to generate");
+                return;
+            }
+            // Read the annotations straight from the class files of this module
+            var result = scanner.scan();
+            for (var problem : result.problems()) {
+                getLog().warn(String.format("Could not read %s: %s", problem.file(), problem.message()));
+            }
+            var commands = result.commands();
+            getLog().info(String.format("Found %d commands in %d class files (%d ms)",
+                commands.size(), result.classFiles(), (System.nanoTime() - start) / 1_000_000));
+            for (var command : commands) {
+                getLog().debug(String.format("Generating scripts for %s", command.className()));
             }
-            File scriptsDir = new File(project.getBuild().getDirectory(), "redist/scripts");
             scriptsDir.mkdirs();
-            for (String templateName: List.of("template.bat", "template.sh")) {
-                var templateContent = toString(CliGeneratorMojo.class.getClassLoader().getResourceAsStream(templateName));
-                for (Class<?> command : commands) {
-                    var extension = templateName.substring(templateName.lastIndexOf(".") + 1);
-                    // For every annotated class, create a file based on the template
-                    var annotation = (Command) command.getAnnotation(clazz);
-                    var commandName = annotation.command();
-                    // Optimization: let the entry point get straight the class name,
-                    //	we are making the work in advance!
-                    var commandClass = command.getCanonicalName();
-                    var jvmArgs = annotation.jvmArgs();
-                    var script = new File(scriptsDir, commandName + "." + extension);
-                    script.createNewFile();
-                    var formattedText = templateContent.
-                        replaceAll("<<COMMAND_CLASS>>", commandClass).
-                        replaceAll("<<JVM_ARGS>>", jvmArgs.trim()).
-                        replaceAll("<<START_COMMAND>>", annotation.isBackground() ? "start" : "").
-                        replaceAll("<<JAVA_COMMAND>>", annotation.isBackground() ? "javaw" : "java");
-                    Files.write(script.toPath(), formattedText.getBytes(StandardCharsets.UTF_8));
-                    makeExecutable(script);
+            generateScripts(commands, scriptsDir);
+            generateIndex(commands, classes);
+            if (precomputeHelp && !commands.isEmpty()) {
+                try (var loader = commandLoader(classes)) {
+                    generateHelp(commands, classes, loader);
                 }
             }
-        } catch (ClassNotFoundException cnfe) {
-            cnfe.printStackTrace();
+            // Before the training: the archives are only valid for the JVM that created them
+            if (runtime) generateRuntime(scriptsDir);
+            else if (runtimeImage(scriptsDir).exists()) {
+                deleteRuntime(runtimeImage(scriptsDir));
+                getLog().info(String.format("Deleted stale %s", RUNTIME));
+            }
+            if (cds || preload) generateTrainingFiles(commands, scriptsDir);
+            deleteStaleFiles(new File(project.getBuild().getDirectory(), OUTPUTS));
+            writeCache(cache, fingerprint);
         } catch (IOException ioe) {
-            ioe.printStackTrace();
+            throw new MojoExecutionException(String.format("Could not generate the scripts in %s", scriptsDir), ioe);
         }
     }
 }
@@ -0,0 +1,295 @@
+package cli;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Finds the command classes of a directory of compiled classes.  The Command annotations are read straight
+ * from the class files (constant pool and class attributes), so no class is loaded, and the files are read
+ * in parallel.
+ */
+class CommandScanner {
+
+    // Descriptor of the Command annotation, as it appears in the constant pool
+    private static final String COMMAND_DESCRIPTOR = "Lcli/annotations/Command;";
+    private static final byte[] COMMAND_BYTES = COMMAND_DESCRIPTOR.getBytes(StandardCharsets.UTF_8);
+    private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int ACC_INTERFACE = 0x0200;
+
+    /**
+     * Command class found in a class file.
+     * @param binaryName Binary name of the class, to load it.
+     * @param className Canonical name of the class, as the scripts pass it to the entry point.
+     * @param command Name of the command.
+     * @param description Description of the command.
+     * @param jvmArgs Additional arguments for the JVM.
+     * @param background True if it runs in the background.
+     * @param aliases Other names of the command.
+     */
+    record CommandClass(
+        String binaryName,
+        String className,
+        String command,
+        String description,
+        String jvmArgs,
+        boolean background,
+        List<String> aliases
+    ) { }
+
+    /**
+     * Class file that could not be read.
+     * @param file Class file.
+     * @param message What went wrong.
+     */
+    record Problem(Path file, String message) { }
+
+    /**
+     * Result of a scan.
+     * @param commands Command classes, sorted by class name.
+     * @param problems Class files that could not be read.
+     * @param classFiles Number of class files read.
+     */
+    record Result(List<CommandClass> commands, List<Problem> problems, int classFiles) { }
+
+    private final Path directory;
+
+    /**
+     * @param directory Root of the compiled classes.
+     */
+    CommandScanner(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Reads every class file under the directory.
+     * @return Command classes found, and the files that could not be read.
+     * @throws IOException if the directory cannot be walked.
+     */
+    Result scan() throws IOException {
+        var files = classFiles();
+        var commands = Collections.synchronizedList(new ArrayList<CommandClass>());
+        var problems = Collections.synchronizedList(new ArrayList<Problem>());
+        files.parallelStream().forEach(file -> {
+            try {
+                var command = read(Files.readAllBytes(file));
+                if (command != null) commands.add(command);
+            } catch (IOException | RuntimeException e) {
+                problems.add(new Problem(file, String.valueOf(e.getMessage())));
+            }
+        });
+        var sorted = new ArrayList<>(commands);
+        sorted.sort(Comparator.comparing(CommandClass::className));
+        return new Result(sorted, List.copyOf(problems), files.size());
+    }
+
+    /**
+     * Fingerprint of the directory: the path, size and modification time of every file under it (except the
+     * ones in the excluded directories), along with some additional text.
+     * @param extra Additional text, for instance the configuration the outputs depend on.
+     * @param excluded Directories, relative to the root, whose files are not taken into account.
+     * @return Hexadecimal hash.
+     * @throws IOException if the directory cannot be walked.
+     */
+    String fingerprint(String extra, String... excluded) throws IOException {
+        var digest = sha256();
+        digest.update(extra.getBytes(StandardCharsets.UTF_8));
+        if (Files.isDirectory(directory)) {
+            try (var paths = Files.walk(directory)) {
+                var entries = paths.parallel()
+                    .filter(Files::isRegularFile)
+                    .filter(p -> Stream.of(excluded).noneMatch(e -> directory.relativize(p).startsWith(e)))
+                    .map(p -> {
+                        try {
+                            var attributes = Files.readAttributes(p, "size,lastModifiedTime");
+                            return String.format("%s\t%s\t%s%n", directory.relativize(p),
+                                attributes.get("size"), attributes.get("lastModifiedTime"));
+                        } catch (IOException ioe) {
+                            throw new UncheckedIOException(ioe);
+                        }
+                    })
+                    .sorted()
+                    .toList();
+                for (var entry : entries) digest.update(entry.getBytes(StandardCharsets.UTF_8));
+            } catch (UncheckedIOException uioe) {
+                throw uioe.getCause();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<Path> classFiles() throws IOException {
+        if (!Files.isDirectory(directory)) return List.of();
+        try (var paths = Files.walk(directory)) {
+            return paths.parallel()
+                .filter(p -> p.getFileName().toString().endsWith(".class"))
+                .filter(p -> !p.getFileName().toString().equals("module-info.class"))
+                .filter(Files::isRegularFile)
+                .toList();
+        }
+    }
+
+    /**
+     * Reads the Command annotation of a class file.
+     * @param bytes Contents of the class file.
+     * @return The command, or null if the class is not annotated.
+     * @throws IOException if it is not a valid class file.
+     */
+    static CommandClass read(byte[] bytes) throws IOException {
+        // Most classes are not commands: do not even parse them
+        if (!contains(bytes, COMMAND_BYTES)) return null;
+        var in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC) throw new IOException("Not a class file");
+        // Minor and major versions
+        in.skipNBytes(4);
+        var pool = readConstantPool(in);
+        var access = in.readUnsignedShort();
+        var thisClass = (String) pool[(Integer) pool[in.readUnsignedShort()]];
+        // Super class
+        in.skipNBytes(2);
+        in.skipNBytes(2L * in.readUnsignedShort());
+        // Fields and methods
+        skipMembers(in);
+        skipMembers(in);
+        var attributes = in.readUnsignedShort();
+        for (var i = 0; i < attributes; i++) {
+            var name = pool[in.readUnsignedShort()];
+            var length = in.readInt();
+            if (!RUNTIME_VISIBLE_ANNOTATIONS.equals(name)) {
+                in.skipNBytes(length);
+                continue;
+            }
+            var annotations = in.readUnsignedShort();
+            for (var j = 0; j < annotations; j++) {
+                var type = pool[in.readUnsignedShort()];
+                var values = readElementValuePairs(in, pool);
+                if (COMMAND_DESCRIPTOR.equals(type) && (access & ACC_INTERFACE) == 0) {
+                    return new CommandClass(
+                        thisClass.replace('/', '.'),
+                        thisClass.replace('/', '.').replace('$', '.'),
+                        (String) values.getOrDefault("command", ""),
+                        (String) values.getOrDefault("description", ""),
+                        (String) values.getOrDefault("jvmArgs", ""),
+                        (Integer) values.getOrDefault("isBackground", 0) != 0,
+                        stringList(values.get("aliases"))
+                    );
+                }
+            }
+        }
+        return null;
+    }
+
+    // Constant pool: UTF8 entries as strings, integers as integers, classes as the index of their name
+    private static Object[] readConstantPool(DataInputStream in) throws IOException {
+        var pool = new Object[in.readUnsignedShort()];
+        for (var i = 1; i < pool.length; i++) {
+            var tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1 -> pool[i] = in.readUTF();
+                case 3 -> pool[i] = in.readInt();
+                case 4 -> in.skipNBytes(4);
+                case 5, 6 -> {
+                    in.skipNBytes(8);
+                    // Longs and doubles take two entries
+                    i++;
+                }
+                case 7 -> pool[i] = in.readUnsignedShort();
+                case 8, 16, 19, 20 -> in.skipNBytes(2);
+                case 15 -> in.skipNBytes(3);
+                case 9, 10, 11, 12, 17, 18 -> in.skipNBytes(4);
+                default -> throw new IOException(String.format("Unknown constant pool tag %d", tag));
+            }
+        }
+        return pool;
+    }
+
+    private static void skipMembers(DataInputStream in) throws IOException {
+        var count = in.readUnsignedShort();
+        for (var i = 0; i < count; i++) {
+            // Access flags, name and descriptor
+            in.skipNBytes(6);
+            var attributes = in.readUnsignedShort();
+            for (var j = 0; j < attributes; j++) {
+                in.skipNBytes(2);
+                in.skipNBytes(Integer.toUnsignedLong(in.readInt()));
+            }
+        }
+    }
+
+    private static Map<String, Object> readElementValuePairs(DataInputStream in, Object[] pool) throws IOException {
+        var count = in.readUnsignedShort();
+        var ret = new HashMap<String, Object>();
+        for (var i = 0; i < count; i++) {
+            var name = (String) pool[in.readUnsignedShort()];
+            ret.put(name, readElementValue(in, pool));
+        }
+        return ret;
+    }
+
+    // Constants as their values, arrays as lists; enums, classes and nested annotations are not needed
+    private static Object readElementValue(DataInputStream in, Object[] pool) throws IOException {
+        var tag = in.readUnsignedByte();
+        return switch (tag) {
+            case 'B', 'C', 'D', 'F', 'I', 'J', 'S', 'Z', 's' -> pool[in.readUnsignedShort()];
+            case 'e' -> {
+                in.skipNBytes(2);
+                yield pool[in.readUnsignedShort()];
+            }
+            case 'c' -> pool[in.readUnsignedShort()];
+            case '@' -> {
+                in.skipNBytes(2);
+                yield readElementValuePairs(in, pool);
+            }
+            case '[' -> {
+                var values = new ArrayList<>();
+                var count = in.readUnsignedShort();
+                for (var i = 0; i < count; i++) values.add(readElementValue(in, pool));
+                yield values;
+            }
+            default -> throw new IOException(String.format("Unknown annotation element tag %c", tag));
+        };
+    }
+
+    private static List<String> stringList(Object value) {
+        if (value == null) return List.of();
+        return ((List<?>) value).stream().map(String::valueOf).toList();
+    }
+
+    private static boolean contains(byte[] bytes, byte[] pattern) {
+        var first = pattern[0];
+        var last = bytes.length - pattern.length;
+        outer:
+        for (var i = 0; i <= last; i++) {
+            if (bytes[i] != first) continue;
+            for (var j = 1; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,69 @@
+package cli;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Script template parsed once into literal text and placeholders ({@code <<NAME>>}), so that rendering it
+ * for every command is just appending strings.
+ */
+class ScriptTemplate {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("<<([A-Z_]+)>>");
+
+    // Literal text at even positions, names of placeholders at odd positions
+    private final String[] parts;
+    private final int literalLength;
+
+    private ScriptTemplate(String[] parts) {
+        this.parts = parts;
+        var length = 0;
+        for (var i = 0; i < parts.length; i += 2) length += parts[i].length();
+        this.literalLength = length;
+    }
+
+    /**
+     * @param text Template.
+     * @return Compiled template.
+     */
+    static ScriptTemplate compile(String text) {
+        var parts = new ArrayList<String>();
+        var matcher = PLACEHOLDER.matcher(text);
+        var last = 0;
+        while (matcher.find()) {
+            parts.add(text.substring(last, matcher.start()));
+            parts.add(matcher.group(1));
+            last = matcher.end();
+        }
+        parts.add(text.substring(last));
+        return new ScriptTemplate(parts.toArray(new String[0]));
+    }
+
+    /** @return Names of the placeholders, in order of appearance */
+    List<String> placeholders() {
+        var ret = new ArrayList<String>();
+        for (var i = 1; i < parts.length; i += 2) ret.add(parts[i]);
+        return ret;
+    }
+
+    /**
+     * @param values Value of every placeholder of the template.
+     * @return The template with the placeholders replaced.
+     * @throws IllegalArgumentException if there is no value for a placeholder.
+     */
+    String render(Map<String, String> values) {
+        var ret = new StringBuilder(literalLength + 256);
+        for (var i = 0; i < parts.length; i++) {
+            if (i % 2 == 0) {
+                ret.append(parts[i]);
+            } else {
+                var value = values.get(parts[i]);
+                if (value == null) throw new IllegalArgumentException(String.format("No value for <<%s>>", parts[i]));
+                ret.append(value);
+            }
+        }
+        return ret.toString();
+    }
+}
@@ -1,2 +1,18 @@
 @echo off
-<<START_COMMAND>> %JAVA_HOME%\bin\<<JAVA_COMMAND>> -cp "%~dp0..\libs\*" <<JVM_ARGS>> -Djava.util.logging.config.class=cli.LogUtils cli.EntryPoint <<COMMAND_CLASS>> %*
\ No newline at end of file
+setlocal
+set CDS_ARGS=
+if exist "%~dp0<<CDS_ARCHIVE>>" set CDS_ARGS=-XX:SharedArchiveFile="%~dp0<<CDS_ARCHIVE>>"
+set PRELOAD_ARGS=
+if exist "%~dp0*.classes" set PRELOAD_ARGS=-Dcli.preload="%~dp0."
+set JAVA=%JAVA_HOME%\bin\<<JAVA_COMMAND>>
+if exist "%~dp0..\runtime\bin\<<JAVA_COMMAND>>.exe" set JAVA=%~dp0..\runtime\bin\<<JAVA_COMMAND>>
+set MAIN_CLASS=cli.EntryPoint
+if defined CLI_BATCH set MAIN_CLASS=cli.Batch
+rem Background commands run under a supervisor (one instance per host): --stop asks it to stop
+set STATE=%TEMP%\cli-%USERNAME%\<<COMMAND>>
+if defined CLI_STATE_DIR set STATE=%CLI_STATE_DIR%\<<COMMAND>>
+if "<<BACKGROUND>>"=="true" if "%~1"=="--stop" (
+  type nul > "%STATE%\stop"
+  exit /b 0
+)
+<<START_COMMAND>> %JAVA% -cp "%~dp0..\libs\*" %CDS_ARGS% %PRELOAD_ARGS% <<JVM_ARGS>> -Djava.util.logging.config.class=cli.LogUtils -Dcli.state="%STATE%" %MAIN_CLASS% <<COMMAND_CLASS>> %*
\ No newline at end of file
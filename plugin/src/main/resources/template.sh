@@ -1,3 +1,84 @@
 #!/bin/bash
 DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
-$JAVA_HOME/bin/<<JAVA_COMMAND>> -cp "$DIR/../libs/*" <<JVM_ARGS>> -Djava.util.logging.config.class=cli.LogUtils cli.EntryPoint <<COMMAND_CLASS>> $@
\ No newline at end of file
+# The command class goes first (the dispatcher script has none: the first argument is the name of the command)
+set -- <<COMMAND_CLASS>> "$@"
+# Class-data-sharing archive generated at build time, if any
+CDS_ARGS=""
+[ -f "$DIR/<<CDS_ARCHIVE>>" ] && CDS_ARGS="-XX:SharedArchiveFile=$DIR/<<CDS_ARCHIVE>>"
+# Classes to preload while the command line is parsed, recorded at build time (see cli.Preloader)
+PRELOAD_ARGS=""
+for LIST in "$DIR"/*.classes; do [ -f "$LIST" ] && PRELOAD_ARGS="-Dcli.preload=$DIR"; break; done
+# Runtime image trimmed to the modules of the libraries, if the build generated one
+JAVA="$JAVA_HOME/bin/java"
+[ -x "$DIR/../runtime/bin/java" ] && JAVA="$DIR/../runtime/bin/java"
+# Batch mode (CLI_BATCH=1): the arguments are the batch options, every input record is an invocation
+MAIN_CLASS=cli.EntryPoint
+[ -n "$CLI_BATCH" ] && MAIN_CLASS=cli.Batch
+# Opt-in daemon mode (CLI_DAEMON=1): run the command in a warm JVM listening on a unix socket
+if [ -n "$CLI_DAEMON" ] && [ -z "$CLI_BATCH" ] && <<DAEMON>> && command -v nc > /dev/null; then
+  SOCKET="${CLI_DAEMON_SOCKET:-${TMPDIR:-/tmp}/cli-daemon-$(id -u)-$(printf '%s' "$DIR" | cksum | cut -d ' ' -f 1).sock}"
+  if [ -S "$SOCKET" ]; then
+    SESSION="$(mktemp -d)"
+    mkfifo "$SESSION/err"
+    cat "$SESSION/err" >&2 &
+    ERR_PID=$!
+    # Shut down the socket on end of input if this nc supports it
+    NC_ARGS="-U"
+    nc -h 2>&1 | grep -q -- ' -N' && NC_ARGS="-N -U"
+    nc $NC_ARGS "$SOCKET" < <(
+      printf '%s\0' cli-daemon/1 "$SESSION/err" "$SESSION/status" "$PWD" "$#" "$@"
+      for NAME in $(compgen -e); do printf '%s=%s\0' "$NAME" "${!NAME}"; done
+      printf '\0'
+      [ -t 0 ] || cat
+    )
+    # The daemon creates the status file as soon as it accepts the command
+    if [ -f "$SESSION/status" ]; then
+      # The daemon closes the standard error before the socket: give up on it after 5 seconds anyway
+      for (( WAITED = 0; WAITED < 50; WAITED++ )); do
+        kill -0 $ERR_PID 2> /dev/null || break
+        sleep 0.1
+      done
+      kill $ERR_PID 2> /dev/null
+      wait $ERR_PID 2> /dev/null
+      STATUS="$(cat "$SESSION/status")"
+      rm -rf "$SESSION"
+      exit "${STATUS:-1}"
+    fi
+    kill $ERR_PID 2> /dev/null
+    rm -rf "$SESSION"
+  fi
+  # Not available: start it for the next calls and run this one as usual
+  nohup "$JAVA" -cp "$DIR/../libs/*" $CDS_ARGS <<JVM_ARGS>> -Djava.util.logging.config.class=cli.LogUtils cli.Daemon "$SOCKET" > /dev/null 2>&1 &
+fi
+# Background commands run detached under a supervisor (one instance per host): --status and --stop talk to it
+if <<BACKGROUND>> && [ -z "$CLI_BATCH" ]; then
+  STATE="${CLI_STATE_DIR:-${TMPDIR:-/tmp}/cli-$(id -un)}/<<COMMAND>>"
+  PID="$(cat "$STATE/pid" 2> /dev/null)"
+  RUNNING=false
+  [ -n "$PID" ] && kill -0 "$PID" 2> /dev/null && RUNNING=true
+  case "$2" in
+    --status)
+      $RUNNING && cat "$STATE/status" && exit 0
+      echo "<<COMMAND>> is not running" >&2
+      exit 1;;
+    --stop)
+      if $RUNNING; then
+        touch "$STATE/stop"
+        while kill -0 "$PID" 2> /dev/null; do sleep 0.2; done
+      fi
+      exit 0;;
+  esac
+  if $RUNNING; then
+    echo "<<COMMAND>> is already running (pid $PID)" >&2
+    exit 1
+  fi
+  # Readable only by the user, and refused if someone else created it first
+  (umask 077 && mkdir -p "$STATE") && chmod 700 "$STATE" || exit 1
+  if [ ! -O "$STATE" ] || { [ -z "$CLI_STATE_DIR" ] && [ ! -O "$(dirname "$STATE")" ]; }; then
+    echo "$STATE belongs to another user" >&2
+    exit 1
+  fi
+  nohup "$JAVA" -cp "$DIR/../libs/*" $CDS_ARGS $PRELOAD_ARGS <<JVM_ARGS>> -Djava.util.logging.config.class=cli.LogUtils -Dcli.state="$STATE" cli.EntryPoint "$@" >> "$STATE/output.log" 2>&1 < /dev/null &
+  exit 0
+fi
+"$JAVA" -cp "$DIR/../libs/*" $CDS_ARGS $PRELOAD_ARGS <<JVM_ARGS>> -Djava.util.logging.config.class=cli.LogUtils $MAIN_CLASS "$@"
\ No newline at end of file
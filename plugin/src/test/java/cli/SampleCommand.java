@@ -14,6 +14,7 @@ public class SampleCommand {
         description = "test parameter"
     )
     private String testParam;
+    public void setTestParam(String t) { testParam = t; }
 
     @Run
     public int someMethod(Path cwd) {
@@ -0,0 +1,236 @@
+package cli;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestCliGeneratorMojo {
+
+    // A project with the sample command compiled into target/classes
+    private static CliGeneratorMojo mojo(Path target) throws Exception {
+        var classes = target.resolve("classes");
+        var location = Path.of(SampleCommand.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        var classFile = Path.of(SampleCommand.class.getName().replace('.', '/') + ".class");
+        Files.createDirectories(classes.resolve(classFile).getParent());
+        Files.copy(location.resolve(classFile), classes.resolve(classFile));
+        var build = new Build();
+        build.setDirectory(target.toString());
+        build.setOutputDirectory(classes.toString());
+        var project = new MavenProject();
+        project.getModel().setBuild(build);
+        var descriptor = new PluginDescriptor();
+        descriptor.setVersion("test");
+        var context = new HashMap<String, Object>();
+        context.put("pluginDescriptor", descriptor);
+        var ret = new CliGeneratorMojo();
+        ret.project = project;
+        ret.setPluginContext(context);
+        // Keeps the build log quiet
+        ret.setLog((Log) Proxy.newProxyInstance(Log.class.getClassLoader(), new Class<?>[] { Log.class },
+            (proxy, method, args) -> method.getReturnType() == boolean.class ? false : null));
+        ret.cdsMode = "project";
+        ret.dispatcher = "tools";
+        ret.javaHome = new File(System.getProperty("java.home"));
+        return ret;
+    }
+
+    private static Path scripts(Path target) {
+        return target.resolve("redist/scripts");
+    }
+
+    @Test
+    public void testUpToDate() {
+        try {
+            var target = Files.createTempDirectory("mojo");
+            var mojo = mojo(target);
+            mojo.execute();
+            var script = scripts(target).resolve("test.sh");
+            var generated = Files.readString(script);
+            assertTrue(generated.contains("cli.SampleCommand"));
+            assertTrue(Files.isRegularFile(scripts(target).resolve("tools.bat")));
+            assertTrue(Files.isRegularFile(target.resolve("classes/" + CommandIndex.RESOURCE)));
+            // Nothing changed since the last build: nothing is written, not even what was edited by hand
+            Files.writeString(script, "edited");
+            mojo.execute();
+            assertEquals("edited", Files.readString(script));
+            // One of the outputs is gone: everything is generated again
+            Files.delete(scripts(target).resolve("tools.bat"));
+            mojo.execute();
+            assertEquals(generated, Files.readString(script));
+            assertTrue(Files.isRegularFile(scripts(target).resolve("tools.bat")));
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testHelp() {
+        try {
+            var target = Files.createTempDirectory("mojo");
+            var mojo = mojo(target);
+            mojo.precomputeHelp = true;
+            mojo.execute();
+            var help = target.resolve("classes/" + Help.resourceName(SampleCommand.class.getName()));
+            assertTrue(Files.readString(help).contains("testParam"));
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testWriteIfChanged() {
+        try {
+            var target = Files.createTempDirectory("mojo");
+            var mojo = mojo(target);
+            var file = target.resolve("out/file.txt").toFile();
+            assertTrue(mojo.writeIfChanged(file, "text"));
+            assertTrue(file.setLastModified(1_000_000_000L));
+            // Same content: the modification time stays
+            assertFalse(mojo.writeIfChanged(file, "text"));
+            assertEquals(1_000_000_000L, file.lastModified());
+            assertTrue(mojo.writeIfChanged(file, "other text"));
+            assertNotEquals(1_000_000_000L, file.lastModified());
+            assertEquals("other text", Files.readString(file.toPath()));
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testStaleFiles() {
+        try {
+            var target = Files.createTempDirectory("mojo");
+            var mojo = mojo(target);
+            var scripts = scripts(target);
+            Files.createDirectories(scripts);
+            // Files put there by someone else
+            for (var name : new String[] { "other.sh", "other.bat", "other.jsa", "cli.Other.classes", "notes.txt" }) {
+                Files.writeString(scripts.resolve(name), name);
+            }
+            mojo.execute();
+            assertTrue(Files.exists(scripts.resolve("tools.sh")));
+            // The JVM writes archives read-only
+            assertTrue(scripts.resolve("tools.bat").toFile().setWritable(false));
+            // No dispatcher: its scripts are gone, the rest stays
+            mojo.dispatcher = "";
+            mojo.execute();
+            assertFalse(Files.exists(scripts.resolve("tools.sh")));
+            assertFalse(Files.exists(scripts.resolve("tools.bat")));
+            for (var name : new String[] { "other.sh", "other.bat", "other.jsa", "cli.Other.classes", "notes.txt", "test.bat" }) {
+                assertTrue(Files.exists(scripts.resolve(name)), name);
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testTrainingCommandLine() {
+        try {
+            var target = Files.createTempDirectory("mojo");
+            var mojo = mojo(target);
+            var libs = target.resolve("redist/libs").toFile();
+            var archive = target.resolve("redist/scripts/cli.jsa").toFile();
+            var commandLine = mojo.trainingCommandLine(archive, null, libs, " -Xmx64m  -Dfoo=bar ", List.of("a.B", "c.D"));
+            assertEquals(List.of(
+                new File(mojo.javaHome, "bin/java").getAbsolutePath(),
+                "-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath(),
+                "-cp",
+                libs.getAbsolutePath() + File.separator + "*",
+                "-Xmx64m",
+                "-Dfoo=bar",
+                "-Djava.util.logging.config.class=cli.LogUtils",
+                "cli.Training",
+                "a.B",
+                "c.D"
+            ), commandLine);
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testPreloadList() {
+        try {
+            var target = Files.createTempDirectory("mojo");
+            var mojo = mojo(target);
+            var jar = target.resolve("commands.jar");
+            try (var out = new JarOutputStream(Files.newOutputStream(jar))) {
+                for (var name : List.of("cli/Training.class", "sample/First.class", "sample/Second.class")) {
+                    out.putNextEntry(new JarEntry(name));
+                    out.closeEntry();
+                }
+            }
+            var classList = target.resolve("raw.classes");
+            Files.write(classList, List.of(
+                "# NOTE: Do not modify this file.",
+                "java/lang/Object id: 1",
+                "cli/Training id: 2",
+                "sample/Second id: 3 super: 1",
+                "@lambda-proxy sample/Second run ()Ljava/lang/Runnable;",
+                "",
+                "sample/First id: 4 super: 1",
+                "sample/Second id: 5 super: 1",
+                "sample/Missing id: 6 super: 1"
+            ));
+            var list = target.resolve("sample.classes");
+            mojo.writePreloadList(classList.toFile(), new File[] { jar.toFile() }, list.toFile());
+            // The classes of the libraries, in the order they were loaded, without the training
+            assertEquals("sample.Second\nsample.First\n", Files.readString(list));
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testRuntimeJava() {
+        try {
+            var target = Files.createTempDirectory("mojo");
+            var mojo = mojo(target);
+            var libs = target.resolve("redist/libs").toFile();
+            var jdk = new File(mojo.javaHome, "bin/java");
+            assertEquals(jdk, mojo.java(libs));
+            // Only once the image is there
+            mojo.runtime = true;
+            assertEquals(jdk, mojo.java(libs));
+            var image = target.resolve("redist/runtime");
+            Files.createDirectories(image);
+            assertEquals(image.resolve("bin/java").toFile(), mojo.java(libs));
+            mojo.runtime = false;
+            assertEquals(jdk, mojo.java(libs));
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testModuleNames() {
+        try {
+            var mojo = mojo(Files.createTempDirectory("mojo"));
+            assertEquals(List.of("java.base", "java.logging", "jdk.localedata"),
+                mojo.moduleNames("java.base,java.logging, jdk.localedata ,"));
+            assertEquals(List.of("java.sql"),
+                mojo.moduleNames("Warning: split package,java.sql,--add-opens,java..base,1st.module"));
+            assertEquals(List.of(), mojo.moduleNames(""));
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TestCommandScanner {
+
+    private static Path classFile(Class<?> clazz) throws URISyntaxException {
+        var root = Path.of(clazz.getProtectionDomain().getCodeSource().getLocation().toURI());
+        return root.resolve(clazz.getName().replace('.', '/') + ".class");
+    }
+
+    @Test
+    public void testRead() {
+        try {
+            var command = CommandScanner.read(Files.readAllBytes(classFile(SampleCommand.class)));
+            assertEquals(SampleCommand.class.getName(), command.className());
+            assertEquals("test", command.command());
+            assertEquals("this is a test command", command.description());
+            assertEquals("", command.jvmArgs());
+            assertEquals(List.of(), command.aliases());
+            assertTrue(!command.background());
+            assertNull(CommandScanner.read(Files.readAllBytes(classFile(TestCommandScanner.class))));
+        } catch (IOException | URISyntaxException e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testScan() {
+        try {
+            var root = classFile(SampleCommand.class).getParent().getParent();
+            var result = new CommandScanner(root).scan();
+            assertTrue(result.problems().isEmpty());
+            assertTrue(result.classFiles() >= 2);
+            assertTrue(result.commands().stream().anyMatch(c -> c.className().equals(SampleCommand.class.getName())));
+        } catch (IOException | URISyntaxException e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    public void testFingerprint() {
+        try {
+            var dir = Files.createTempDirectory("scanner");
+            Files.writeString(dir.resolve("A.class"), "a");
+            Files.createDirectories(dir.resolve("META-INF/cli"));
+            var scanner = new CommandScanner(dir);
+            var fingerprint = scanner.fingerprint("conf", "META-INF/cli");
+            assertEquals(fingerprint, scanner.fingerprint("conf", "META-INF/cli"));
+            // Excluded files do not count
+            Files.writeString(dir.resolve("META-INF/cli/commands.idx"), "x");
+            assertEquals(fingerprint, scanner.fingerprint("conf", "META-INF/cli"));
+            assertNotEquals(fingerprint, scanner.fingerprint("other", "META-INF/cli"));
+            Files.writeString(dir.resolve("A.class"), "ab");
+            assertNotEquals(fingerprint, scanner.fingerprint("conf", "META-INF/cli"));
+            // Files without the annotation are not even parsed
+            var result = scanner.scan();
+            assertEquals(1, result.classFiles());
+            assertTrue(result.commands().isEmpty());
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+}
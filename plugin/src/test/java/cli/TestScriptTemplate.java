@@ -0,0 +1,24 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestScriptTemplate {
+
+    @Test
+    public void testRender() {
+        var template = ScriptTemplate.compile("java <<JVM_ARGS>> cli.EntryPoint <<COMMAND_CLASS>> $@ <<not a placeholder>>");
+        assertEquals(List.of("JVM_ARGS", "COMMAND_CLASS"), template.placeholders());
+        assertEquals(
+            "java -Xmx1g cli.EntryPoint a.B$C $@ <<not a placeholder>>",
+            template.render(Map.of("JVM_ARGS", "-Xmx1g", "COMMAND_CLASS", "a.B$C"))
+        );
+        assertEquals("no placeholders", ScriptTemplate.compile("no placeholders").render(Map.of()));
+        assertThrows(IllegalArgumentException.class, () -> template.render(Map.of("JVM_ARGS", "")));
+    }
+}